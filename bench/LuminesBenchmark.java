@@ -0,0 +1,422 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Benchmarks for the parts of the game that run every frame
+ * Prints how many operations run per second and how many bytes each one allocates
+ *
+ * Usage: java LuminesBenchmark [benchmark name] [fixture name]
+ * Leaving out a name runs all of them
+ */
+public class LuminesBenchmark
+{
+	//Constants
+	private static final long WARMUP_TIME = 1000; //Milliseconds to run before measuring
+	private static final long MEASURE_TIME = 2000; //Milliseconds to measure for
+	private static final String[] FIXTURES = { "empty", "half-full", "checkerboard", "near-game-over", "large", "eight-colour" };
+	private static final int LARGE_SIZE = 1024; //Height and width of the board for the large fixture
+	
+	//Instance variables
+	private String fixture; //Name of the board the benchmark starts from
+	private int boardHeight; //Height of the fixture board
+	private int boardWidth; //Width of the fixture board
+	private LuminesGame game; //Game being benchmarked
+	private int[][] start; //The fixture board, as cells
+	private InputState input = new InputState(); //Keys held down while ticking
+	private LuminesRenderer renderer = new LuminesRenderer( 400, 300 ); //Draws the game to an image
+	private PlacementSearch search; //Computer player's search
+	private ByteBuffer snapshot; //Where the game is saved to and loaded from
+	private long time = 0; //Fake time passed to Square.rotate()
+	private int column = 0; //Next column to clear
+	private int landingColumn = 0; //Next column to land a square on, the square covers it and the one after it
+	private long sink = 0; //Keeps results alive so the work can't be skipped
+	
+	/**
+	 * One thing to measure
+	 */
+	private abstract class Benchmark
+	{
+		private String name; //Name of the benchmark
+		
+		/**
+		 * Constructor
+		 * @param n Name of the benchmark
+		 */
+		public Benchmark( String n )
+		{
+			name = n;
+		}
+		
+		/**
+		 * Get the game ready before each operation, not measured
+		 * Benchmarks that don't change the board don't need to do anything
+		 */
+		public void setup()
+		{
+		}
+		
+		/**
+		 * Whether setup() has to run before every operation
+		 * @return If each operation needs to be set up
+		 */
+		public boolean needsSetup()
+		{
+			return false;
+		}
+		
+		/**
+		 * Whether the benchmark finishes in a sensible time on the large fixture
+		 * @return If it can run on the large fixture
+		 */
+		public boolean fitsLargeBoard()
+		{
+			return true;
+		}
+		
+		/**
+		 * The operation being measured
+		 */
+		public abstract void run();
+	}
+	
+	/**
+	 * Constructor
+	 * @param f Name of the fixture to use
+	 */
+	public LuminesBenchmark( String f )
+	{
+		fixture = f;
+		boardHeight = f.equals( "large" ) ? LARGE_SIZE : LuminesGame.BOARD_HEIGHT;
+		boardWidth = f.equals( "large" ) ? LARGE_SIZE : LuminesGame.BOARD_WIDTH;
+		int colours = f.equals( "eight-colour" ) ? 8 : 2;
+		game = new LuminesGame( new TickClock( LuminesGame.TICK_RATE ), LuminesGame.TICK_RATE, 0, boardHeight, boardWidth, colours );
+		search = new PlacementSearch( boardHeight, boardWidth, colours, PlacementSearch.DEFAULT_BEAM_WIDTH, PlacementSearch.DEFAULT_TABLE_BITS, 1 );
+		snapshot = ByteBuffer.allocate( GameSnapshot.getSize( game ) );
+		start = new int[boardHeight][boardWidth];
+		Random rnd = new Random( 42 );
+		
+		for( int i = 0; i < boardHeight; i++ )
+		{
+			for( int j = 0; j < boardWidth; j++ )
+			{
+				int b = Cell.EMPTY;
+				int random = ( colours == 2 ? ( rnd.nextBoolean() ? 1 : 2 ) : rnd.nextInt( colours ) + 1 ) | Cell.FIXED;
+				
+				//The eight colour board is the half full board with more colours, to compare the clear scan against
+				if( ( f.equals( "half-full" ) || f.equals( "large" ) || f.equals( "eight-colour" ) ) && i >= boardHeight / 2 )
+					b = random;
+				else if( f.equals( "checkerboard" ) && i >= 2 )
+					b = ( ( i + j ) % 2 == 0 ? 1 : 2 ) | Cell.FIXED;
+				//Leave the columns where new squares come in a little lower than the rest
+				else if( f.equals( "near-game-over" ) && ( i >= 2 || ( i >= 1 && ( j < 7 || j > 10 ) ) ) )
+					b = random;
+				
+				start[i][j] = b;
+			}
+		}
+		
+		loadFixture();
+	}
+	
+	/**
+	 * Put the fixture board back into the game
+	 */
+	private void loadFixture()
+	{
+		for( int i = 0; i < boardHeight; i++ )
+			for( int j = 0; j < boardWidth; j++ )
+				game.getBoard().setCell( i, j, start[i][j] );
+	}
+	
+	/**
+	 * Find the row that the top of a column of blocks is on
+	 * @param column Column to look at
+	 * @return The row of the highest block in the column, or the height of the board if it is empty
+	 */
+	private int top( int column )
+	{
+		int i = 0;
+		while( i < boardHeight && game.getBoard().getCell( i, column ) == Cell.EMPTY )
+			i++;
+		
+		return i;
+	}
+	
+	/**
+	 * Make all of the benchmarks
+	 * @return The benchmarks
+	 */
+	private Benchmark[] benchmarks()
+	{
+		return new Benchmark[] {
+			new Benchmark( "setClear" )
+			{
+				public boolean needsSetup()
+				{
+					return true;
+				}
+				
+				public void setup()
+				{
+					//Every block changes, so the whole board is checked
+					loadFixture();
+				}
+				
+				public void run()
+				{
+					game.setClear();
+				}
+			},
+			new Benchmark( "setClearSerial" )
+			{
+				public boolean needsSetup()
+				{
+					return true;
+				}
+				
+				public void setup()
+				{
+					loadFixture();
+				}
+				
+				public void run()
+				{
+					//The same as setClear, but always on one thread
+					BitBoard board = (BitBoard) game.getBoard();
+					int threshold = board.getParallelThreshold();
+					board.setParallelThreshold( Integer.MAX_VALUE );
+					game.setClear();
+					board.setParallelThreshold( threshold );
+				}
+			},
+			new Benchmark( "doClear" )
+			{
+				public boolean needsSetup()
+				{
+					return true;
+				}
+				
+				public void setup()
+				{
+					loadFixture();
+					game.setClear();
+				}
+				
+				public void run()
+				{
+					game.doClear( column );
+					column = ( column + 1 ) % boardWidth;
+				}
+			},
+			new Benchmark( "isBoardEmpty" )
+			{
+				public void run()
+				{
+					if( game.getBoard().isBoardEmpty() )
+						sink++;
+				}
+			},
+			new Benchmark( "rotate" )
+			{
+				public void run()
+				{
+					time++;
+					game.getCurrentSquare().rotate( time );
+				}
+			},
+			new Benchmark( "tick" )
+			{
+				public void run()
+				{
+					//Keep changing the keys so squares turn, move, land and clear, and a lost game starts again
+					time++;
+					input.clear();
+					input.setDown( true );
+					input.setRotate( ( time & 4 ) != 0 );
+					input.setLeft( ( time & 24 ) == 8 );
+					input.setRight( ( time & 24 ) == 16 );
+					game.tick( input );
+					if( game.isGameOver() )
+						game.newGame();
+				}
+			},
+			new Benchmark( "landing" )
+			{
+				public boolean needsSetup()
+				{
+					return true;
+				}
+				
+				public void setup()
+				{
+					if( game.isGameOver() )
+						game.newGame();
+					loadFixture();
+					
+					//Put the square right on top of the blocks so the next tick lands it
+					Square s = game.getCurrentSquare();
+					s.setColumn( landingColumn );
+					s.setRow( Math.min( top( landingColumn ), top( landingColumn + 1 ) ) - 2 );
+					landingColumn = ( landingColumn + 1 ) % ( boardWidth - 1 );
+					input.setDown( true );
+				}
+				
+				public void run()
+				{
+					game.tick( input );
+				}
+			},
+			new Benchmark( "search" )
+			{
+				public boolean fitsLargeBoard()
+				{
+					return false;
+				}
+				
+				public boolean needsSetup()
+				{
+					return true;
+				}
+				
+				public void setup()
+				{
+					//Search for a different square each time, so the table doesn't already have every board
+					game.newSquare();
+				}
+				
+				public void run()
+				{
+					search.search( game );
+					sink += search.getColumn();
+				}
+			},
+			new Benchmark( "snapshot" )
+			{
+				public void run()
+				{
+					//Save the whole game and load it back in, without making any objects
+					snapshot.clear();
+					GameSnapshot.write( game, snapshot );
+					snapshot.flip();
+					try
+					{
+						GameSnapshot.read( snapshot, game );
+					}
+					catch( IOException e )
+					{
+						throw new RuntimeException( e );
+					}
+				}
+			},
+			new Benchmark( "draw" )
+			{
+				public void run()
+				{
+					//Only the line and anything that changed get drawn
+					sink += renderer.render( game ).width;
+				}
+			},
+			new Benchmark( "drawAll" )
+			{
+				public void run()
+				{
+					renderer.redrawAll();
+					sink += renderer.render( game ).width;
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Run one benchmark and print the results
+	 * @param b The benchmark to run
+	 */
+	private void measure( Benchmark b )
+	{
+		loadFixture();
+		b.setup();
+		
+		//Let the JIT compile everything first
+		runFor( b, WARMUP_TIME );
+		
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long bytesBefore = threads.getThreadAllocatedBytes( id );
+		long[] result = runFor( b, MEASURE_TIME );
+		long bytes = threads.getThreadAllocatedBytes( id ) - bytesBefore;
+		
+		long ops = result[0];
+		long nanos = result[1];
+		System.out.printf( "%-14s %-16s %14.0f ops/s %12.1f ns/op %12.1f B/op%n",
+				b.name, fixture, ops * 1e9 / nanos, (double) nanos / ops, (double) bytes / ops );
+	}
+	
+	/**
+	 * Keep running a benchmark for a length of time
+	 * Only the operation itself is timed, never the setup
+	 * Note that the bytes allocated by the setup are still counted
+	 * @param b The benchmark to run
+	 * @param millis How long to run for
+	 * @return The number of operations and the nanoseconds they took
+	 */
+	private long[] runFor( Benchmark b, long millis )
+	{
+		long end = System.nanoTime() + millis * 1000000;
+		long ops = 0;
+		long nanos = 0;
+		
+		if( b.needsSetup() )
+		{
+			while( System.nanoTime() < end )
+			{
+				b.setup();
+				long start = System.nanoTime();
+				b.run();
+				nanos += System.nanoTime() - start;
+				ops++;
+			}
+		}
+		else
+		{
+			//Time a batch at a time so the timer doesn't get measured
+			while( System.nanoTime() < end )
+			{
+				long start = System.nanoTime();
+				for( int i = 0; i < 1000; i++ )
+					b.run();
+				nanos += System.nanoTime() - start;
+				ops += 1000;
+			}
+		}
+		
+		return new long[] { ops, nanos };
+	}
+	
+	/**
+	 * Run the benchmarks
+	 * @param args Optional benchmark name and fixture name to run
+	 */
+	public static void main( String[] args )
+	{
+		String only = args.length > 0 ? args[0] : null;
+		String onlyFixture = args.length > 1 ? args[1] : null;
+		
+		for( String f : FIXTURES )
+		{
+			if( onlyFixture != null && !onlyFixture.equals( f ) )
+				continue;
+			
+			LuminesBenchmark bench = new LuminesBenchmark( f );
+			for( Benchmark b : bench.benchmarks() )
+			{
+				if( ( only == null || only.equals( b.name ) ) && ( b.fitsLargeBoard() || !f.equals( "large" ) ) )
+					bench.measure( b );
+			}
+			
+			if( bench.sink == 42 )
+				System.out.println();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+/**
+ * Measures how long it takes from starting the program to the first frame of the game on the screen
+ * A cold start can only be measured once per program, so run it a few times and look at all of the numbers
+ * Needs a display, unlike the other benchmarks
+ *
+ * Usage: java StartupBenchmark [timeout in seconds]
+ */
+public class StartupBenchmark
+{
+	/**
+	 * Make the window, run the game until its first frame is painted and print the times
+	 * @param args The timeout, 10 seconds if it is left out
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		int timeout = args.length > 0 ? Integer.parseInt( args[0] ) : 10;
+		
+		long start = System.nanoTime();
+		final LuminesGUI gui = new LuminesGUI( LuminesGame.TICK_RATE, 1 );
+		long built = System.nanoTime() - start;
+		
+		Thread t = new Thread( new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					gui.run();
+				}
+				catch( Exception e )
+				{
+					e.printStackTrace();
+				}
+			}
+		}, "Game" );
+		t.setDaemon( true );
+		t.start();
+		
+		long firstFrame = gui.waitForFirstFrame( timeout * 1000L );
+		if( firstFrame < 0 )
+		{
+			System.out.println( "No frame was painted in " + timeout + " seconds" );
+			System.exit( 1 );
+		}
+		
+		System.out.printf( "Constructor:                 %8.1f ms%n", built / 1e6 );
+		System.out.printf( "Constructor to first frame:  %8.1f ms%n", firstFrame / 1e6 );
+		System.out.printf( "Program start to first frame: %7d ms%n", gui.getStartupTime() );
+		System.exit( 0 );
+	}
+}
\ No newline at end of file
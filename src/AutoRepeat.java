@@ -0,0 +1,143 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Turns the keys held down on each tick into moves, the way delayed auto shift (DAS) and auto repeat rate (ARR) work
+ * A key moves the square once on the tick it is pressed
+ * If it is held for the delay it moves the square again every repeat ticks until it is let go
+ * Moving down has no delay, so holding down drops the square at the repeat rate straight away
+ * Everything is counted in ticks, so a recording plays back the same at any speed
+ */
+public class AutoRepeat
+{
+	//Constants
+	public static final int DEFAULT_DELAY = 170; //Milliseconds a key is held before it repeats
+	public static final int DEFAULT_REPEAT = 1000 / LuminesGame.MOVE_RATE; //Milliseconds between each repeat
+	private static final int KEYS = 4; //Number of keys, one for each bit of InputState
+	public static final int STATE_SIZE = ( 3 + KEYS ) * 4; //Bytes saveState() writes
+	
+	//Instance variables
+	private int delay; //Ticks a key has to be held before it repeats
+	private int repeat; //Ticks between each repeat
+	private int[] held = new int[KEYS]; //Ticks each key has been held since it was pressed
+	private int lastKeys = 0; //Keys held down on the last tick
+	
+	/**
+	 * Constructor
+	 * @param d Ticks a key has to be held before it repeats, at least 0
+	 * @param r Ticks between each repeat, at least 1
+	 */
+	public AutoRepeat( int d, int r )
+	{
+		delay = Math.max( d, 0 );
+		repeat = Math.max( r, 1 );
+	}
+	
+	/**
+	 * Make the default delay and repeat for a game
+	 * @param tickRate Ticks in one second
+	 * @return The auto repeat
+	 */
+	public static AutoRepeat forTickRate( int tickRate )
+	{
+		return new AutoRepeat( toTicks( DEFAULT_DELAY, tickRate ), toTicks( DEFAULT_REPEAT, tickRate ) );
+	}
+	
+	/**
+	 * Change a length of time to the nearest number of ticks
+	 * @param millis The time in milliseconds
+	 * @param tickRate Ticks in one second
+	 * @return The number of ticks
+	 */
+	public static int toTicks( int millis, int tickRate )
+	{
+		return (int) Math.round( millis * (double) tickRate / 1000 );
+	}
+	
+	/**
+	 * Work out which keys move the square on this tick
+	 * @param keys A bit for each key held down, the same as InputState.getBits()
+	 * @param taps A bit for each key pressed since the last tick, even if it was let go again
+	 * @return A bit for each key that moves the square
+	 */
+	public int step( int keys, int taps )
+	{
+		//A key that wasn't held last tick has just been pressed
+		int pressed = taps | ( keys & ~lastKeys );
+		lastKeys = keys;
+		
+		int moves = 0;
+		for( int i = 0; i < KEYS; i++ )
+		{
+			int bit = 1 << i;
+			int wait = bit == InputState.DOWN ? 0 : delay;
+			
+			if( ( pressed & bit ) != 0 )
+			{
+				held[i] = 0;
+				moves |= bit;
+			}
+			else if( ( keys & bit ) != 0 )
+			{
+				held[i]++;
+				if( held[i] >= wait && ( held[i] - wait ) % repeat == 0 )
+					moves |= bit;
+			}
+			else
+				held[i] = 0;
+		}
+		
+		return moves;
+	}
+	
+	/**
+	 * Forget the keys that were held, so the next keys held count as new presses
+	 */
+	public void reset()
+	{
+		lastKeys = 0;
+		for( int i = 0; i < KEYS; i++ )
+			held[i] = 0;
+	}
+	
+	/**
+	 * Write the delay, the repeat and how long each key has been held to a buffer
+	 * @param buffer Where to write them, with at least STATE_SIZE bytes left
+	 */
+	public void saveState( ByteBuffer buffer )
+	{
+		buffer.putInt( delay );
+		buffer.putInt( repeat );
+		buffer.putInt( lastKeys );
+		for( int i = 0; i < KEYS; i++ )
+			buffer.putInt( held[i] );
+	}
+	
+	/**
+	 * Read what saveState() wrote
+	 * @param buffer Where to read it from
+	 */
+	public void loadState( ByteBuffer buffer )
+	{
+		delay = buffer.getInt();
+		repeat = Math.max( buffer.getInt(), 1 );
+		lastKeys = buffer.getInt();
+		for( int i = 0; i < KEYS; i++ )
+			held[i] = buffer.getInt();
+	}
+	
+	/**
+	 * @return Ticks a key has to be held before it repeats
+	 */
+	public int getDelay()
+	{
+		return delay;
+	}
+	
+	/**
+	 * @return Ticks between each repeat
+	 */
+	public int getRepeat()
+	{
+		return repeat;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes frames to an uncompressed AVI file, which almost any video player or editor can open
+ * Each frame is a 24 bit bitmap, bottom row first, with each row padded to a multiple of 4 bytes
+ *
+ * File format:
+ * A RIFF 'AVI ' list holding an 'hdrl' list with the main header and one video stream, a 'movi' list with a '00db' chunk for each frame
+ * and an 'idx1' index that says where each frame is
+ * The frame count and sizes in the headers aren't known until the end, so they are filled in when the file is closed
+ * All numbers are little endian
+ */
+public class AviWriter
+{
+	//Constants
+	public static final long MAX_SIZE = 1L << 30; //Bytes of frames in one file, the most older players read from an AVI without an OpenDML index
+	private static final int HEADER_SIZE = 224; //Bytes before the first frame, up to and including the 'movi' name
+	private static final int MOVI_START = HEADER_SIZE - 4; //Where the 'movi' name is, which the index counts from
+	private static final int AVIF_HASINDEX = 0x10; //The file has an index
+	private static final int AVIIF_KEYFRAME = 0x10; //The frame doesn't depend on any other frame
+	
+	//Instance variables
+	private FileChannel channel; //The file
+	private int width; //Width of the frames
+	private int height; //Height of the frames
+	private int rate; //Frames per scale seconds
+	private int scale; //Seconds that rate frames take up
+	private int stride; //Bytes in one row of a frame
+	private int frameSize; //Bytes in one frame
+	private int frames = 0; //Frames written
+	private long size = HEADER_SIZE; //Bytes written
+	private ByteBuffer chunk = ByteBuffer.allocate( 8 ).order( ByteOrder.LITTLE_ENDIAN ); //Header of the next frame
+	
+	/**
+	 * Constructor
+	 * Starts the file, the headers are filled in when it is closed
+	 * @param file Name of the file
+	 * @param w Width of the frames
+	 * @param h Height of the frames
+	 * @param r Frames per s seconds
+	 * @param s Seconds that r frames take up, so the frame rate doesn't have to be a whole number
+	 * @throws IOException If the file can't be written
+	 */
+	public AviWriter( String file, int w, int h, int r, int s ) throws IOException
+	{
+		width = w;
+		height = h;
+		rate = r;
+		scale = s;
+		stride = getStride( w );
+		frameSize = stride * h;
+		
+		RandomAccessFile out = new RandomAccessFile( file, "rw" );
+		out.setLength( 0 );
+		channel = out.getChannel();
+		writeFully( makeHeader(), 0 );
+	}
+	
+	/**
+	 * @param w Width of a frame
+	 * @return The number of bytes in one row of the frame
+	 */
+	public static int getStride( int w )
+	{
+		return ( w * 3 + 3 ) & ~3;
+	}
+	
+	/**
+	 * Make the headers, with the frame count and sizes as they are so far
+	 * @return The headers
+	 */
+	private ByteBuffer makeHeader()
+	{
+		ByteBuffer b = ByteBuffer.allocate( HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+		long indexSize = 16L * frames;
+		
+		putName( b, "RIFF" );
+		b.putInt( (int)( size + 8 + indexSize - 8 ) ); //Everything after the size
+		putName( b, "AVI " );
+		
+		putName( b, "LIST" );
+		b.putInt( 192 );
+		putName( b, "hdrl" );
+		
+		//Main header
+		putName( b, "avih" );
+		b.putInt( 56 );
+		b.putInt( (int)( 1000000L * scale / rate ) ); //Microseconds per frame
+		b.putInt( (int)( (long) frameSize * rate / scale ) ); //Most bytes per second
+		b.putInt( 0 ); //Padding granularity
+		b.putInt( AVIF_HASINDEX );
+		b.putInt( frames );
+		b.putInt( 0 ); //Initial frames
+		b.putInt( 1 ); //Streams
+		b.putInt( frameSize + 8 ); //Suggested buffer size
+		b.putInt( width );
+		b.putInt( height );
+		b.put( new byte[16] ); //Reserved
+		
+		putName( b, "LIST" );
+		b.putInt( 116 );
+		putName( b, "strl" );
+		
+		//Stream header
+		putName( b, "strh" );
+		b.putInt( 56 );
+		putName( b, "vids" );
+		putName( b, "DIB " );
+		b.putInt( 0 ); //Flags
+		b.putShort( (short) 0 ); //Priority
+		b.putShort( (short) 0 ); //Language
+		b.putInt( 0 ); //Initial frames
+		b.putInt( scale );
+		b.putInt( rate );
+		b.putInt( 0 ); //Start
+		b.putInt( frames ); //Length
+		b.putInt( frameSize ); //Suggested buffer size
+		b.putInt( -1 ); //Quality, -1 for the default
+		b.putInt( 0 ); //Sample size, 0 since each chunk is a whole frame
+		b.putShort( (short) 0 ); //Frame rectangle
+		b.putShort( (short) 0 );
+		b.putShort( (short) width );
+		b.putShort( (short) height );
+		
+		//Stream format, a BITMAPINFOHEADER
+		putName( b, "strf" );
+		b.putInt( 40 );
+		b.putInt( 40 );
+		b.putInt( width );
+		b.putInt( height ); //Positive for bottom row first
+		b.putShort( (short) 1 ); //Planes
+		b.putShort( (short) 24 ); //Bits per pixel
+		b.putInt( 0 ); //No compression
+		b.putInt( frameSize );
+		b.putInt( 0 ); //Pixels per metre
+		b.putInt( 0 );
+		b.putInt( 0 ); //Colours used
+		b.putInt( 0 ); //Important colours
+		
+		putName( b, "LIST" );
+		b.putInt( (int)( size - MOVI_START ) );
+		putName( b, "movi" );
+		
+		b.flip();
+		return b;
+	}
+	
+	/**
+	 * Put the 4 letter name of a chunk
+	 * @param b Where to put it
+	 * @param name The name
+	 */
+	private static void putName( ByteBuffer b, String name )
+	{
+		for( int i = 0; i < 4; i++ )
+			b.put( (byte) name.charAt( i ) );
+	}
+	
+	/**
+	 * Write a whole buffer at a place in the file
+	 * @param b The buffer
+	 * @param position Where in the file to write it
+	 * @throws IOException If it can't be written
+	 */
+	private void writeFully( ByteBuffer b, long position ) throws IOException
+	{
+		while( b.hasRemaining() )
+			position += channel.write( b, position );
+	}
+	
+	/**
+	 * Add a frame to the end of the file
+	 * @param pixels The frame, getFrameSize() bytes of blue, green and red, bottom row first, see getStride()
+	 * @throws IOException If it can't be written
+	 */
+	public void writeFrame( byte[] pixels ) throws IOException
+	{
+		chunk.clear();
+		putName( chunk, "00db" );
+		chunk.putInt( frameSize );
+		chunk.flip();
+		writeFully( chunk, size );
+		writeFully( ByteBuffer.wrap( pixels, 0, frameSize ), size + 8 );
+		
+		size += 8 + frameSize;
+		frames++;
+	}
+	
+	/**
+	 * See if another frame fits in the file
+	 * @return If adding another frame would go past MAX_SIZE
+	 */
+	public boolean isFull()
+	{
+		return size + 8 + frameSize + 16L * ( frames + 1 ) > MAX_SIZE;
+	}
+	
+	/**
+	 * Write the index, fill in the headers and close the file
+	 * @throws IOException If it can't be written
+	 */
+	public void close() throws IOException
+	{
+		//Every frame is the same size, so the index doesn't need to be kept while the frames are written
+		ByteBuffer index = ByteBuffer.allocate( 8 + 16 * frames ).order( ByteOrder.LITTLE_ENDIAN );
+		putName( index, "idx1" );
+		index.putInt( 16 * frames );
+		for( int i = 0; i < frames; i++ )
+		{
+			putName( index, "00db" );
+			index.putInt( AVIIF_KEYFRAME );
+			index.putInt( 4 + i * ( 8 + frameSize ) );
+			index.putInt( frameSize );
+		}
+		index.flip();
+		writeFully( index, size );
+		
+		writeFully( makeHeader(), 0 );
+		channel.close();
+	}
+	
+	/**
+	 * @return Bytes in one frame
+	 */
+	public int getFrameSize()
+	{
+		return frameSize;
+	}
+	
+	/**
+	 * @return Frames written
+	 */
+	public int getFrames()
+	{
+		return frames;
+	}
+	
+	/**
+	 * @return Bytes written, not counting the index
+	 */
+	public long getSize()
+	{
+		return size;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,472 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BitBoard
+ * A board that keeps its blocks as rows of bits instead of an array of cells
+ * Each bit of the colour of a block, and each state, has its own set of bits, one bit for each column in a row
+ * Bit j of a row is column j, so a 2x2 square can be found with shifts and ANDs
+ * Keeping the colour a bit at a time means more colours only need a few more sets of bits, not one more for each colour
+ */
+public class BitBoard extends Board
+{
+	//Constants
+	public static final int PARALLEL_WORDS = 4096; //Longs in the changed rows before more than one thread is used, about a 512x512 board
+	private static final int STRIPE_WORDS = 1024; //Longs given to each thread at most
+	
+	private int words; //How many longs are needed to hold one row
+	private long[][] slices; //Bit s of the colour of each block is in slices[s]
+	private int compared; //How many of the slices two fixed blocks have to match in to be the same colour
+	private long[] fixed; //Blocks that are fixed in place
+	private long[] clear; //Blocks that are going to be cleared by the line
+	private int parallelWords; //Longs in the changed rows before more than one thread is used
+	private MarkStripe wholeBoard = new MarkStripe(); //Used to label clears on one thread without making a new stripe each time
+	
+	//The rows and words being labelled by markClears(), only changed before the stripes start
+	private int firstRow;
+	private int lastRow;
+	private int firstWord;
+	private int lastWord;
+	
+	/**
+	 * Constructor to create an empty board
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 */
+	public BitBoard( int h, int w )
+	{
+		this( h, w, 2 );
+	}
+	
+	/**
+	 * Constructor to create an empty board
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 * @param c Number of colours the blocks can be
+	 */
+	public BitBoard( int h, int w, int c )
+	{
+		super( h, w, c, false );
+		
+		words = ( w + 63 ) / 64;
+		slices = new long[32 - Integer.numberOfLeadingZeros( c )][h * words];
+		
+		//With two colours a fixed block is either 01 or 10, so the second bit never tells them apart any better than the first
+		compared = c == 2 ? 1 : slices.length;
+		fixed = new long[h * words];
+		clear = new long[h * words];
+		
+		//More threads only help if there is more than one processor to run them
+		parallelWords = ForkJoinPool.getCommonPoolParallelism() > 1 ? PARALLEL_WORDS : Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Make every block on the board empty
+	 */
+	public void clear()
+	{
+		for( int s = 0; s < slices.length; s++ )
+			Arrays.fill( slices[s], 0 );
+		Arrays.fill( fixed, 0 );
+		Arrays.fill( clear, 0 );
+		clearState();
+	}
+	
+	/**
+	 * Count the fixed blocks next to a fixed block of the same colour, to the right or below, that aren't labelled to be cleared
+	 * Counts a whole row of pairs at a time
+	 * @return The number of pairs of blocks
+	 */
+	public int countPairs()
+	{
+		int count = 0;
+		for( int i = 0; i < getHeight(); i++ )
+		{
+			int row = i * words;
+			for( int k = 0; k < words; k++ )
+				count += pairsAt( row, k, i + 1 < getHeight() );
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Count the pairs of blocks of the same colour that start in one word of a row
+	 * @param row Index of the first word of the row
+	 * @param k Which word of the row
+	 * @param below Whether or not there is a row below
+	 * @return The number of pairs
+	 */
+	private int pairsAt( int row, int k, boolean below )
+	{
+		boolean next = k + 1 < words;
+		long here = fixed[row + k] & ~clear[row + k];
+		long hereNext = next ? fixed[row + k + 1] & ~clear[row + k + 1] : 0;
+		long right = here & ( ( here >>> 1 ) | ( hereNext << 63 ) );
+		
+		int under = row + words + k;
+		long down = below ? here & fixed[under] & ~clear[under] : 0;
+		
+		//Keep the pairs that match in every bit of their colour
+		for( int s = 0; s < compared; s++ )
+		{
+			long[] slice = slices[s];
+			long c = slice[row + k];
+			long cNext = next ? slice[row + k + 1] : 0;
+			right &= ~( c ^ ( ( c >>> 1 ) | ( cNext << 63 ) ) );
+			if( below )
+				down &= ~( c ^ slice[under] );
+		}
+		
+		return Long.bitCount( right ) + Long.bitCount( down );
+	}
+	
+	/**
+	 * Label every block that is part of a 2x2 square of fixed blocks of the same colour to be cleared
+	 * Goes through the rows that changed since the last call two rows and 64 columns at a time
+	 * When the rows that changed are big enough, they are split into stripes that are checked on different threads
+	 * @return Whether or not any block was newly labelled
+	 */
+	public boolean markClears()
+	{
+		//Squares with their top left block up to one above and one left of a changed block
+		firstRow = Math.max( getDirtyTop() - 1, 0 );
+		lastRow = Math.min( getDirtyBottom(), getHeight() - 2 );
+		firstWord = Math.max( getDirtyLeft() - 1, 0 ) >>> 6;
+		lastWord = Math.min( ( getDirtyRight() >>> 6 ) + 1, words - 1 ); //A square can cover the first column of the next word
+		resetDirty();
+		
+		if( lastRow < firstRow || lastWord < firstWord )
+			return false;
+		
+		//Every row that a square can cover belongs to the stripe
+		MarkStripe stripe;
+		if( ( lastRow - firstRow + 2 ) * ( lastWord - firstWord + 1 ) < parallelWords )
+		{
+			stripe = wholeBoard;
+			stripe.setArea( firstRow, lastRow + 2, firstWord, lastWord + 1 );
+			stripe.mark();
+		}
+		else
+		{
+			stripe = new MarkStripe();
+			stripe.setArea( firstRow, lastRow + 2, firstWord, lastWord + 1 );
+			ForkJoinPool.commonPool().invoke( stripe );
+			
+			for( int k = firstWord; k <= lastWord; k++ )
+				markColumns( k, stripe.columns[k] );
+		}
+		
+		rehash( stripe.keys );
+		countClears( stripe.cleared );
+		return stripe.changed != 0;
+	}
+	
+	/**
+	 * Labels the squares for one part of the rows that changed
+	 * A stripe only ever changes the rows and words it was given, so stripes can run at the same time
+	 * Squares that cross into the row or word before the stripe are found again by the stripe, but it only labels its own half of them
+	 */
+	private class MarkStripe extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L; //Version of the class if it is ever serialized
+		private int rowFrom; //First row the stripe labels
+		private int rowTo; //One after the last row the stripe labels
+		private int wordFrom; //First word of each row the stripe labels
+		private int wordTo; //One after the last word of each row the stripe labels
+		private long changed; //A bit for each column that was newly labelled in some row, so 0 if nothing was
+		private long keys; //How the key of the board has to change for the blocks that were labelled
+		private int cleared; //Number of blocks that were newly labelled
+		private long[] columns; //A bit for each column with a newly labelled block, only used by stripes on other threads
+		
+		/**
+		 * Set the part of the board the stripe labels
+		 * @param rf First row
+		 * @param rt One after the last row
+		 * @param wf First word
+		 * @param wt One after the last word
+		 */
+		public void setArea( int rf, int rt, int wf, int wt )
+		{
+			rowFrom = rf;
+			rowTo = rt;
+			wordFrom = wf;
+			wordTo = wt;
+			changed = 0;
+			keys = 0;
+			cleared = 0;
+		}
+		
+		protected void compute()
+		{
+			int rows = rowTo - rowFrom;
+			int rowWords = wordTo - wordFrom;
+			if( rows * rowWords <= STRIPE_WORDS )
+			{
+				columns = new long[words];
+				mark();
+				return;
+			}
+			
+			//Cut the longer side in half, making horizontal or vertical stripes
+			MarkStripe first = new MarkStripe();
+			MarkStripe second = new MarkStripe();
+			if( rows >= rowWords )
+			{
+				int middle = ( rowFrom + rowTo ) >>> 1;
+				first.setArea( rowFrom, middle, wordFrom, wordTo );
+				second.setArea( middle, rowTo, wordFrom, wordTo );
+			}
+			else
+			{
+				int middle = ( wordFrom + wordTo ) >>> 1;
+				first.setArea( rowFrom, rowTo, wordFrom, middle );
+				second.setArea( rowFrom, rowTo, middle, wordTo );
+			}
+			invokeAll( first, second );
+			
+			changed = first.changed | second.changed;
+			keys = first.keys ^ second.keys;
+			cleared = first.cleared + second.cleared;
+			columns = first.columns;
+			for( int k = second.wordFrom; k < second.wordTo; k++ )
+				columns[k] |= second.columns[k];
+		}
+		
+		/**
+		 * Label the squares in the stripe on this thread
+		 */
+		public void mark()
+		{
+			//The squares that start one row above and one word left of the stripe can also cover it
+			int fromRow = Math.max( rowFrom - 1, firstRow );
+			int toRow = Math.min( rowTo - 1, lastRow );
+			int fromWord = Math.max( wordFrom - 1, firstWord );
+			int toWord = Math.min( wordTo - 1, lastWord );
+			
+			for( int i = fromRow; i <= toRow; i++ )
+			{
+				int top = i * words;
+				int bottom = top + words;
+				
+				long carry = 0; //Squares found in the word before this one
+				for( int k = fromWord; k <= toWord; k++ )
+				{
+					//Squares that have their top left block in this column
+					long squares = squaresAt( top, bottom, k );
+					
+					//Every square also covers the column to its right
+					long marked = squares | ( squares << 1 ) | ( carry >>> 63 );
+					carry = squares;
+					
+					if( k < wordFrom )
+						continue;
+					if( i >= rowFrom )
+						markWord( i, k, marked );
+					if( i + 1 < rowTo )
+						markWord( i + 1, k, marked );
+				}
+			}
+		}
+		
+		/**
+		 * Label some blocks in one word of a row
+		 * @param row The row
+		 * @param k Which word of the row
+		 * @param marked A bit for each block to label
+		 */
+		private void markWord( int row, int k, long marked )
+		{
+			int index = row * words + k;
+			long fresh = marked & ~clear[index];
+			changed |= fresh;
+			keys ^= clearKeys( row, k, fresh );
+			cleared += Long.bitCount( fresh );
+			if( columns == null )
+				markColumns( k, fresh );
+			else
+				columns[k] |= fresh;
+			clear[index] |= marked;
+		}
+	}
+	
+	/**
+	 * Work out how the key of the board changes for blocks that are about to be labelled to be cleared
+	 * @param row Row of the blocks
+	 * @param k Which word of the row the blocks are in
+	 * @param bits A bit for each block being labelled
+	 * @return The change to the key
+	 */
+	private long clearKeys( int row, int k, long bits )
+	{
+		long keys = 0;
+		int index = row * words + k;
+		
+		//Take the blocks one colour at a time, so the colour doesn't have to be put together for each block
+		for( int colour = 1; colour <= getColours() && bits != 0; colour++ )
+		{
+			long same = bits;
+			for( int s = 0; s < slices.length; s++ )
+				same &= ( colour & ( 1 << s ) ) != 0 ? slices[s][index] : ~slices[s][index];
+			bits &= ~same;
+			
+			int c = colour | Cell.FIXED;
+			for( long left = same; left != 0; left &= left - 1 )
+			{
+				int column = ( k << 6 ) + Long.numberOfTrailingZeros( left );
+				keys ^= zobrist( row, column, c ) ^ zobrist( row, column, c | Cell.CLEAR );
+			}
+		}
+		
+		return keys;
+	}
+	
+	/**
+	 * Set how big the changed part of the board has to be before clears are labelled on more than one thread
+	 * @param w Number of longs in the rows that changed, 0 to always use more than one thread, Integer.MAX_VALUE to never
+	 */
+	public void setParallelThreshold( int w )
+	{
+		parallelWords = w;
+	}
+	
+	/**
+	 * @return Number of longs in the changed rows before clears are labelled on more than one thread
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelWords;
+	}
+	
+	/**
+	 * Make the board the same as another board of the same size
+	 * Another BitBoard is copied a row of bits at a time
+	 * @param other The board to copy
+	 */
+	public void copyFrom( Board other )
+	{
+		checkSize( other );
+		
+		if( other instanceof BitBoard )
+		{
+			BitBoard o = (BitBoard) other;
+			for( int s = 0; s < slices.length; s++ )
+				System.arraycopy( o.slices[s], 0, slices[s], 0, slices[s].length );
+			System.arraycopy( o.fixed, 0, fixed, 0, fixed.length );
+			System.arraycopy( o.clear, 0, clear, 0, clear.length );
+		}
+		else
+		{
+			for( int i = 0; i < getHeight(); i++ )
+				for( int j = 0; j < getWidth(); j++ )
+					setCell( i, j, other.getCell( i, j ) );
+		}
+		
+		copyState( other );
+	}
+	
+	/**
+	 * Find the 2x2 squares of fixed blocks of one colour in two rows
+	 * A square is four fixed blocks where the top left block matches the other three in every bit of its colour
+	 * @param top Index of the first word of the top row
+	 * @param bottom Index of the first word of the bottom row
+	 * @param k Which word of the rows to look at
+	 * @return A bit for every column that is the left side of a square
+	 */
+	private long squaresAt( int top, int bottom, int k )
+	{
+		//The column to the right of the last bit in the word is in the next word
+		boolean next = k + 1 < words;
+		long t = fixed[top + k];
+		long b = fixed[bottom + k];
+		long tNext = next ? fixed[top + k + 1] : 0;
+		long bNext = next ? fixed[bottom + k + 1] : 0;
+		long squares = t & b & ( ( t >>> 1 ) | ( tNext << 63 ) ) & ( ( b >>> 1 ) | ( bNext << 63 ) );
+		
+		for( int s = 0; s < compared && squares != 0; s++ )
+		{
+			long[] slice = slices[s];
+			t = slice[top + k];
+			b = slice[bottom + k];
+			tNext = next ? slice[top + k + 1] : 0;
+			bNext = next ? slice[bottom + k + 1] : 0;
+			squares &= ~( t ^ b ) & ~( t ^ ( ( t >>> 1 ) | ( tNext << 63 ) ) ) & ~( b ^ ( ( b >>> 1 ) | ( bNext << 63 ) ) );
+		}
+		
+		return squares;
+	}
+	
+	/**
+	 * Put together the colour of one block from the slices
+	 * @param index Index of the word the block is in
+	 * @param bit The bit for the block in the word
+	 * @return The colour, 0 if there is no block
+	 */
+	private int colourAt( int index, long bit )
+	{
+		int c = 0;
+		for( int s = 0; s < slices.length; s++ )
+			if( ( slices[s][index] & bit ) != 0 )
+				c |= 1 << s;
+		
+		return c;
+	}
+	
+	/**
+	 * Set a cell on the board
+	 * @param row Row to set
+	 * @param column Column to set
+	 * @param c The cell, see Cell
+	 */
+	public void setCell( int row, int column, int c )
+	{
+		int index = row * words + ( column >>> 6 );
+		long bit = 1L << column;
+		
+		int old = getCell( row, column );
+		if( Cell.isFixed( c ) || Cell.isFixed( old ) )
+			touch( row, column );
+		rehash( row, column, old, c );
+		
+		for( int s = 0; s < slices.length; s++ )
+		{
+			if( ( c & ( 1 << s ) ) != 0 )
+				slices[s][index] |= bit;
+			else
+				slices[s][index] &= ~bit;
+		}
+		
+		fixed[index] &= ~bit;
+		clear[index] &= ~bit;
+		if( Cell.isFixed( c ) )
+			fixed[index] |= bit;
+		if( Cell.isClear( c ) )
+		{
+			clear[index] |= bit;
+			markColumn( column );
+		}
+		
+		recount( row, column, old, c );
+	}
+	
+	/**
+	 * Get a cell on the board
+	 * @param row The row to look at
+	 * @param column The column to look at
+	 * @return The cell at row and column, see Cell
+	 */
+	public int getCell( int row, int column )
+	{
+		int index = row * words + ( column >>> 6 );
+		long bit = 1L << column;
+		
+		int c = colourAt( index, bit );
+		if( ( fixed[index] & bit ) != 0 )
+			c |= Cell.FIXED;
+		if( ( clear[index] & bit ) != 0 )
+			c |= Cell.CLEAR;
+		
+		return c;
+	}
+}
\ No newline at end of file
@@ -1,10 +1,66 @@
 /**
  * One block on the grid
+ * Only covers the first two colours, boards keep their blocks as cells, see Cell
  */
-public enum Block 
+public enum Block
 {
 	//All possiblities of the Block type
-	EMPTY, COLOUR_ONE, COLOUR_TWO, COLOUR_ONE_INPLACE, COLOUR_TWO_INPLACE, COLOUR_ONE_CLEAR, COLOUR_TWO_CLEAR;
+	EMPTY( Cell.EMPTY ),
+	COLOUR_ONE( 1 ),
+	COLOUR_TWO( 2 ),
+	COLOUR_ONE_INPLACE( 1 | Cell.FIXED ),
+	COLOUR_TWO_INPLACE( 2 | Cell.FIXED ),
+	COLOUR_ONE_CLEAR( 1 | Cell.FIXED | Cell.CLEAR ),
+	COLOUR_TWO_CLEAR( 2 | Cell.FIXED | Cell.CLEAR );
+	
+	private static final Block[] BY_CELL = makeByCell(); //The block for each cell, null for cells with other colours
+	
+	private final int cell; //The cell the block is
+	
+	/**
+	 * Constructor
+	 * @param c The cell the block is
+	 */
+	private Block( int c )
+	{
+		cell = c;
+	}
+	
+	/**
+	 * Make the table for of()
+	 * @return The block for each cell
+	 */
+	private static Block[] makeByCell()
+	{
+		Block[] table = new Block[Cell.COUNT];
+		for( Block b : values() )
+			table[b.cell] = b;
+		
+		return table;
+	}
+	
+	/**
+	 * Find the block for a cell
+	 * @param c The cell
+	 * @return The block
+	 * @throws IllegalArgumentException If the cell is a colour past the first two
+	 */
+	public static Block of( int c )
+	{
+		Block b = BY_CELL[c];
+		if( b == null )
+			throw new IllegalArgumentException( "Only the first two colours are Blocks, not colour " + Cell.getColour( c ) );
+		
+		return b;
+	}
+	
+	/**
+	 * @return The cell the block is
+	 */
+	public int getCell()
+	{
+		return cell;
+	}
 	
 	/**
 	 * The next type of block
@@ -12,16 +68,7 @@ public enum Block
 	 */
 	public Block getNext()
 	{
-		if( this == COLOUR_ONE )
-			return COLOUR_ONE_INPLACE;
-		else if( this == COLOUR_TWO )
-			return COLOUR_TWO_INPLACE;
-		else if( this == COLOUR_ONE_INPLACE )
-			return COLOUR_ONE_CLEAR;
-		else if( this == COLOUR_TWO_INPLACE )
-			return COLOUR_TWO_CLEAR;
-		else
-			return this;
+		return BY_CELL[Cell.getNext( cell )];
 	}
 	
 	/**
@@ -30,7 +77,7 @@ public enum Block
 	 */
 	public boolean isColourOne()
 	{
-		return this == COLOUR_ONE || this == COLOUR_ONE_INPLACE || this == COLOUR_ONE_CLEAR;
+		return Cell.getColour( cell ) == 1;
 	}
 	
 	/**
@@ -39,7 +86,7 @@ public enum Block
 	 */
 	public boolean isColourTwo()
 	{
-		return this == COLOUR_TWO || this == COLOUR_TWO_INPLACE || this == COLOUR_TWO_CLEAR;
+		return Cell.getColour( cell ) == 2;
 	}
 	
 	/**
@@ -48,8 +95,7 @@ public enum Block
 	 */
 	public boolean isFixed()
 	{
-		return this == COLOUR_ONE_INPLACE || this == COLOUR_ONE_CLEAR ||
-		this == COLOUR_TWO_INPLACE || this == COLOUR_TWO_CLEAR;
+		return Cell.isFixed( cell );
 	}
 	
 	/**
@@ -58,7 +104,7 @@ public enum Block
 	 */
 	public boolean isClear()
 	{
-		return this == COLOUR_ONE_CLEAR || this == COLOUR_TWO_CLEAR;
+		return Cell.isClear( cell );
 	}
 	
 	/**
@@ -68,8 +114,7 @@ public enum Block
 	 */
 	public boolean equalColour( Block b )
 	{
-		return ( ( this == b ) || ( b.getNext() == this ) || ( this.getNext() == b ) ) 
-			&& isFixed() && b.isFixed();
+		return Cell.equalColour( cell, b.cell );
 	}
 	
 	/**
@@ -78,6 +123,6 @@ public enum Block
 	 */
 	public boolean isNotCleared()
 	{
-		return this != COLOUR_ONE_CLEAR && this != COLOUR_TWO_CLEAR;
+		return !Cell.isClear( cell );
 	}
 }
\ No newline at end of file
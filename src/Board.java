@@ -1,10 +1,32 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Board
- * Holds a 2D array of blocks
+ * Holds the cells of the board, see Cell
+ * getPiece() and setPiece() give the cells as Blocks, for games with two colours
  */
 public class Board
 {
-	private Block[][] board; //The array on the screen
+	private byte[] cells; //Each cell of the board, row by row
+	private int height; //Height of the board in blocks
+	private int width; //Width of the board in blocks
+	private int colours; //Number of colours the blocks can be
+	private long hash = 0; //Zobrist key of the blocks on the board, kept up to date as blocks change
+	private long[] clearColumns; //A bit for each column that might have blocks labelled to be cleared
+	private static final Block[] BLOCKS = Block.values(); //Each type of block by its ordinal
+	
+	//Where the fixed blocks are, kept up to date as blocks change
+	private int[] tops; //Row of the highest fixed block in each column, the height of the board if there isn't one
+	private int[] columnFixed; //Number of fixed blocks in each column
+	private int fixedBlocks = 0; //Number of fixed blocks on the board
+	private int clearBlocks = 0; //Number of blocks labelled to be cleared on the board
+	
+	//Area of the board where fixed blocks have changed since the last time blocks were labelled
+	private int dirtyTop; //Top row of the area
+	private int dirtyBottom; //Bottom row of the area
+	private int dirtyLeft; //Left column of the area
+	private int dirtyRight; //Right column of the area
 	
 	/**
 	 * Constructor to create an empty board
@@ -13,30 +35,584 @@ public class Board
 	 */
 	public Board( int h, int w )
 	{
-		board = new Block[h][w];
+		this( h, w, 2 );
+	}
+	
+	/**
+	 * Constructor to create an empty board
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 * @param c Number of colours the blocks can be
+	 */
+	public Board( int h, int w, int c )
+	{
+		this( h, w, c, true );
+	}
+	
+	/**
+	 * Constructor for boards that may keep the blocks somewhere else
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 * @param c Number of colours the blocks can be
+	 * @param useArray Whether or not to create the array of cells
+	 */
+	protected Board( int h, int w, int c, boolean useArray )
+	{
+		Cell.checkColours( c );
+		height = h;
+		width = w;
+		colours = c;
+		clearColumns = new long[( w + 63 ) / 64];
+		tops = new int[w];
+		columnFixed = new int[w];
+		Arrays.fill( tops, h );
+		resetDirty();
+		
+		//Every cell starts empty
+		if( useArray )
+			cells = new byte[h * w];
+	}
+	
+	/**
+	 * See if there are no blocks fixed on the board
+	 * @return If the board has no fixed blocks
+	 */
+	public boolean isBoardEmpty()
+	{
+		return fixedBlocks == 0;
+	}
+	
+	/**
+	 * Make every block on the board empty
+	 */
+	public void clear()
+	{
+		Arrays.fill( cells, (byte) Cell.EMPTY );
+		clearState();
+	}
+	
+	/**
+	 * Forget the key, the tops and counts of the blocks and the area that changed, after every block has been emptied
+	 */
+	protected void clearState()
+	{
+		hash = 0;
+		Arrays.fill( clearColumns, 0 );
+		Arrays.fill( tops, height );
+		Arrays.fill( columnFixed, 0 );
+		fixedBlocks = 0;
+		clearBlocks = 0;
+		resetDirty();
+	}
+	
+	/**
+	 * Find the top of the fixed blocks in a column
+	 * @param column The column to look at
+	 * @return The row of the highest fixed block, or the height of the board if there isn't one
+	 */
+	public int getTop( int column )
+	{
+		return tops[column];
+	}
+	
+	/**
+	 * Find the first fixed block in a column at or below a row, which is where something falling from that row lands on
+	 * @param column The column to look at
+	 * @param row The row to start looking from
+	 * @return The row of the fixed block, or the height of the board if there isn't one
+	 */
+	public int getTop( int column, int row )
+	{
+		if( row <= tops[column] )
+			return tops[column];
+		if( isSolid( column ) )
+			return row;
+		
+		//Only a column with gaps in its stack has to be looked through
+		int i = row;
+		while( i < height && !Cell.isFixed( getCell( i, column ) ) )
+			i++;
+		
+		return i;
+	}
+	
+	/**
+	 * See if there is a fixed block in a place
+	 * @param row The row to look at
+	 * @param column The column to look at
+	 * @return If the block there is fixed
+	 */
+	public boolean isFixed( int row, int column )
+	{
+		if( row < tops[column] )
+			return false;
+		if( isSolid( column ) )
+			return true;
+		
+		return Cell.isFixed( getCell( row, column ) );
+	}
+	
+	/**
+	 * See if the fixed blocks in a column go all the way down from the top one with no gaps, which they always do in a game
+	 * @param column The column to look at
+	 * @return If there are no gaps
+	 */
+	private boolean isSolid( int column )
+	{
+		return columnFixed[column] == height - tops[column];
+	}
+	
+	/**
+	 * Count the blocks that are labelled to be cleared
+	 * @return The number of blocks
+	 */
+	public int countClear()
+	{
+		return clearBlocks;
+	}
+	
+	/**
+	 * Count the fixed blocks next to a fixed block of the same colour, to the right or below, that aren't labelled to be cleared
+	 * @return The number of pairs of blocks
+	 */
+	public int countPairs()
+	{
+		int count = 0;
+		for( int i = 0; i < height; i++ )
+		{
+			for( int j = 0; j < width; j++ )
+			{
+				int c = getCell( i, j );
+				if( !Cell.isFixed( c ) || Cell.isClear( c ) )
+					continue;
+				
+				if( j + 1 < width && !Cell.isClear( getCell( i, j + 1 ) ) && Cell.equalColour( c, getCell( i, j + 1 ) ) )
+					count++;
+				if( i + 1 < height && !Cell.isClear( getCell( i + 1, j ) ) && Cell.equalColour( c, getCell( i + 1, j ) ) )
+					count++;
+			}
+		}
 		
-		//Fill the board with empty blocks
-		for( int i = 0; i < h; i++ )
+		return count;
+	}
+	
+	/**
+	 * Label every block that is part of a 2x2 square of fixed blocks of the same colour to be cleared
+	 * Only the squares that overlap a block that changed since the last call are checked,
+	 * every other square was already labelled the last time
+	 * Labelling a block doesn't change its colour, so one call labels everything
+	 * @return Whether or not any block was newly labelled
+	 */
+	public boolean markClears()
+	{
+		boolean changed = false;
+		
+		//Squares with their top left block up to one above and one left of a changed block
+		int top = Math.max( dirtyTop - 1, 0 );
+		int bottom = Math.min( dirtyBottom, height - 2 );
+		int left = Math.max( dirtyLeft - 1, 0 );
+		int right = Math.min( dirtyRight, width - 2 );
+		resetDirty();
+		
+		for( int i = top; i <= bottom; i++ )
 		{
-			for( int j = 0; j < w; j++ )
+			for( int j = left; j <= right; j++ )
 			{
-				board[i][j] = Block.EMPTY;
+				int pos = getCell( i, j );
+				if( Cell.isFixed( pos ) && Cell.equalColour( pos, getCell( i + 1, j ) )
+						&& Cell.equalColour( pos, getCell( i, j + 1 ) )
+						&& Cell.equalColour( pos, getCell( i + 1, j + 1 ) ) )
+				{
+					changed |= markClear( i, j );
+					changed |= markClear( i + 1, j );
+					changed |= markClear( i, j + 1 );
+					changed |= markClear( i + 1, j + 1 );
+				}
 			}
 		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Label one block to be cleared
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 * @return Whether or not the block wasn't already labelled
+	 */
+	private boolean markClear( int row, int column )
+	{
+		int c = getCell( row, column );
+		if( !Cell.isClear( c ) )
+		{
+			cells[row * width + column] = (byte) Cell.getNext( c );
+			rehash( row, column, c, Cell.getNext( c ) );
+			markColumn( column );
+			clearBlocks++;
+			return true;
+		}
+		
+		return false;
 	}
 	
 	/**
-	 * 
-	 * @return
+	 * Take the blocks labelled to be cleared out of a column and let the fixed blocks above them fall into the gaps
+	 * Goes up the column once from the bottom, stopping at the first block that isn't fixed, so a falling square is left alone
+	 * @param column The column to clear
+	 * @return The number of blocks taken out
 	 */
-	public boolean isBoardEmpty()
+	public int compactColumn( int column )
 	{
-		for( int i = 0; i < board.length; i++ )
-			for( int j = 0; j < board[i].length; j++ )
-				if( getPiece( i, j ).isFixed() )
-					return false;
+		int to = height - 1; //Where the next block that stays goes
+		int from = height - 1; //The block being looked at
+		for( ; from >= 0; from-- )
+		{
+			int c = getCell( from, column );
+			if( !Cell.isFixed( c ) )
+				break;
+			
+			if( !Cell.isClear( c ) )
+			{
+				if( to != from )
+					setCell( to, column, c );
+				to--;
+			}
+		}
 		
-		return true;
+		//Empty the rows that the fallen blocks left behind
+		for( int i = to; i > from; i-- )
+			setCell( i, column, Cell.EMPTY );
+		
+		//Blocks above the gap stay where they are, so the column stays marked if any of them are labelled
+		boolean left = false;
+		for( int i = from; i >= 0 && !left; i-- )
+			left = Cell.isClear( getCell( i, column ) );
+		if( !left )
+			clearColumns[column >>> 6] &= ~( 1L << column );
+		
+		return to - from;
+	}
+	
+	/**
+	 * See if a column might have blocks labelled to be cleared
+	 * A column stays marked until compactColumn() is called on it, so this can be true when there aren't any
+	 * @param column The column to look at
+	 * @return False if the column has no blocks labelled to be cleared
+	 */
+	public boolean hasClear( int column )
+	{
+		return ( clearColumns[column >>> 6] & ( 1L << column ) ) != 0;
+	}
+	
+	/**
+	 * Remember that a column has a block labelled to be cleared
+	 * @param column The column
+	 */
+	protected void markColumn( int column )
+	{
+		clearColumns[column >>> 6] |= 1L << column;
+	}
+	
+	/**
+	 * Remember that some columns have blocks labelled to be cleared
+	 * @param k Which 64 columns, the same as the word of a BitBoard row
+	 * @param bits A bit for each column with a block labelled
+	 */
+	protected void markColumns( int k, long bits )
+	{
+		clearColumns[k] |= bits;
+	}
+	
+	/**
+	 * Keep the tops and counts of the fixed blocks up to date after a block changed
+	 * Has to be called after the block is changed, so a new top can be found when the old one goes
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 * @param old The cell it was
+	 * @param c The cell it is now
+	 */
+	protected void recount( int row, int column, int old, int c )
+	{
+		if( Cell.isClear( old ) )
+			clearBlocks--;
+		if( Cell.isClear( c ) )
+			clearBlocks++;
+		
+		if( Cell.isFixed( old ) == Cell.isFixed( c ) )
+			return;
+		
+		if( Cell.isFixed( c ) )
+		{
+			fixedBlocks++;
+			columnFixed[column]++;
+			if( row < tops[column] )
+				tops[column] = row;
+		}
+		else
+		{
+			fixedBlocks--;
+			columnFixed[column]--;
+			if( row == tops[column] )
+			{
+				//Look down for the next fixed block, which is usually the one right below
+				int i = row + 1;
+				if( columnFixed[column] == 0 )
+					i = height;
+				while( i < height && !Cell.isFixed( getCell( i, column ) ) )
+					i++;
+				tops[column] = i;
+			}
+		}
+	}
+	
+	/**
+	 * Count blocks that were labelled to be cleared without going through setPiece()
+	 * @param n The number of blocks
+	 */
+	protected void countClears( int n )
+	{
+		clearBlocks += n;
+	}
+	
+	/**
+	 * Make the board the same as another board of the same size
+	 * @param other The board to copy
+	 */
+	public void copyFrom( Board other )
+	{
+		checkSize( other );
+		
+		for( int i = 0; i < height; i++ )
+			for( int j = 0; j < width; j++ )
+				cells[i * width + j] = (byte) other.getCell( i, j );
+		
+		copyState( other );
+	}
+	
+	/**
+	 * Make sure another board is the same size as this one, with the same number of colours
+	 * @param other The other board
+	 */
+	protected void checkSize( Board other )
+	{
+		if( other.height != height || other.width != width )
+			throw new IllegalArgumentException( "Can't copy a " + other.height + "x" + other.width + " board to a " + height + "x" + width + " board" );
+		if( other.colours != colours )
+			throw new IllegalArgumentException( "Can't copy a board with " + other.colours + " colours to one with " + colours );
+	}
+	
+	/**
+	 * Copy the key, the tops and counts of the blocks and the area that changed from another board, after its blocks have been copied
+	 * @param other The board that was copied
+	 */
+	protected void copyState( Board other )
+	{
+		hash = other.hash;
+		System.arraycopy( other.clearColumns, 0, clearColumns, 0, clearColumns.length );
+		System.arraycopy( other.tops, 0, tops, 0, tops.length );
+		System.arraycopy( other.columnFixed, 0, columnFixed, 0, columnFixed.length );
+		fixedBlocks = other.fixedBlocks;
+		clearBlocks = other.clearBlocks;
+		dirtyTop = other.dirtyTop;
+		dirtyBottom = other.dirtyBottom;
+		dirtyLeft = other.dirtyLeft;
+		dirtyRight = other.dirtyRight;
+	}
+	
+	/**
+	 * @return The number of bytes saveState() writes
+	 */
+	public int getStateSize()
+	{
+		return 16 + ( height * width * getCellBits() + 7 ) / 8;
+	}
+	
+	/**
+	 * @return Bits each cell is packed into by saveState()
+	 */
+	private int getCellBits()
+	{
+		return colours == 2 ? 3 : 6;
+	}
+	
+	/**
+	 * Write the blocks and the area that changed to a buffer
+	 * Each block is packed into 3 bits as its Block ordinal when there are two colours, or 6 bits as its cell when there are more
+	 * The key, tops and counts aren't written, they are worked out again when the state is loaded
+	 * @param buffer Where to write the state, with at least getStateSize() bytes left
+	 */
+	public void saveState( ByteBuffer buffer )
+	{
+		buffer.putInt( dirtyTop );
+		buffer.putInt( dirtyBottom );
+		buffer.putInt( dirtyLeft );
+		buffer.putInt( dirtyRight );
+		
+		int size = getCellBits();
+		int bits = 0;
+		int used = 0;
+		for( int i = 0; i < height; i++ )
+		{
+			for( int j = 0; j < width; j++ )
+			{
+				int c = getCell( i, j );
+				bits |= ( colours == 2 ? Block.of( c ).ordinal() : c ) << used;
+				used += size;
+				if( used >= 8 )
+				{
+					buffer.put( (byte) bits );
+					bits >>>= 8;
+					used -= 8;
+				}
+			}
+		}
+		if( used > 0 )
+			buffer.put( (byte) bits );
+	}
+	
+	/**
+	 * Read the blocks and the area that changed from a buffer written by saveState() for a board of the same size
+	 * @param buffer Where to read the state from
+	 */
+	public void loadState( ByteBuffer buffer )
+	{
+		int top = buffer.getInt();
+		int bottom = buffer.getInt();
+		int left = buffer.getInt();
+		int right = buffer.getInt();
+		
+		clear();
+		int size = getCellBits();
+		int mask = ( 1 << size ) - 1;
+		int bits = 0;
+		int have = 0;
+		for( int i = 0; i < height; i++ )
+		{
+			for( int j = 0; j < width; j++ )
+			{
+				if( have < size )
+				{
+					bits |= ( buffer.get() & 0xFF ) << have;
+					have += 8;
+				}
+				int c = bits & mask;
+				if( c != 0 )
+					setCell( i, j, colours == 2 ? BLOCKS[c].getCell() : c );
+				bits >>>= size;
+				have -= size;
+			}
+		}
+		
+		//Setting the blocks marked them as changed, but only the saved area was waiting to be labelled
+		dirtyTop = top;
+		dirtyBottom = bottom;
+		dirtyLeft = left;
+		dirtyRight = right;
+	}
+	
+	/**
+	 * Change the key of the board for a block that changed
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 * @param old The cell it was
+	 * @param c The cell it is now
+	 */
+	protected void rehash( int row, int column, int old, int c )
+	{
+		hash ^= zobrist( row, column, old ) ^ zobrist( row, column, c );
+	}
+	
+	/**
+	 * Change the key of the board for blocks that changed, once the change has been worked out
+	 * @param keys The change to the key
+	 */
+	protected void rehash( long keys )
+	{
+		hash ^= keys;
+	}
+	
+	/**
+	 * Get the random number for one block in one place
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 * @param b The block
+	 * @return The number, 0 for an empty block
+	 */
+	public static long zobrist( int row, int column, Block b )
+	{
+		return zobrist( row, column, b.getCell() );
+	}
+	
+	/**
+	 * Get the random number for one cell in one place
+	 * The numbers are made by mixing the place and cell with the SplitMix64 finalizer, so no table is needed for any size of board
+	 * @param row Row of the cell
+	 * @param column Column of the cell
+	 * @param c The cell
+	 * @return The number, 0 for an empty cell
+	 */
+	public static long zobrist( int row, int column, int c )
+	{
+		if( c == Cell.EMPTY )
+			return 0;
+		
+		return PieceSource.mix( ( ( (long) row << 24 ) + ( (long) column << 6 ) + c ) * PieceSource.GAMMA );
+	}
+	
+	/**
+	 * Remember that a block changed so the squares around it get checked again
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 */
+	protected void touch( int row, int column )
+	{
+		dirtyTop = Math.min( dirtyTop, row );
+		dirtyBottom = Math.max( dirtyBottom, row );
+		dirtyLeft = Math.min( dirtyLeft, column );
+		dirtyRight = Math.max( dirtyRight, column );
+	}
+	
+	/**
+	 * Forget about the changed blocks
+	 */
+	protected void resetDirty()
+	{
+		dirtyTop = height;
+		dirtyBottom = -1;
+		dirtyLeft = width;
+		dirtyRight = -1;
+	}
+	
+	/**
+	 * @return The top row of the area that changed since the blocks were last labelled
+	 */
+	protected int getDirtyTop()
+	{
+		return dirtyTop;
+	}
+	
+	/**
+	 * @return The bottom row of the area that changed since the blocks were last labelled
+	 */
+	protected int getDirtyBottom()
+	{
+		return dirtyBottom;
+	}
+	
+	/**
+	 * @return The left column of the area that changed since the blocks were last labelled
+	 */
+	protected int getDirtyLeft()
+	{
+		return dirtyLeft;
+	}
+	
+	/**
+	 * @return The right column of the area that changed since the blocks were last labelled
+	 */
+	protected int getDirtyRight()
+	{
+		return dirtyRight;
 	}
 	
 	/**
@@ -47,7 +623,7 @@ public class Board
 	 */
 	public void setPiece( int row, int column, Block b )
 	{
-		board[row][column] = b;
+		setCell( row, column, b.getCell() );
 	}
 	
 	/**
@@ -55,9 +631,74 @@ public class Board
 	 * @param row The row to look at
 	 * @param column The column to look at
 	 * @return The piece at row and column
+	 * @throws IllegalArgumentException If the block there is a colour past the first two
 	 */
 	public Block getPiece( int row, int column )
 	{
-		return board[row][column];
+		return Block.of( getCell( row, column ) );
+	}
+	
+	/**
+	 * Set a cell on the board
+	 * @param row Row to set
+	 * @param column Column to set
+	 * @param c The cell, see Cell
+	 */
+	public void setCell( int row, int column, int c )
+	{
+		int old = cells[row * width + column];
+		if( Cell.isFixed( c ) || Cell.isFixed( old ) )
+			touch( row, column );
+		
+		rehash( row, column, old, c );
+		cells[row * width + column] = (byte) c;
+		recount( row, column, old, c );
+		if( Cell.isClear( c ) )
+			markColumn( column );
+	}
+	
+	/**
+	 * Get a cell on the board
+	 * @param row The row to look at
+	 * @param column The column to look at
+	 * @return The cell at row and column, see Cell
+	 */
+	public int getCell( int row, int column )
+	{
+		return cells[row * width + column];
+	}
+	
+	/**
+	 * Get the Zobrist key of the board
+	 * Boards with the same blocks in the same places have the same key
+	 * @return The key
+	 */
+	public long getHash()
+	{
+		return hash;
+	}
+	
+	/**
+	 * @return The height of the board in blocks
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	/**
+	 * @return The width of the board in blocks
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * @return The number of colours the blocks can be
+	 */
+	public int getColours()
+	{
+		return colours;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+/**
+ * Cell
+ * One place on the board as a small number, so games can have anywhere from 2 to MAX_COLOURS colours of blocks
+ * The low 4 bits are the colour of the block, from 1 to MAX_COLOURS, or 0 if the cell is empty
+ * FIXED is set once the block has landed, and CLEAR as well once it is labelled to be cleared
+ * Every question about a cell is answered from a table made once, instead of comparing it one case at a time
+ */
+public class Cell
+{
+	//Constants
+	public static final int EMPTY = 0; //A cell with no block
+	public static final int MAX_COLOURS = 8; //Most colours a game can have
+	public static final int COLOUR_MASK = 15; //Bits of a cell that hold the colour
+	public static final int FIXED = 16; //Set for a block that has landed
+	public static final int CLEAR = 32; //Set for a block that is labelled to be cleared, which is always fixed as well
+	public static final int COUNT = 64; //Number of values a cell can have, not all of which are used
+	
+	//Tables, by the value of the cell
+	private static final byte[] NEXT = makeNext(); //What the block becomes when it lands or is labelled to be cleared
+	private static final boolean[] IS_FIXED = makeTable( FIXED ); //Whether or not the block has landed
+	private static final boolean[] IS_CLEAR = makeTable( CLEAR ); //Whether or not the block is labelled to be cleared
+	private static final boolean[] IS_FALLING = makeTable( 0 ); //Whether or not there is a block that hasn't landed
+	
+	/**
+	 * Make the table for getNext()
+	 * A falling block becomes fixed, a fixed block becomes labelled to be cleared and anything else stays the same
+	 * @return The table
+	 */
+	private static byte[] makeNext()
+	{
+		byte[] table = new byte[COUNT];
+		for( int c = 0; c < COUNT; c++ )
+		{
+			if( !isValid( c ) || c == EMPTY || ( c & CLEAR ) != 0 )
+				table[c] = (byte) c;
+			else if( ( c & FIXED ) != 0 )
+				table[c] = (byte)( c | CLEAR );
+			else
+				table[c] = (byte)( c | FIXED );
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Make a table of which cells hold a block in one state
+	 * @param state FIXED or CLEAR for the cells that have that bit set, 0 for the cells with a block that isn't fixed
+	 * @return The table
+	 */
+	private static boolean[] makeTable( int state )
+	{
+		boolean[] table = new boolean[COUNT];
+		for( int c = 0; c < COUNT; c++ )
+		{
+			if( !isValid( c ) || c == EMPTY )
+				continue;
+			
+			if( state == 0 )
+				table[c] = ( c & FIXED ) == 0;
+			else
+				table[c] = ( c & state ) != 0;
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * @param c A number
+	 * @return Whether or not the number is a cell that can be on a board
+	 */
+	private static boolean isValid( int c )
+	{
+		int colour = c & COLOUR_MASK;
+		if( c == EMPTY )
+			return true;
+		if( colour == 0 || colour > MAX_COLOURS || c >= COUNT )
+			return false;
+		
+		//A block can only be labelled to be cleared once it has landed
+		return ( c & CLEAR ) == 0 || ( c & FIXED ) != 0;
+	}
+	
+	/**
+	 * @param c The cell
+	 * @return What the block becomes when it lands or is labelled to be cleared
+	 */
+	public static int getNext( int c )
+	{
+		return NEXT[c];
+	}
+	
+	/**
+	 * @param c The cell
+	 * @return The colour of the block, 0 if the cell is empty
+	 */
+	public static int getColour( int c )
+	{
+		return c & COLOUR_MASK;
+	}
+	
+	/**
+	 * @param c The cell
+	 * @return Whether or not the block has landed
+	 */
+	public static boolean isFixed( int c )
+	{
+		return IS_FIXED[c];
+	}
+	
+	/**
+	 * @param c The cell
+	 * @return Whether or not the block should be cleared by the line
+	 */
+	public static boolean isClear( int c )
+	{
+		return IS_CLEAR[c];
+	}
+	
+	/**
+	 * @param c The cell
+	 * @return Whether or not there is a block that hasn't landed yet
+	 */
+	public static boolean isFalling( int c )
+	{
+		return IS_FALLING[c];
+	}
+	
+	/**
+	 * Check if two cells hold fixed blocks of the same colour
+	 * @param a One cell
+	 * @param b The other cell
+	 * @return If the two blocks are fixed and the same colour
+	 */
+	public static boolean equalColour( int a, int b )
+	{
+		return ( ( a ^ b ) & COLOUR_MASK ) == 0 && IS_FIXED[a] && IS_FIXED[b];
+	}
+	
+	/**
+	 * Check the number of colours for a game
+	 * @param colours The number of colours
+	 * @throws IllegalArgumentException If a game can't have that many colours
+	 */
+	public static void checkColours( int colours )
+	{
+		if( colours < 2 || colours > MAX_COLOURS )
+			throw new IllegalArgumentException( "A game can have 2 to " + MAX_COLOURS + " colours, not " + colours );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Saves snapshots of a game to a file on a thread of its own, so the game never waits for the disk
+ * The snapshot is taken on the game's thread, which only takes a few microseconds, and then handed to the writer thread
+ * If a new snapshot comes before the last one was written, only the new one is written
+ */
+public class Checkpointer implements Runnable
+{
+	//Instance variables
+	private String file; //Where the snapshots are saved
+	private ByteBuffer spare; //Buffer the next snapshot is taken into, only used by the game's thread
+	private ByteBuffer waiting; //Snapshot waiting to be written, null if there isn't one
+	private ByteBuffer free; //Buffer the writer thread is done with, null if it hasn't given one back
+	private boolean closing = false; //Whether or not the writer should finish up and stop
+	private volatile String error; //What went wrong the last time a snapshot couldn't be written, null if nothing did
+	private volatile long saved = 0; //Snapshots written
+	private Thread thread; //The writer thread
+	
+	/**
+	 * Constructor
+	 * Starts the writer thread
+	 * @param f Name of the file to save the snapshots to
+	 */
+	public Checkpointer( String f )
+	{
+		file = f;
+		thread = new Thread( this, "Checkpoint writer" );
+		thread.setDaemon( true );
+		thread.start();
+	}
+	
+	/**
+	 * Take a snapshot of a game and ask for it to be saved, only from the game's thread
+	 * Returns as soon as the snapshot is taken
+	 * @param game The game
+	 */
+	public void save( LuminesGame game )
+	{
+		int size = GameSnapshot.getSize( game );
+		if( spare == null || spare.capacity() < size )
+			spare = ByteBuffer.allocate( size );
+		
+		spare.clear();
+		GameSnapshot.write( game, spare );
+		spare.flip();
+		
+		synchronized( this )
+		{
+			//An older snapshot that wasn't written yet isn't needed any more, so its buffer is used next time
+			ByteBuffer old = waiting;
+			waiting = spare;
+			spare = old != null ? old : free;
+			if( old == null )
+				free = null;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Write snapshots until the writer is closed
+	 */
+	public void run()
+	{
+		while( true )
+		{
+			ByteBuffer snapshot;
+			synchronized( this )
+			{
+				while( waiting == null && !closing )
+				{
+					try
+					{
+						wait();
+					}
+					catch( InterruptedException e )
+					{
+					}
+				}
+				
+				if( waiting == null )
+					return;
+				
+				snapshot = waiting;
+				waiting = null;
+			}
+			
+			try
+			{
+				GameSnapshot.writeFile( snapshot, file );
+				saved++;
+				error = null;
+			}
+			catch( IOException e )
+			{
+				error = e.getMessage();
+				System.err.println( "Could not save the game: " + error );
+			}
+			
+			synchronized( this )
+			{
+				free = snapshot;
+			}
+		}
+	}
+	
+	/**
+	 * Write the snapshot that is waiting, if there is one, and stop the writer thread
+	 * Waits until it is written
+	 */
+	public void close()
+	{
+		synchronized( this )
+		{
+			closing = true;
+			notifyAll();
+		}
+		
+		try
+		{
+			thread.join();
+		}
+		catch( InterruptedException e )
+		{
+		}
+	}
+	
+	/**
+	 * @return What went wrong the last time a snapshot couldn't be saved, null if the last save worked
+	 */
+	public String getError()
+	{
+		return error;
+	}
+	
+	/**
+	 * @return The number of snapshots written
+	 */
+	public long getSaved()
+	{
+		return saved;
+	}
+}
\ No newline at end of file
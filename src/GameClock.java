@@ -0,0 +1,17 @@
+/**
+ * Where the game gets the time from
+ * Lets the game run on the real time or on a clock that only moves when the game does
+ */
+public interface GameClock
+{
+	/**
+	 * Get the current time
+	 * @return The current time in milliseconds
+	 */
+	public long getTime();
+	
+	/**
+	 * Called by the game once at the start of every tick
+	 */
+	public void tick();
+}
\ No newline at end of file
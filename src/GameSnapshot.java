@@ -0,0 +1,223 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saves a whole game to bytes and makes a game from them again, so a game can be carried on after a restart or on another computer
+ * Every field is written by hand, so saving takes a few microseconds and nothing depends on how the classes are laid out
+ * Files are written next to where they go and then renamed over the old one, so a crash part way through never leaves half a file
+ *
+ * File format:
+ * The letters LSAV, a version byte, the tick rate as an int, the seed as a long, the height and width of the board as ints,
+ * the number of colours as a byte and the ticks on the game's TickClock as a long, -1 if it uses another clock
+ * Then the game's state, written by LuminesGame.saveState(), with every number big endian
+ * Version 1 snapshots don't have the number of colours, and are always of games with two
+ */
+public class GameSnapshot
+{
+	//Constants
+	public static final byte[] MAGIC = { 'L', 'S', 'A', 'V' }; //Start of every snapshot
+	public static final int VERSION = 2; //Version of the format
+	private static final int HEADER_SIZE = 4 + 1 + 4 + 8 + 4 + 4 + 1 + 8; //Bytes before the game's state
+	
+	/**
+	 * @param game The game
+	 * @return The number of bytes in a snapshot of the game
+	 */
+	public static int getSize( LuminesGame game )
+	{
+		return HEADER_SIZE + game.getStateSize();
+	}
+	
+	/**
+	 * Write a snapshot of a game to a buffer
+	 * @param game The game
+	 * @param buffer Where to write the snapshot, with at least getSize() bytes left
+	 */
+	public static void write( LuminesGame game, ByteBuffer buffer )
+	{
+		buffer.put( MAGIC );
+		buffer.put( (byte) VERSION );
+		buffer.putInt( game.getTickRate() );
+		buffer.putLong( game.getPieceSource().getSeed() );
+		buffer.putInt( game.getBoard().getHeight() );
+		buffer.putInt( game.getBoard().getWidth() );
+		buffer.put( (byte) game.getColours() );
+		
+		//Squares that were never rotated count from time 0, so the clock has to carry on from the same time for old recordings to play the same
+		GameClock clock = game.getClock();
+		buffer.putLong( clock instanceof TickClock ? ( (TickClock) clock ).getTicks() : -1 );
+		game.saveState( buffer );
+	}
+	
+	/**
+	 * Make a game from a snapshot
+	 * The game uses a TickClock carrying on from the saved one, or the real time if the saved game did
+	 * @param buffer Where to read the snapshot from
+	 * @return The game, the same as when the snapshot was written
+	 * @throws IOException If the buffer doesn't hold a snapshot
+	 */
+	public static LuminesGame read( ByteBuffer buffer ) throws IOException
+	{
+		int start = buffer.position();
+		int version = readVersion( buffer );
+		int tickRate = buffer.getInt();
+		long seed = buffer.getLong();
+		int height = buffer.getInt();
+		int width = buffer.getInt();
+		int colours = version >= 2 ? buffer.get() : 2;
+		long ticks = buffer.getLong();
+		
+		GameClock clock = ticks >= 0 ? new TickClock( tickRate ) : new SystemClock();
+		LuminesGame game;
+		try
+		{
+			game = new LuminesGame( clock, tickRate, seed, height, width, colours );
+		}
+		catch( IllegalArgumentException e )
+		{
+			throw new IOException( "The snapshot is of a game that can't be made: " + e.getMessage() );
+		}
+		buffer.position( start );
+		read( buffer, game );
+		return game;
+	}
+	
+	/**
+	 * Load a snapshot into a game that already has the same tick rate, size and number of colours, without making any new objects
+	 * @param buffer Where to read the snapshot from
+	 * @param game The game to load it into
+	 * @throws IOException If the buffer doesn't hold a snapshot for a game like this one
+	 */
+	public static void read( ByteBuffer buffer, LuminesGame game ) throws IOException
+	{
+		int version = readVersion( buffer );
+		int tickRate = buffer.getInt();
+		buffer.getLong();
+		int height = buffer.getInt();
+		int width = buffer.getInt();
+		int colours = version >= 2 ? buffer.get() : 2;
+		long ticks = buffer.getLong();
+		
+		if( tickRate != game.getTickRate() || height != game.getBoard().getHeight() || width != game.getBoard().getWidth() )
+			throw new IOException( "The snapshot is of a " + height + "x" + width + " game at " + tickRate + " ticks a second, not a "
+					+ game.getBoard().getHeight() + "x" + game.getBoard().getWidth() + " game at " + game.getTickRate() );
+		if( colours != game.getColours() )
+			throw new IOException( "The snapshot is of a game with " + colours + " colours, not " + game.getColours() );
+		if( buffer.remaining() < game.getStateSize() )
+			throw new IOException( "The snapshot is cut off" );
+		
+		GameClock clock = game.getClock();
+		if( ticks >= 0 && clock instanceof TickClock )
+			( (TickClock) clock ).setTicks( ticks );
+		game.loadState( buffer );
+	}
+	
+	/**
+	 * Check the start of a snapshot
+	 * @param buffer Where to read the snapshot from
+	 * @return The version of the snapshot
+	 * @throws IOException If it isn't a snapshot this version can read
+	 */
+	private static int readVersion( ByteBuffer buffer ) throws IOException
+	{
+		//Version 1 headers are one byte shorter
+		if( buffer.remaining() < HEADER_SIZE - 1 )
+			throw new IOException( "Not a Lumines snapshot" );
+		
+		for( int i = 0; i < MAGIC.length; i++ )
+			if( buffer.get() != MAGIC[i] )
+				throw new IOException( "Not a Lumines snapshot" );
+		
+		int version = buffer.get();
+		if( version < 1 || version > VERSION )
+			throw new IOException( "The snapshot is version " + version + " but only versions 1 to " + VERSION + " can be read" );
+		if( version >= 2 && buffer.remaining() < HEADER_SIZE - 5 )
+			throw new IOException( "The snapshot is cut off" );
+		
+		return version;
+	}
+	
+	/**
+	 * Save a game to a file
+	 * @param game The game
+	 * @param file Name of the file
+	 * @throws IOException If the file can't be written
+	 */
+	public static void save( LuminesGame game, String file ) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate( getSize( game ) );
+		write( game, buffer );
+		buffer.flip();
+		writeFile( buffer, file );
+	}
+	
+	/**
+	 * Write bytes to a file, so the file either has all of them or is left the way it was
+	 * @param buffer The bytes, from its position to its limit
+	 * @param file Name of the file
+	 * @throws IOException If the file can't be written
+	 */
+	public static void writeFile( ByteBuffer buffer, String file ) throws IOException
+	{
+		File target = new File( file );
+		File temp = new File( target.getAbsoluteFile().getParentFile(), target.getName() + ".tmp" );
+		
+		RandomAccessFile out = new RandomAccessFile( temp, "rw" );
+		try
+		{
+			out.setLength( 0 );
+			while( buffer.hasRemaining() )
+				out.getChannel().write( buffer );
+			
+			//The bytes have to be on the disk before the rename, or a crash could leave an empty file in its place
+			out.getChannel().force( true );
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		try
+		{
+			Files.move( temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch( AtomicMoveNotSupportedException e )
+		{
+			Files.move( temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+	
+	/**
+	 * Make a game from a file
+	 * @param file Name of the file
+	 * @return The game, the same as when it was saved
+	 * @throws IOException If the file can't be read or isn't a snapshot
+	 */
+	public static LuminesGame load( String file ) throws IOException
+	{
+		FileInputStream in = new FileInputStream( file );
+		try
+		{
+			long size = in.getChannel().size();
+			if( size > Integer.MAX_VALUE )
+				throw new IOException( file + " is too big to be a snapshot" );
+			
+			ByteBuffer buffer = ByteBuffer.allocate( (int) size );
+			while( buffer.hasRemaining() )
+				if( in.getChannel().read( buffer ) < 0 )
+					throw new IOException( file + " is cut off" );
+			buffer.flip();
+			return read( buffer );
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+/**
+ * Plays by looking at every column and rotation for the current square and picking the best one right now
+ * Doesn't look at the next squares
+ * Each column of the square falls on its own, the same way the game splits squares
+ */
+public class GreedyPolicy extends PlacementPolicy
+{
+	//Constants
+	private static final int SQUARE_SCORE = 10; //Score for each 2x2 square of one colour that is made
+	private static final int TOUCH_SCORE = 1; //Score for each block of the same colour that is touched
+	private static final int HEIGHT_SCORE = 2; //Score taken away for each row the stack is high
+	
+	//Instance variables
+	private int[][] colours; //Colour of each fixed block on the board, 0 if there isn't one
+	private int[] tops; //Top row of the blocks in each column
+	private int[] square = new int[4]; //Colours of the square, clockwise from the top left
+	
+	/**
+	 * Find the best column and rotation for the current square
+	 * @param game The game being played
+	 */
+	protected void plan( LuminesGame game )
+	{
+		Board board = game.getBoard();
+		int h = board.getHeight();
+		int w = board.getWidth();
+		if( colours == null || colours.length != h || colours[0].length != w )
+		{
+			colours = new int[h][w];
+			tops = new int[w];
+		}
+		
+		//Only fixed blocks count, the square being moved is on the board too
+		for( int j = 0; j < w; j++ )
+		{
+			tops[j] = h;
+			for( int i = h - 1; i >= 0; i-- )
+			{
+				int c = board.getCell( i, j );
+				colours[i][j] = Cell.isFixed( c ) ? Cell.getColour( c ) : 0;
+				if( colours[i][j] != 0 )
+					tops[j] = i;
+			}
+		}
+		
+		Square s = game.getCurrentSquare();
+		getColours( s, square );
+		
+		int best = Integer.MIN_VALUE;
+		for( int r = 0; r < 4; r++ )
+		{
+			for( int c = 0; c <= w - 2; c++ )
+			{
+				int score = evaluate( c );
+				if( score > best )
+				{
+					best = score;
+					setTarget( s, c, r );
+				}
+			}
+			
+			//Turn the square clockwise for the next rotation
+			int last = square[3];
+			square[3] = square[2];
+			square[2] = square[1];
+			square[1] = square[0];
+			square[0] = last;
+		}
+	}
+	
+	/**
+	 * Score dropping the square into a column
+	 * @param c Column for the left side of the square
+	 * @return How good the drop is, higher is better
+	 */
+	private int evaluate( int c )
+	{
+		int h = colours.length;
+		int w = colours[0].length;
+		
+		//Dropping a square where it doesn't fit loses the game
+		if( tops[c] < 2 || tops[c + 1] < 2 )
+			return Integer.MIN_VALUE + 1;
+		
+		//Put both sides of the square on the tops of their columns
+		colours[tops[c] - 2][c] = square[0];
+		colours[tops[c] - 1][c] = square[3];
+		colours[tops[c + 1] - 2][c + 1] = square[1];
+		colours[tops[c + 1] - 1][c + 1] = square[2];
+		
+		int score = 0;
+		int top = Math.min( tops[c], tops[c + 1] ) - 2;
+		int bottom = Math.max( tops[c], tops[c + 1] ) - 1;
+		
+		//Count the squares of one colour that have one of the new blocks in them
+		for( int i = Math.max( top - 1, 0 ); i <= Math.min( bottom, h - 2 ); i++ )
+		{
+			for( int j = Math.max( c - 1, 0 ); j <= Math.min( c + 1, w - 2 ); j++ )
+			{
+				int k = colours[i][j];
+				if( k != 0 && colours[i + 1][j] == k && colours[i][j + 1] == k && colours[i + 1][j + 1] == k )
+					score += SQUARE_SCORE;
+			}
+		}
+		
+		//Count the old blocks touching the new blocks that are the same colour
+		for( int j = c; j <= c + 1; j++ )
+		{
+			for( int i = tops[j] - 2; i < tops[j]; i++ )
+			{
+				int k = colours[i][j];
+				if( j == c && j - 1 >= 0 && colours[i][j - 1] == k )
+					score += TOUCH_SCORE;
+				if( j == c + 1 && j + 1 < w && colours[i][j + 1] == k )
+					score += TOUCH_SCORE;
+			}
+			if( tops[j] < h && colours[tops[j]][j] == colours[tops[j] - 1][j] )
+				score += TOUCH_SCORE;
+		}
+		
+		score -= HEIGHT_SCORE * ( h - top );
+		
+		//Take the square back out
+		colours[tops[c] - 2][c] = 0;
+		colours[tops[c] - 1][c] = 0;
+		colours[tops[c + 1] - 2][c + 1] = 0;
+		colours[tops[c + 1] - 1][c + 1] = 0;
+		
+		return score;
+	}
+	
+	/**
+	 * Get the colours of a square
+	 * @param s The square
+	 * @param c Where to put the colours, clockwise from the top left
+	 */
+	private static void getColours( Square s, int[] c )
+	{
+		c[0] = s.getColour( 0, 0 );
+		c[1] = s.getColour( 0, 1 );
+		c[2] = s.getColour( 1, 1 );
+		c[3] = s.getColour( 1, 0 );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+/**
+ * Plays a recording as fast as possible without a display
+ * Gives the same game as when it was recorded, so it can be used to check that changes don't change the game
+ */
+public class HeadlessReplay
+{
+	/**
+	 * Play a recording and print how the games went
+	 * @param file Name of the recording
+	 */
+	public static void play( String file ) throws Exception
+	{
+		play( file, null );
+	}
+	
+	/**
+	 * Play a recording, print how the games went and write a spectator stream of them
+	 * @param file Name of the recording
+	 * @param spectate Name of the file to write the spectator stream to, null to not write one
+	 */
+	public static void play( String file, String spectate ) throws Exception
+	{
+		InputPlayer player = new InputPlayer( file );
+		LuminesGame game = new LuminesGame( new TickClock( player.getTickRate() ), player.getTickRate(), player.getSeed(), player.getHeight(),
+				player.getWidth() );
+		player.setUp( game );
+		InputState input = new InputState();
+		
+		SpectatorWriter writer = null;
+		if( spectate != null )
+			writer = new SpectatorWriter( spectate, player.getTickRate(), player.getHeight(), player.getWidth(),
+					player.getTickRate() * SpectatorWriter.KEYFRAME_SECONDS );
+		
+		long ticks = 0;
+		int games = 0;
+		long start = System.nanoTime();
+		
+		while( player.next( input ) )
+		{
+			game.tick( input );
+			ticks++;
+			if( writer != null )
+				writer.write( game );
+			
+			//Start a new game the same way the interface does
+			if( game.isGameOver() )
+			{
+				games++;
+				System.out.println( "Game " + games + ": score " + game.getScore() + ", time " + game.getTimePlayed() / 1000 + " s" );
+				game.newGame();
+			}
+		}
+		
+		long time = System.nanoTime() - start;
+		System.out.println( "Last game: score " + game.getScore() + ", time " + game.getTimePlayed() / 1000 + " s" );
+		System.out.printf( "%d ticks in %.3f s (%.0f ticks/s)%n", ticks, time / 1e9, ticks * 1e9 / time );
+		
+		if( writer != null )
+		{
+			writer.close();
+			System.out.printf( "Spectator stream: %d bytes, %d keyframes (%.2f bytes per tick)%n", writer.getBytes(), writer.getKeyframes(),
+					writer.getBytes() / (double) Math.max( writer.getTicks(), 1 ) );
+		}
+	}
+	
+	/**
+	 * Play the recording given on the command line
+	 * @param args The name of the recording, then the name of a spectator stream to write if there is one
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		play( args[0], args.length > 1 ? args[1] : null );
+	}
+}
\ No newline at end of file
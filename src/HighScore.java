@@ -1,39 +1,74 @@
+import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Scanner;
 
 /**
  * Class to keep track of high scores
+ * Every score entered is kept, in a Leaderboard so places can be found quickly even with millions of scores
+ * The scores are saved in a HighScoreFile by a HighScoreWriter, so saving never makes the game wait
  */
 public class HighScore
 {
+	//Constants
+	public static final int TOP_SIZE = 5; //How many of the highest scores count as high scores
+	
 	//index 0 is the highest score
-	private ArrayList<String> names = new ArrayList<String>(); //Names of people who got high scores
-	private ArrayList<Integer> scores = new ArrayList<Integer>(); //The actual high scores
-	private String file; //The file that the high scores were read from
+	private Leaderboard scores = new Leaderboard(); //Names and scores of the people who got high scores
+	private HighScoreWriter writer; //Saves new scores in the background
 	
 	/**
 	 * Read in the high scores and store them
-	 * @param txtFile The text file to read the high scores from
+	 * @param binaryFile The file to read the high scores from
 	 * @throws Exception
 	 */
-	public HighScore( String txtFile ) throws Exception
+	public HighScore( String binaryFile ) throws Exception
 	{
-		Scanner in = new Scanner( new FileReader( txtFile ) );
-		
-		//Add all of the high scores in the file
-		while( in.hasNext() )
+		this( binaryFile, null );
+	}
+	
+	/**
+	 * Read in the high scores and store them
+	 * If the file doesn't exist yet, the scores in the old text file are put into it
+	 * @param binaryFile The file to read the high scores from
+	 * @param txtFile The old text file of high scores, names and scores separated by spaces, null if there isn't one
+	 * @throws Exception
+	 */
+	public HighScore( String binaryFile, String txtFile ) throws Exception
+	{
+		HighScoreFile file;
+		if( !new File( binaryFile ).exists() && txtFile != null && new File( txtFile ).exists() )
+		{
+			//Read the whole text file before the binary file is made, so a bad text file doesn't leave part of it behind
+			ArrayList<String> names = new ArrayList<String>();
+			ArrayList<Integer> values = new ArrayList<Integer>();
+			try( Scanner in = new Scanner( new FileReader( txtFile ) ) )
+			{
+				while( in.hasNext() )
+				{
+					names.add( in.next() );
+					values.add( in.nextInt() );
+				}
+			}
+			
+			//Add all of the high scores in the file
+			HighScoreFile.create( binaryFile, names, values );
+			for( int i = 0; i < names.size(); i++ )
+				scores.insert( names.get( i ), values.get( i ) );
+			file = new HighScoreFile( binaryFile );
+		}
+		else
 		{
-			names.add( in.next() );
-			scores.add( in.nextInt() );
+			file = new HighScoreFile( binaryFile );
+			int damaged = file.readAll( scores );
+			if( damaged > 0 )
+			{
+				System.err.println( damaged + " damaged high scores were skipped" );
+				file.compact( file.getCapacity() );
+			}
 		}
 		
-		
-		file = txtFile;
-		//Close the file
-		in.close();
+		writer = new HighScoreWriter( file );
 	}
 	
 	/**
@@ -43,80 +78,84 @@ public class HighScore
 	 */
 	public boolean shouldEnter( int n )
 	{
-		for( int i = 0; i < names.size(); i++ )
-		{
-			if( n > scores.get(i) )
-				return true;
-		}
-		
-		return false;
+		return scores.getRank( n ) <= TOP_SIZE;
+	}
+	
+	/**
+	 * Find the place a score would get
+	 * @param n The score
+	 * @return The place, 1 for the highest
+	 */
+	public int getRank( int n )
+	{
+		return scores.getRank( n );
 	}
 	
 	/**
 	 * Insert the score given into the high score list
+	 * It is saved in the background, so this doesn't wait for the file
 	 * @param s The name of the person who got the score
 	 * @param n The score they got
 	 */
 	public void insertScore( String s, int n )
 	{
-		int[] tempN = getScores();
-		String[] tempS = getNames();
-		for( int i = 0; i < scores.size(); i++ )
-		{
-			if( scores.get(i) < n )
-			{
-				for( int j = i+1; j < scores.size(); j++ )
-				{
-					scores.set( j, tempN[j - 1] );
-					names.set( j, tempS[j - 1] );
-				}
-				scores.set( i, n );
-				names.set( i, s );
-				break;
-			}
-		}
+		if( s == null )
+			s = "";
+		
+		scores.insert( s, n );
+		writer.add( s, n );
 	}
 	
 	/**
-	 * Resave the high scores
+	 * Save the scores that haven't been saved yet and close the file
+	 * Waits until they are written, so it should be called when the program exits
 	 */
-	public void close() throws Exception
+	public void close()
 	{
-		PrintWriter out = new PrintWriter( new FileWriter( file ) );
-		
-		//Put all of the high score names and scores into the file
-		//Name separted by a space then the score
-		//Prevents having spaces in the name
-		for( int i = 0; i < scores.size(); i++ )
-		{
-			out.println( names.get(i) + " " + scores.get(i) );
-		}
-		
-		out.close();
+		writer.close();
+	}
+	
+	/**
+	 * @return What went wrong the last time scores couldn't be saved, null if the last save worked
+	 */
+	public String getSaveError()
+	{
+		return writer.getError();
+	}
+	
+	/**
+	 * Get the highest scores
+	 * @param names Where to put the names, as many scores are given as there is room for
+	 * @param top Where to put the scores
+	 * @return How many scores were given
+	 */
+	public int getTop( String[] names, int[] top )
+	{
+		return scores.getTop( names, top );
 	}
 	
 	/**
 	 * Return the scores as an array
+	 * Goes through every score, so getTop() is better for showing the highest ones
 	 * @return The high score list
 	 */
 	public int[] getScores()
 	{
 		int[] arr = new int[scores.size()];
-		for( int i = 0; i < arr.length; i++ )
-			arr[i] = scores.get(i);
+		scores.getTop( new String[arr.length], arr );
 		
 		return arr;
 	}
 	
 	/**
 	 * Return the names as an array
+	 * Goes through every score, so getTop() is better for showing the highest ones
 	 * @return The names on the high score list
 	 */
 	public String[] getNames()
 	{
-		String[] arr = new String[names.size()];
-		for( int i = 0; i < arr.length; i++ )
-			arr[i] = names.get(i);
+		String[] arr = new String[scores.size()];
+		scores.getTop( arr, new int[arr.length] );
 		
 		return arr;
 	}
@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * The high scores saved in a binary file that is read and written through memory mapping
+ *
+ * File format, all numbers big-endian:
+ * A 32 byte header: the letters LHSC, the version, the size of a record, how many records are used,
+ * how many records there is room for, a reserved int, the CRC32 of the first 24 bytes and a reserved int
+ * Then room for the records, 64 bytes each: the score, the length of the name in bytes, the name in UTF-8
+ * padded with zeros, and the CRC32 of the first 60 bytes of the record
+ *
+ * A new score is written into the next free record and then the header is changed to count it,
+ * so if the program stops in the middle only the new score can be lost
+ * When the file is full it is made longer and mapped again, and only then does the header count the new room
+ * Damaged records are removed by copying the others into a temporary file that is renamed over the old one
+ * The temporary file is never mapped and the old mapping is let go of first, since a mapped file can't be renamed over on Windows
+ */
+public class HighScoreFile
+{
+	//Constants
+	public static final byte[] MAGIC = { 'L', 'H', 'S', 'C' }; //Start of every high score file
+	public static final int VERSION = 1; //Version of the file format
+	public static final int HEADER_SIZE = 32; //Bytes in the header
+	public static final int RECORD_SIZE = 64; //Bytes in each record
+	public static final int NAME_SIZE = 54; //Most bytes a name can have
+	private static final int MIN_CAPACITY = 64; //Fewest records a file has room for
+	
+	//Where things are in the header
+	private static final int COUNT_OFFSET = 12;
+	private static final int CAPACITY_OFFSET = 16;
+	private static final int CHECKSUM_OFFSET = 24;
+	
+	//Where things are in a record
+	private static final int NAME_LENGTH_OFFSET = 4;
+	private static final int NAME_OFFSET = 6;
+	private static final int RECORD_CHECKSUM_OFFSET = 60;
+	
+	//Instance variables
+	private Path path; //Where the file is
+	private FileChannel channel; //The open file
+	private MappedByteBuffer map; //The file in memory
+	private int count; //Records used
+	private int capacity; //Records there is room for
+	private byte[] record = new byte[RECORD_SIZE]; //A record being read or written
+	private CRC32 crc = new CRC32(); //Works out the checksums
+	
+	/**
+	 * Open a high score file, making an empty one if it doesn't exist
+	 * @param file Name of the file
+	 * @throws IOException If the file can't be opened or isn't a high score file
+	 */
+	public HighScoreFile( String file ) throws IOException
+	{
+		path = Paths.get( file );
+		if( !Files.exists( path ) )
+			writeFile( path, MIN_CAPACITY, 0, new byte[0] );
+		
+		open();
+	}
+	
+	/**
+	 * Map the file into memory and check the header
+	 * @throws IOException If the file can't be opened or isn't a high score file
+	 */
+	private void open() throws IOException
+	{
+		channel = FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE );
+		if( channel.size() < HEADER_SIZE )
+			throw fail( "is too short to be a high score file" );
+		
+		map = channel.map( FileChannel.MapMode.READ_WRITE, 0, channel.size() );
+		for( int i = 0; i < MAGIC.length; i++ )
+			if( map.get( i ) != MAGIC[i] )
+				throw fail( "is not a high score file" );
+		if( map.getInt( CHECKSUM_OFFSET ) != headerChecksum( map ) )
+			throw fail( "has a damaged header" );
+		if( map.getInt( 4 ) != VERSION )
+			throw fail( "is version " + map.getInt( 4 ) + " but only version " + VERSION + " can be read" );
+		if( map.getInt( 8 ) != RECORD_SIZE )
+			throw fail( "has " + map.getInt( 8 ) + " byte records instead of " + RECORD_SIZE );
+		
+		count = map.getInt( COUNT_OFFSET );
+		capacity = map.getInt( CAPACITY_OFFSET );
+		if( count < 0 || count > capacity || channel.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE )
+			throw fail( "says it has more records than it does" );
+	}
+	
+	/**
+	 * Close the file and make an exception for a problem with it
+	 * @param problem What is wrong
+	 * @return The exception
+	 */
+	private IOException fail( String problem ) throws IOException
+	{
+		channel.close();
+		return new IOException( path + " " + problem );
+	}
+	
+	/**
+	 * Add every score in the file to a leaderboard
+	 * Records that were damaged are skipped
+	 * @param scores Where to add the scores
+	 * @return How many records were damaged
+	 */
+	public int readAll( Leaderboard scores )
+	{
+		int damaged = 0;
+		for( int i = 0; i < count; i++ )
+		{
+			if( !readRecord( i ) )
+			{
+				damaged++;
+				continue;
+			}
+			
+			ByteBuffer r = ByteBuffer.wrap( record );
+			int length = Math.min( r.getShort( NAME_LENGTH_OFFSET ), NAME_SIZE );
+			scores.insert( new String( record, NAME_OFFSET, length, StandardCharsets.UTF_8 ), r.getInt( 0 ) );
+		}
+		
+		return damaged;
+	}
+	
+	/**
+	 * Read a record into the record buffer and check it
+	 * @param i Which record
+	 * @return Whether or not the record isn't damaged
+	 */
+	private boolean readRecord( int i )
+	{
+		int position = HEADER_SIZE + i * RECORD_SIZE;
+		for( int k = 0; k < RECORD_SIZE; k++ )
+			record[k] = map.get( position + k );
+		
+		crc.reset();
+		crc.update( record, 0, RECORD_CHECKSUM_OFFSET );
+		return ByteBuffer.wrap( record ).getInt( RECORD_CHECKSUM_OFFSET ) == (int) crc.getValue();
+	}
+	
+	/**
+	 * Add a score to the end of the file
+	 * The record is written before the header counts it
+	 * Call force() to make sure it is on the disk
+	 * @param name Name of the person who got the score, cut short if it is too long
+	 * @param score The score
+	 * @throws IOException If the file can't be written
+	 */
+	public void append( String name, int score ) throws IOException
+	{
+		if( count == capacity )
+			grow( capacity * 2 );
+		
+		makeRecord( record, crc, name, score );
+		int position = HEADER_SIZE + count * RECORD_SIZE;
+		for( int k = 0; k < RECORD_SIZE; k++ )
+			map.put( position + k, record[k] );
+		
+		count++;
+		map.putInt( COUNT_OFFSET, count );
+		map.putInt( CHECKSUM_OFFSET, headerChecksum( map ) );
+	}
+	
+	/**
+	 * Put a score into a record
+	 * @param record Where to put it, RECORD_SIZE bytes
+	 * @param crc Works out the checksum
+	 * @param name Name of the person who got the score, cut short if it is too long
+	 * @param score The score
+	 */
+	private static void makeRecord( byte[] record, CRC32 crc, String name, int score )
+	{
+		byte[] bytes = name.getBytes( StandardCharsets.UTF_8 );
+		int length = Math.min( bytes.length, NAME_SIZE );
+		
+		//Don't cut a character in half
+		while( length < bytes.length && length > 0 && ( bytes[length] & 0xC0 ) == 0x80 )
+			length--;
+		
+		ByteBuffer r = ByteBuffer.wrap( record );
+		r.putInt( 0, score );
+		r.putShort( NAME_LENGTH_OFFSET, (short) length );
+		for( int k = 0; k < NAME_SIZE; k++ )
+			record[NAME_OFFSET + k] = k < length ? bytes[k] : 0;
+		
+		crc.reset();
+		crc.update( record, 0, RECORD_CHECKSUM_OFFSET );
+		r.putInt( RECORD_CHECKSUM_OFFSET, (int) crc.getValue() );
+	}
+	
+	/**
+	 * Make sure everything written is on the disk
+	 */
+	public void force()
+	{
+		map.force();
+	}
+	
+	/**
+	 * Make room for more records without moving the file
+	 * The file is made longer before the header says there is more room, so if the program stops in the middle the old header still fits
+	 * @param newCapacity How many records there will be room for
+	 * @throws IOException If the file can't be written
+	 */
+	public void grow( int newCapacity ) throws IOException
+	{
+		if( newCapacity <= capacity )
+			return;
+		
+		map.force();
+		channel.write( ByteBuffer.allocate( 1 ), HEADER_SIZE + (long) newCapacity * RECORD_SIZE - 1 );
+		channel.force( true );
+		
+		map = channel.map( FileChannel.MapMode.READ_WRITE, 0, channel.size() );
+		capacity = newCapacity;
+		map.putInt( CAPACITY_OFFSET, capacity );
+		map.putInt( CHECKSUM_OFFSET, headerChecksum( map ) );
+		map.force();
+	}
+	
+	/**
+	 * Copy the undamaged records to a new file, then rename it over the old one
+	 * If the program stops in the middle the old file is still there, and if the rename fails the old file is opened again
+	 * @param newCapacity How many records the new file has room for
+	 * @throws IOException If the file can't be written or renamed
+	 */
+	public void compact( int newCapacity ) throws IOException
+	{
+		//The records are kept in memory, so the new file can be written without mapping it
+		ByteBuffer kept = ByteBuffer.allocate( count * RECORD_SIZE );
+		for( int i = 0; i < count; i++ )
+			if( readRecord( i ) )
+				kept.put( record );
+		kept.flip();
+		int used = kept.remaining() / RECORD_SIZE;
+		newCapacity = Math.max( Math.max( newCapacity, used ), MIN_CAPACITY );
+		
+		Path temp = path.resolveSibling( path.getFileName() + ".tmp" );
+		writeFile( temp, newCapacity, used, kept.array() );
+		
+		//Let go of the old mapping before the rename, it is only unmapped once nothing refers to it
+		map.force();
+		map = null;
+		channel.close();
+		try
+		{
+			replace( temp, path );
+		}
+		finally
+		{
+			Files.deleteIfExists( temp );
+			open();
+		}
+	}
+	
+	/**
+	 * Make a high score file holding some scores, in place of the file if there is one
+	 * The file is written under another name and renamed once it is finished, so it is never left half made
+	 * @param file Name of the file
+	 * @param names Names of the people who got the scores
+	 * @param scores The scores, in the same order as the names
+	 * @throws IOException If the file can't be written
+	 */
+	public static void create( String file, ArrayList<String> names, ArrayList<Integer> scores ) throws IOException
+	{
+		Path target = Paths.get( file );
+		int used = names.size();
+		byte[] records = new byte[used * RECORD_SIZE];
+		byte[] r = new byte[RECORD_SIZE];
+		CRC32 c = new CRC32();
+		for( int i = 0; i < used; i++ )
+		{
+			makeRecord( r, c, names.get( i ), scores.get( i ) );
+			System.arraycopy( r, 0, records, i * RECORD_SIZE, RECORD_SIZE );
+		}
+		
+		Path temp = target.resolveSibling( target.getFileName() + ".tmp" );
+		try
+		{
+			writeFile( temp, Math.max( used, MIN_CAPACITY ), used, records );
+			replace( temp, target );
+		}
+		finally
+		{
+			Files.deleteIfExists( temp );
+		}
+	}
+	
+	/**
+	 * Rename a finished file over another one, the same way GameSnapshot does
+	 * @param temp The finished file
+	 * @param target The file it takes the place of
+	 * @throws IOException If it can't be renamed
+	 */
+	private static void replace( Path temp, Path target ) throws IOException
+	{
+		try
+		{
+			Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch( AtomicMoveNotSupportedException e )
+		{
+			Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+	
+	/**
+	 * Make a file with a header and records
+	 * @param file Where to make the file
+	 * @param slots How many records there is room for
+	 * @param used How many records the header says are used
+	 * @param records The used records, one after another
+	 * @throws IOException If the file can't be written
+	 */
+	private static void writeFile( Path file, int slots, int used, byte[] records ) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+		header.put( MAGIC );
+		header.putInt( VERSION );
+		header.putInt( RECORD_SIZE );
+		header.putInt( used );
+		header.putInt( slots );
+		header.putInt( 0 );
+		header.putInt( CHECKSUM_OFFSET, headerChecksum( header ) );
+		header.rewind();
+		
+		try( FileChannel out = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE ) )
+		{
+			out.write( header );
+			ByteBuffer r = ByteBuffer.wrap( records, 0, used * RECORD_SIZE );
+			while( r.hasRemaining() )
+				out.write( r );
+			
+			//Make the file long enough for every record
+			out.write( ByteBuffer.allocate( 1 ), HEADER_SIZE + (long) slots * RECORD_SIZE - 1 );
+			out.force( true );
+		}
+	}
+	
+	/**
+	 * Work out the checksum of a header
+	 * @param header The header
+	 * @return The CRC32 of the first 24 bytes
+	 */
+	private static int headerChecksum( ByteBuffer header )
+	{
+		CRC32 c = new CRC32();
+		for( int i = 0; i < CHECKSUM_OFFSET; i++ )
+			c.update( header.get( i ) );
+		
+		return (int) c.getValue();
+	}
+	
+	/**
+	 * Close the file
+	 * @throws IOException If the file can't be closed
+	 */
+	public void close() throws IOException
+	{
+		map.force();
+		channel.close();
+	}
+	
+	/**
+	 * @return How many records are used
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * @return How many records there is room for
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+}
\ No newline at end of file
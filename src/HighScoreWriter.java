@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Saves new high scores to the file on a thread of its own, so the game never waits for the disk
+ * Scores that come in close together are written together, with the file forced to the disk once for each batch
+ * If a batch can't be written the scores are kept and tried again with the next score or when the writer is closed
+ */
+public class HighScoreWriter implements Runnable
+{
+	//Constants
+	private static final long BATCH_TIME = 100; //Milliseconds to wait for more scores before writing a batch
+	
+	//Instance variables
+	private HighScoreFile file; //Where the scores are saved, only used by the writer thread
+	private ArrayList<String> waitingNames = new ArrayList<String>(); //Names of scores waiting to be written
+	private ArrayList<Integer> waitingScores = new ArrayList<Integer>(); //Scores waiting to be written
+	private ArrayList<String> batchNames = new ArrayList<String>(); //Names of scores being written
+	private ArrayList<Integer> batchScores = new ArrayList<Integer>(); //Scores being written
+	private boolean closing = false; //Whether or not the writer should finish up and stop
+	private boolean failed = false; //Whether or not the last batch couldn't be written
+	private volatile String error; //What went wrong the last time a batch couldn't be written, null if nothing did
+	private Thread thread; //The writer thread
+	
+	/**
+	 * Constructor
+	 * Starts the writer thread
+	 * @param f Where to save the scores, the writer is the only thing that should use it after this
+	 */
+	public HighScoreWriter( HighScoreFile f )
+	{
+		file = f;
+		thread = new Thread( this, "High score writer" );
+		thread.setDaemon( true );
+		thread.start();
+	}
+	
+	/**
+	 * Ask for a score to be saved
+	 * Returns straight away
+	 * @param name Name of the person who got the score
+	 * @param score The score
+	 */
+	public synchronized void add( String name, int score )
+	{
+		waitingNames.add( name );
+		waitingScores.add( score );
+		failed = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Write batches of scores until the writer is closed
+	 */
+	public void run()
+	{
+		while( true )
+		{
+			synchronized( this )
+			{
+				//Wait for a score, or for a new one after a batch failed
+				while( ( waitingScores.isEmpty() || failed ) && !closing )
+					waitQuietly( 0 );
+				
+				//Give any other scores that are coming a chance to join the batch
+				if( !closing )
+					waitQuietly( BATCH_TIME );
+				
+				if( waitingScores.isEmpty() && closing )
+					return;
+				
+				//Take the waiting scores, leaving empty lists for new ones
+				ArrayList<String> names = batchNames;
+				batchNames = waitingNames;
+				waitingNames = names;
+				ArrayList<Integer> scores = batchScores;
+				batchScores = waitingScores;
+				waitingScores = scores;
+			}
+			
+			writeBatch();
+		}
+	}
+	
+	/**
+	 * Write the batch of scores to the file
+	 */
+	private void writeBatch()
+	{
+		int written = 0;
+		try
+		{
+			for( ; written < batchScores.size(); written++ )
+				file.append( batchNames.get( written ), batchScores.get( written ) );
+			file.force();
+			error = null;
+		}
+		catch( IOException e )
+		{
+			error = e.getMessage();
+			System.err.println( "Could not save the high scores: " + error );
+			
+			synchronized( this )
+			{
+				//Put the scores that weren't written back in front of any new ones
+				waitingNames.addAll( 0, batchNames.subList( written, batchNames.size() ) );
+				waitingScores.addAll( 0, batchScores.subList( written, batchScores.size() ) );
+				failed = !closing;
+				if( closing )
+				{
+					//Don't keep trying forever when the program is exiting
+					waitingNames.clear();
+					waitingScores.clear();
+				}
+			}
+		}
+		
+		batchNames.clear();
+		batchScores.clear();
+	}
+	
+	/**
+	 * Wait on the writer without caring about being interrupted
+	 * @param millis Most milliseconds to wait, 0 to wait until notified
+	 */
+	private void waitQuietly( long millis )
+	{
+		try
+		{
+			wait( millis );
+		}
+		catch( InterruptedException e )
+		{
+		}
+	}
+	
+	/**
+	 * Write every score that is waiting, stop the writer thread and close the file
+	 * Waits until everything is written
+	 */
+	public void close()
+	{
+		synchronized( this )
+		{
+			closing = true;
+			notifyAll();
+		}
+		
+		try
+		{
+			thread.join();
+			file.close();
+		}
+		catch( Exception e )
+		{
+			System.err.println( "Could not close the high score file: " + e.getMessage() );
+		}
+	}
+	
+	/**
+	 * @return What went wrong the last time scores couldn't be saved, null if the last save worked
+	 */
+	public String getError()
+	{
+		return error;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Plays back the keys from a recording made by InputRecorder
+ */
+public class InputPlayer
+{
+	//Instance variables
+	private DataInputStream in; //Where the recording comes from
+	private int tickRate; //How many times a second the recorded game ticked
+	private long seed; //Seed the recorded game started with
+	private int height = LuminesGame.BOARD_HEIGHT; //Height of the recorded game's board
+	private int width = LuminesGame.BOARD_WIDTH; //Width of the recorded game's board
+	private int version; //Version of the file format
+	private int repeatDelay; //Ticks before a held key repeats, only in version 3 and later
+	private int repeatTicks; //Ticks between repeats, only in version 3 and later
+	private int bits = 0; //The keys held down for the current run
+	private int taps = 0; //The keys tapped on each tick of the current run
+	private long run = 0; //Ticks left in the current run
+	private boolean finished = false; //Whether or not the end of the recording was reached
+	
+	/**
+	 * Open a recording
+	 * @param file Name of the file to play
+	 * @throws IOException If the file can't be read or isn't a recording
+	 */
+	public InputPlayer( String file ) throws IOException
+	{
+		in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+		
+		for( int i = 0; i < InputRecorder.MAGIC.length; i++ )
+			if( in.readByte() != InputRecorder.MAGIC[i] )
+				throw new IOException( file + " is not a Lumines recording" );
+		
+		version = in.readByte();
+		if( version < 1 || version > InputRecorder.VERSION )
+			throw new IOException( file + " is version " + version + " but only up to version " + InputRecorder.VERSION + " can be played" );
+		
+		tickRate = in.readInt();
+		seed = in.readLong();
+		
+		//Older recordings were all on the default board
+		if( version >= 2 )
+		{
+			height = in.readInt();
+			width = in.readInt();
+		}
+		
+		//Older recordings didn't keep taps, and read the keys the old way
+		if( version >= 3 )
+		{
+			repeatDelay = in.readInt();
+			repeatTicks = in.readInt();
+		}
+	}
+	
+	/**
+	 * Set up a game to read the keys the same way as when the recording was made
+	 * The game also has to have the same tick rate, seed and size as the recording
+	 * @param game The game to set up
+	 */
+	public void setUp( LuminesGame game )
+	{
+		game.setLegacyInput( version < 3 );
+		if( version >= 3 )
+			game.setAutoRepeat( repeatDelay, repeatTicks );
+	}
+	
+	/**
+	 * Get the keys for the next tick
+	 * @param input Where to put the keys
+	 * @return Whether or not there was another tick, false once the recording is over
+	 * @throws IOException If the file can't be read
+	 */
+	public boolean next( InputState input ) throws IOException
+	{
+		if( finished )
+			return false;
+		
+		//Start the next run when this one is done
+		while( run == 0 )
+		{
+			long n = readNumber();
+			if( n < 0 )
+			{
+				finished = true;
+				in.close();
+				input.clear();
+				return false;
+			}
+			
+			if( version >= 3 )
+			{
+				bits = (int)( n & 0xF );
+				taps = (int)( ( n >>> 4 ) & 0xF );
+				run = n >>> 8;
+			}
+			else
+			{
+				bits = (int)( n & 0xF );
+				run = n >>> 4;
+			}
+		}
+		
+		run--;
+		input.setBits( bits );
+		input.setTaps( taps );
+		return true;
+	}
+	
+	/**
+	 * Read a variable length number
+	 * @return The number, or -1 at the end of the file
+	 * @throws IOException If the file can't be read
+	 */
+	private long readNumber() throws IOException
+	{
+		long n = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			try
+			{
+				b = in.readUnsignedByte();
+			}
+			catch( EOFException e )
+			{
+				if( shift == 0 )
+					return -1;
+				throw new IOException( "The recording ends in the middle of a number" );
+			}
+			
+			n |= (long)( b & 0x7F ) << shift;
+			shift += 7;
+		} while( ( b & 0x80 ) != 0 );
+		
+		return n;
+	}
+	
+	/**
+	 * @return How many times a second the recorded game ticked
+	 */
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+	
+	/**
+	 * @return Seed the recorded game started with
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * @return Height of the recorded game's board
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	/**
+	 * @return Width of the recorded game's board
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * @return Version of the file format
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * @return Whether or not the end of the recording was reached
+	 */
+	public boolean isFinished()
+	{
+		return finished;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+/**
+ * Something that plays the game by deciding which keys to hold down
+ * Each game gets its own policy, so a policy can remember things between ticks
+ */
+public interface InputPolicy
+{
+	/**
+	 * Decide which keys to hold down for the next tick
+	 * @param game The game being played
+	 * @param input Where to put the keys
+	 */
+	void choose( LuminesGame game, InputState input );
+}
\ No newline at end of file
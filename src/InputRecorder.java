@@ -0,0 +1,111 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the keys held down on every tick so the game can be played again later
+ * 
+ * File format:
+ * The letters LRPL, a version byte, the tick rate as an int, the seed as a long and the height and width of the board as ints
+ * Then the ticks before a held key repeats and the ticks between repeats as ints
+ * Then one variable length number for each run of ticks with the same keys held down and tapped
+ * The low 4 bits of the number are the keys held, the next 4 bits are the keys tapped and the rest is how many ticks in a row it lasted
+ * The number is written 7 bits at a time, lowest bits first, with the top bit set on every byte but the last
+ */
+public class InputRecorder
+{
+	//Constants
+	public static final byte[] MAGIC = { 'L', 'R', 'P', 'L' }; //Start of every recording
+	public static final int VERSION = 3; //Version of the file format, version 1 didn't have the size of the board and version 2 didn't have taps
+	
+	//Instance variables
+	private DataOutputStream out; //Where the recording goes
+	private int bits = -1; //The keys held down and tapped for the current run, -1 before the first tick
+	private long run = 0; //How many ticks the current run has lasted
+	private long ticks = 0; //Ticks recorded
+	
+	/**
+	 * Start a new recording
+	 * @param file Name of the file to record to
+	 * @param tickRate How many times a second the game ticks
+	 * @param seed Seed the game was started with
+	 * @param height Height of the board
+	 * @param width Width of the board
+	 * @param repeat How held keys repeat
+	 * @throws IOException If the file can't be written
+	 */
+	public InputRecorder( String file, int tickRate, long seed, int height, int width, AutoRepeat repeat ) throws IOException
+	{
+		out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+		out.write( MAGIC );
+		out.writeByte( VERSION );
+		out.writeInt( tickRate );
+		out.writeLong( seed );
+		out.writeInt( height );
+		out.writeInt( width );
+		out.writeInt( repeat.getDelay() );
+		out.writeInt( repeat.getRepeat() );
+	}
+	
+	/**
+	 * Record the keys for one tick
+	 * @param input The keys held down and tapped
+	 * @throws IOException If the file can't be written
+	 */
+	public synchronized void record( InputState input ) throws IOException
+	{
+		if( out == null )
+			return;
+		
+		int b = input.getBits() | ( input.getTaps() << 4 );
+		if( b != bits )
+		{
+			writeRun();
+			bits = b;
+		}
+		run++;
+		ticks++;
+	}
+	
+	/**
+	 * Write the current run to the file
+	 * @throws IOException If the file can't be written
+	 */
+	private void writeRun() throws IOException
+	{
+		if( run == 0 )
+			return;
+		
+		long n = ( run << 8 ) | bits;
+		while( ( n & ~0x7FL ) != 0 )
+		{
+			out.writeByte( (int)( ( n & 0x7F ) | 0x80 ) );
+			n >>>= 7;
+		}
+		out.writeByte( (int) n );
+		run = 0;
+	}
+	
+	/**
+	 * Finish the recording
+	 * @throws IOException If the file can't be written
+	 */
+	public synchronized void close() throws IOException
+	{
+		if( out == null )
+			return;
+		
+		writeRun();
+		out.close();
+		out = null;
+	}
+	
+	/**
+	 * @return The number of ticks recorded
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+/**
+ * The keys that are held down for one tick of the game
+ * Also keeps the keys that were pressed since the last tick, so a key that is pressed and let go between two ticks isn't missed
+ */
+public class InputState
+{
+	//Bits for each key when the keys are packed into one number
+	public static final int ROTATE = 1;
+	public static final int DOWN = 2;
+	public static final int LEFT = 4;
+	public static final int RIGHT = 8;
+	
+	private boolean rotate; //Whether or not the square should be rotated
+	private boolean down; //Whether or not the square should be moved down
+	private boolean left; //Whether or not the square should be moved left
+	private boolean right; //Whether or not the square should be moved right
+	private int taps; //A bit for each key pressed since the last tick, even if it was let go again
+	
+	/**
+	 * Let go of all of the keys
+	 */
+	public void clear()
+	{
+		rotate = false;
+		down = false;
+		left = false;
+		right = false;
+		taps = 0;
+	}
+	
+	/**
+	 * Pack the keys into one number
+	 * @return A bit for each key that is held down
+	 */
+	public int getBits()
+	{
+		int bits = 0;
+		if( rotate )
+			bits |= ROTATE;
+		if( down )
+			bits |= DOWN;
+		if( left )
+			bits |= LEFT;
+		if( right )
+			bits |= RIGHT;
+		
+		return bits;
+	}
+	
+	/**
+	 * Set the keys from a packed number
+	 * @param bits A bit for each key that is held down
+	 */
+	public void setBits( int bits )
+	{
+		rotate = ( bits & ROTATE ) != 0;
+		down = ( bits & DOWN ) != 0;
+		left = ( bits & LEFT ) != 0;
+		right = ( bits & RIGHT ) != 0;
+	}
+	
+	/**
+	 * @return A bit for each key pressed since the last tick, even if it was let go again
+	 */
+	public int getTaps()
+	{
+		return taps;
+	}
+	
+	/**
+	 * @param taps A bit for each key pressed since the last tick, even if it was let go again
+	 */
+	public void setTaps( int taps )
+	{
+		this.taps = taps;
+	}
+	
+	/**
+	 * @return Whether or not the square should be rotated
+	 */
+	public boolean isRotate()
+	{
+		return rotate;
+	}
+	
+	/**
+	 * @param rotate Whether or not the square should be rotated
+	 */
+	public void setRotate( boolean rotate )
+	{
+		this.rotate = rotate;
+	}
+	
+	/**
+	 * @return Whether or not the square should be moved down
+	 */
+	public boolean isDown()
+	{
+		return down;
+	}
+	
+	/**
+	 * @param down Whether or not the square should be moved down
+	 */
+	public void setDown( boolean down )
+	{
+		this.down = down;
+	}
+	
+	/**
+	 * @return Whether or not the square should be moved left
+	 */
+	public boolean isLeft()
+	{
+		return left;
+	}
+	
+	/**
+	 * @param left Whether or not the square should be moved left
+	 */
+	public void setLeft( boolean left )
+	{
+		this.left = left;
+	}
+	
+	/**
+	 * @return Whether or not the square should be moved right
+	 */
+	public boolean isRight()
+	{
+		return right;
+	}
+	
+	/**
+	 * @param right Whether or not the square should be moved right
+	 */
+	public void setRight( boolean right )
+	{
+		this.right = right;
+	}
+}
\ No newline at end of file
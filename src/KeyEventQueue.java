@@ -0,0 +1,107 @@
+/**
+ * Key presses and releases on their way from the AWT thread to the game thread
+ * Only one thread may add events and only one thread may take them, so no locks are needed
+ * Each event keeps the time it happened, so a key that is pressed and let go between two ticks is still seen
+ */
+public class KeyEventQueue
+{
+	//Constants
+	public static final int DEFAULT_CAPACITY = 256; //Events that can wait at once
+	
+	//Instance variables
+	private long[] times; //When each event happened, from System.nanoTime()
+	private int[] events; //The key code of each event shifted left one, with the low bit set for a press
+	private int mask; //Capacity minus one, to wrap an index around the arrays
+	private volatile long head = 0; //Number of events taken, only changed by the thread taking them
+	private volatile long tail = 0; //Number of events added, only changed by the thread adding them
+	private long dropped = 0; //Events that didn't fit, only changed by the thread adding them
+	
+	/**
+	 * Constructor for a queue with the default capacity
+	 */
+	public KeyEventQueue()
+	{
+		this( DEFAULT_CAPACITY );
+	}
+	
+	/**
+	 * Constructor
+	 * @param capacity Events that can wait at once, rounded up to a power of two
+	 */
+	public KeyEventQueue( int capacity )
+	{
+		int size = Integer.highestOneBit( Math.max( capacity - 1, 1 ) ) << 1;
+		times = new long[size];
+		events = new int[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Add an event, only from the thread that adds events
+	 * @param code Key code of the key
+	 * @param pressed True if the key was pressed, false if it was let go
+	 * @param time When it happened, from System.nanoTime()
+	 * @return False if the queue was full and the event was dropped
+	 */
+	public boolean add( int code, boolean pressed, long time )
+	{
+		long t = tail;
+		if( t - head > mask )
+		{
+			dropped++;
+			return false;
+		}
+		
+		int index = (int)( t & mask );
+		times[index] = time;
+		events[index] = ( code << 1 ) | ( pressed ? 1 : 0 );
+		
+		//Writing the tail makes the event seen by the other thread
+		tail = t + 1;
+		return true;
+	}
+	
+	/**
+	 * Take the next event if it happened before a time, only from the thread that takes events
+	 * @param until Only take an event that happened at or before this time, from System.nanoTime()
+	 * @return The key code shifted left one with the low bit set for a press, or -1 if there is no event to take
+	 */
+	public int take( long until )
+	{
+		long h = head;
+		if( h == tail )
+			return -1;
+		
+		int index = (int)( h & mask );
+		if( times[index] - until > 0 )
+			return -1;
+		
+		int event = events[index];
+		head = h + 1;
+		return event;
+	}
+	
+	/**
+	 * Throw away every event waiting, only from the thread that takes events
+	 */
+	public void clear()
+	{
+		head = tail;
+	}
+	
+	/**
+	 * @return The number of events waiting
+	 */
+	public int size()
+	{
+		return (int)( tail - head );
+	}
+	
+	/**
+	 * @return The number of events that were dropped because the queue was full
+	 */
+	public long getDropped()
+	{
+		return dropped;
+	}
+}
\ No newline at end of file
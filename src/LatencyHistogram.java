@@ -0,0 +1,112 @@
+/**
+ * Counts how many times each length of time was recorded
+ * Times are put into buckets that get wider as the times get longer, so every bucket is within about 3% of the real time
+ * Recording a time never creates any objects
+ */
+public class LatencyHistogram
+{
+	//Constants
+	private static final int SUB_BITS = 5; //Each power of two is split into 2^SUB_BITS buckets
+	private static final int SUB_COUNT = 1 << SUB_BITS; //Buckets in each power of two
+	
+	//Instance variables
+	private long[] counts = new long[( 64 - SUB_BITS ) * SUB_COUNT]; //How many times fell in each bucket
+	private long total = 0; //How many times were recorded
+	private long max = 0; //The longest time recorded
+	
+	/**
+	 * Record a length of time
+	 * @param value The time, in nanoseconds
+	 */
+	public void record( long value )
+	{
+		if( value < 0 )
+			value = 0;
+		
+		counts[getIndex( value )]++;
+		total++;
+		if( value > max )
+			max = value;
+	}
+	
+	/**
+	 * Find the time that a percent of the recorded times are less than or equal to
+	 * @param percent The percent, from 0 to 100
+	 * @return The time, or 0 if nothing was recorded
+	 */
+	public long getPercentile( double percent )
+	{
+		if( total == 0 )
+			return 0;
+		
+		long target = (long) Math.ceil( total * percent / 100 );
+		if( target < 1 )
+			target = 1;
+		
+		long seen = 0;
+		for( int i = 0; i < counts.length; i++ )
+		{
+			seen += counts[i];
+			if( seen >= target )
+				return Math.min( getValue( i ), max );
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * Forget all of the recorded times
+	 */
+	public void reset()
+	{
+		for( int i = 0; i < counts.length; i++ )
+			counts[i] = 0;
+		total = 0;
+		max = 0;
+	}
+	
+	/**
+	 * Find the bucket for a time
+	 * @param value The time
+	 * @return Index of the bucket
+	 */
+	private static int getIndex( long value )
+	{
+		if( value < SUB_COUNT )
+			return (int) value;
+		
+		int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BITS;
+		return ( shift + 1 ) * SUB_COUNT + (int)( ( value >>> shift ) - SUB_COUNT );
+	}
+	
+	/**
+	 * Find the largest time that goes in a bucket
+	 * @param index Index of the bucket
+	 * @return The largest time in the bucket
+	 */
+	private static long getValue( int index )
+	{
+		if( index < SUB_COUNT )
+			return index;
+		
+		int shift = index / SUB_COUNT - 1;
+		long low = (long)( index % SUB_COUNT + SUB_COUNT ) << shift;
+		return low + ( 1L << shift ) - 1;
+	}
+	
+	/**
+	 * @return The number of times recorded
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+	
+	/**
+	 * @return The longest time recorded
+	 */
+	public long getMax()
+	{
+		return max;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,340 @@
+/**
+ * Keeps scores in order from highest to lowest, with a name for each one
+ * Scores that are the same are kept in the order they were added
+ * Uses a treap, a binary tree that stays balanced by giving each node a random priority,
+ * and each node knows how many nodes are under it so places can be found without going through the list
+ * Adding a score, finding the score in a place and finding the place of a score all take O(log n) time
+ */
+public class Leaderboard
+{
+	/**
+	 * One score in the tree
+	 */
+	private static class Node
+	{
+		private String name; //Name of the person who got the score
+		private int score; //The score
+		private long order; //When the score was added, to keep scores that are the same in order
+		private long priority; //Random number that keeps the tree balanced, higher is closer to the root
+		private int size = 1; //Nodes in this part of the tree, including this one
+		private Node left; //Higher scores
+		private Node right; //Lower scores
+	}
+	
+	//Instance variables
+	private Node root; //Top of the tree
+	private long added = 0; //Scores added so far
+	private long random; //State of the generator for the priorities
+	
+	/**
+	 * Constructor for an empty leaderboard
+	 */
+	public Leaderboard()
+	{
+		this( 0x2545F4914F6CDD1DL );
+	}
+	
+	/**
+	 * Constructor for an empty leaderboard
+	 * @param seed Seed for the priorities of the nodes, the same seed always builds the same tree
+	 */
+	public Leaderboard( long seed )
+	{
+		random = seed;
+	}
+	
+	/**
+	 * Add a score
+	 * It goes below any scores that are the same
+	 * @param name Name of the person who got the score
+	 * @param score The score
+	 * @return The place the score went in, 0 for the highest
+	 */
+	public int insert( String name, int score )
+	{
+		Node n = new Node();
+		n.name = name;
+		n.score = score;
+		n.order = added++;
+		n.priority = nextPriority();
+		
+		int index = getRank( score ) - 1;
+		root = insert( root, n );
+		return index;
+	}
+	
+	/**
+	 * Add a node to part of the tree
+	 * @param t Top of the part of the tree
+	 * @param n The node to add
+	 * @return The new top of the part of the tree
+	 */
+	private static Node insert( Node t, Node n )
+	{
+		if( t == null )
+			return n;
+		
+		if( comesBefore( n, t ) )
+		{
+			t.left = insert( t.left, n );
+			if( t.left.priority > t.priority )
+				t = rotateRight( t );
+		}
+		else
+		{
+			t.right = insert( t.right, n );
+			if( t.right.priority > t.priority )
+				t = rotateLeft( t );
+		}
+		
+		update( t );
+		return t;
+	}
+	
+	/**
+	 * Remove the score in a place
+	 * @param index The place, 0 for the highest
+	 */
+	public void remove( int index )
+	{
+		checkIndex( index );
+		root = remove( root, index );
+	}
+	
+	/**
+	 * Remove a node from part of the tree
+	 * @param t Top of the part of the tree
+	 * @param index Place of the node in the part of the tree
+	 * @return The new top of the part of the tree
+	 */
+	private static Node remove( Node t, int index )
+	{
+		int leftSize = size( t.left );
+		if( index < leftSize )
+			t.left = remove( t.left, index );
+		else if( index > leftSize )
+			t.right = remove( t.right, index - leftSize - 1 );
+		else
+			return merge( t.left, t.right );
+		
+		update( t );
+		return t;
+	}
+	
+	/**
+	 * Join two parts of the tree, where every node in the first comes before every node in the second
+	 * @param a The first part
+	 * @param b The second part
+	 * @return Top of the joined part
+	 */
+	private static Node merge( Node a, Node b )
+	{
+		if( a == null )
+			return b;
+		if( b == null )
+			return a;
+		
+		if( a.priority > b.priority )
+		{
+			a.right = merge( a.right, b );
+			update( a );
+			return a;
+		}
+		else
+		{
+			b.left = merge( a, b.left );
+			update( b );
+			return b;
+		}
+	}
+	
+	/**
+	 * Find the place a new score would go in
+	 * @param score The score
+	 * @return The place, 1 for the highest
+	 */
+	public int getRank( int score )
+	{
+		//Count the scores that are the same or higher
+		int count = 0;
+		Node t = root;
+		while( t != null )
+		{
+			if( t.score >= score )
+			{
+				count += size( t.left ) + 1;
+				t = t.right;
+			}
+			else
+				t = t.left;
+		}
+		
+		return count + 1;
+	}
+	
+	/**
+	 * Get the score in a place
+	 * @param index The place, 0 for the highest
+	 * @return The score
+	 */
+	public int getScore( int index )
+	{
+		return find( index ).score;
+	}
+	
+	/**
+	 * Get the name in a place
+	 * @param index The place, 0 for the highest
+	 * @return The name of the person who got the score
+	 */
+	public String getName( int index )
+	{
+		return find( index ).name;
+	}
+	
+	/**
+	 * Find the node in a place
+	 * @param index The place, 0 for the highest
+	 * @return The node
+	 */
+	private Node find( int index )
+	{
+		checkIndex( index );
+		
+		Node t = root;
+		while( true )
+		{
+			int leftSize = size( t.left );
+			if( index < leftSize )
+				t = t.left;
+			else if( index > leftSize )
+			{
+				index -= leftSize + 1;
+				t = t.right;
+			}
+			else
+				return t;
+		}
+	}
+	
+	/**
+	 * Get the highest scores
+	 * @param names Where to put the names, as many scores are given as there is room for
+	 * @param scores Where to put the scores
+	 * @return How many scores were given, less than the room if there aren't enough scores
+	 */
+	public int getTop( String[] names, int[] scores )
+	{
+		return getTop( root, names, scores, 0 );
+	}
+	
+	/**
+	 * Put the scores from part of the tree in order until there is no more room
+	 * @param t Top of the part of the tree
+	 * @param names Where to put the names
+	 * @param scores Where to put the scores
+	 * @param count How many scores have been put in so far
+	 * @return How many scores have been put in now
+	 */
+	private static int getTop( Node t, String[] names, int[] scores, int count )
+	{
+		if( t == null || count >= scores.length )
+			return count;
+		
+		count = getTop( t.left, names, scores, count );
+		if( count < scores.length )
+		{
+			names[count] = t.name;
+			scores[count] = t.score;
+			count++;
+		}
+		
+		return getTop( t.right, names, scores, count );
+	}
+	
+	/**
+	 * @return How many scores there are
+	 */
+	public int size()
+	{
+		return size( root );
+	}
+	
+	/**
+	 * Make sure there is a score in a place
+	 * @param index The place
+	 */
+	private void checkIndex( int index )
+	{
+		if( index < 0 || index >= size() )
+			throw new IndexOutOfBoundsException( "Place " + index + " of " + size() + " scores" );
+	}
+	
+	/**
+	 * Whether or not one node goes before another, higher scores first, then older scores first
+	 */
+	private static boolean comesBefore( Node a, Node b )
+	{
+		if( a.score != b.score )
+			return a.score > b.score;
+		
+		return a.order < b.order;
+	}
+	
+	/**
+	 * Turn part of the tree so the left node is on top
+	 * @param t Top of the part of the tree
+	 * @return The new top
+	 */
+	private static Node rotateRight( Node t )
+	{
+		Node l = t.left;
+		t.left = l.right;
+		l.right = t;
+		update( t );
+		update( l );
+		return l;
+	}
+	
+	/**
+	 * Turn part of the tree so the right node is on top
+	 * @param t Top of the part of the tree
+	 * @return The new top
+	 */
+	private static Node rotateLeft( Node t )
+	{
+		Node r = t.right;
+		t.right = r.left;
+		r.left = t;
+		update( t );
+		update( r );
+		return r;
+	}
+	
+	/**
+	 * Work out the size of a node from the nodes under it
+	 * @param t The node
+	 */
+	private static void update( Node t )
+	{
+		t.size = size( t.left ) + size( t.right ) + 1;
+	}
+	
+	/**
+	 * @return The size of part of the tree, 0 for no tree
+	 */
+	private static int size( Node t )
+	{
+		return t == null ? 0 : t.size;
+	}
+	
+	/**
+	 * Get the priority for a new node using the SplitMix64 generator
+	 * @return A random number
+	 */
+	private long nextPriority()
+	{
+		random += PieceSource.GAMMA;
+		return PieceSource.mix( random );
+	}
+}
\ No newline at end of file
@@ -3,19 +3,30 @@
  */
 public class Line
 {
-	private int x; //Position of the line on the grid
-	private final int SPEED = 4; //How fast to move the line each frame (in pixels)
+	private long x; //Position of the line on the grid, in pixels times the tick rate
+	private int tickRate; //Ticks in one second
+	private final int SPEED = 48; //How fast to move the line each second (in pixels)
 	
 	/**
-	 * Constructor
+	 * Constructor for a line that moves 12 times a second
 	 */
 	public Line()
+	{
+		this( 12 );
+	}
+	
+	/**
+	 * Constructor
+	 * @param rate How many times a second the line is moved
+	 */
+	public Line( int rate )
 	{
 		x = 0;
+		tickRate = rate;
 	}
 	
 	/**
-	 * Move the line
+	 * Move the line by one tick
 	 */
 	public void move()
 	{
@@ -35,7 +46,33 @@ public class Line
 	 * @return The x co-ordinate of the line, relative to where it is on the grid
 	 */
 	public int getX()
+	{
+		return (int)( x / tickRate );
+	}
+	
+	/**
+	 * Returns where the line is part of the way to the next tick
+	 * @param alpha How far it is to the next tick, from 0 to 1
+	 * @return The x co-ordinate of the line, relative to where it is on the grid
+	 */
+	public int getX( double alpha )
+	{
+		return (int)( ( x + alpha * SPEED ) / tickRate );
+	}
+	
+	/**
+	 * @return Where the line is, to carry on from later with setState()
+	 */
+	public long getState()
 	{
 		return x;
 	}
+	
+	/**
+	 * @param state Where the line is, from getState()
+	 */
+	public void setState( long state )
+	{
+		x = state;
+	}
 }
\ No newline at end of file
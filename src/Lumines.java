@@ -1,3 +1,6 @@
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Name: Michael Parrott
  * Date: June 17, 2011
@@ -12,7 +15,136 @@ public class Lumines
 {
 	public static void main( String[] args ) throws Exception
 	{
-		LuminesGUI game = new LuminesGUI();
+		int tickRate = LuminesGame.TICK_RATE; //How many times a second the game ticks
+		boolean showPerf = false; //Whether or not to show the performance overlay
+		String perfCsv = null; //File to write frame times to
+		long seed = System.nanoTime(); //Seed for the colours of the squares
+		String record = null; //File to record the keys to
+		String replay = null; //Recording to play back
+		boolean headless = false; //Whether or not to play the recording without a display
+		String spectate = null; //File to write a spectator stream of a headless replay to
+		String checkpoint = "Lumines.sav"; //File the game is saved to every few seconds, null to not save it
+		boolean seeded = false; //Whether or not the seed was given
+		boolean computer = false; //Whether or not the computer plays
+		int height = LuminesGame.BOARD_HEIGHT; //Height of the board in blocks
+		int width = LuminesGame.BOARD_WIDTH; //Width of the board in blocks
+		int colours = 2; //Number of colours the blocks can be
+		int repeatDelay = AutoRepeat.DEFAULT_DELAY; //Milliseconds a key is held before it repeats
+		int repeatTime = AutoRepeat.DEFAULT_REPEAT; //Milliseconds between each repeat
+		boolean repeatGiven = false; //Whether or not the key repeat was given
+		
+		//Read the options
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[i].equals( "--tick-rate" ) && i + 1 < args.length )
+				tickRate = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--perf" ) )
+				showPerf = true;
+			else if( args[i].equals( "--perf-csv" ) && i + 1 < args.length )
+				perfCsv = args[++i];
+			else if( args[i].equals( "--seed" ) && i + 1 < args.length )
+			{
+				seed = Long.parseLong( args[++i] );
+				seeded = true;
+			}
+			else if( args[i].equals( "--record" ) && i + 1 < args.length )
+				record = args[++i];
+			else if( args[i].equals( "--replay" ) && i + 1 < args.length )
+				replay = args[++i];
+			else if( args[i].equals( "--headless" ) )
+				headless = true;
+			else if( args[i].equals( "--spectate" ) && i + 1 < args.length )
+				spectate = args[++i];
+			else if( args[i].equals( "--checkpoint" ) && i + 1 < args.length )
+				checkpoint = args[++i];
+			else if( args[i].equals( "--no-checkpoint" ) )
+				checkpoint = null;
+			else if( args[i].equals( "--ai" ) )
+				computer = true;
+			else if( args[i].equals( "--width" ) && i + 1 < args.length )
+				width = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--height" ) && i + 1 < args.length )
+				height = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--colours" ) && i + 1 < args.length )
+				colours = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--das" ) && i + 1 < args.length )
+			{
+				repeatDelay = Integer.parseInt( args[++i] );
+				repeatGiven = true;
+			}
+			else if( args[i].equals( "--arr" ) && i + 1 < args.length )
+			{
+				repeatTime = Integer.parseInt( args[++i] );
+				repeatGiven = true;
+			}
+		}
+		
+		//Recordings don't keep the number of colours, so they are only made of two colour games
+		Cell.checkColours( colours );
+		if( colours != 2 && ( record != null || replay != null ) )
+		{
+			System.err.println( "Only games with two colours can be recorded or replayed" );
+			return;
+		}
+		
+		//Play a recording as fast as possible
+		if( replay != null && headless )
+		{
+			HeadlessReplay.play( replay, spectate );
+			return;
+		}
+		
+		//A replay has to use the same tick rate and seed as the recording
+		InputPlayer player = null;
+		if( replay != null )
+		{
+			player = new InputPlayer( replay );
+			tickRate = player.getTickRate();
+			seed = player.getSeed();
+			height = player.getHeight();
+			width = player.getWidth();
+		}
+		
+		//Carry on from the last game if the program stopped part way through one
+		//Replays, recordings and games with a seed have to start from their seed instead
+		LuminesGame saved = null;
+		if( replay != null || record != null || seeded )
+			checkpoint = null;
+		if( checkpoint != null && new File( checkpoint ).exists() )
+		{
+			try
+			{
+				saved = GameSnapshot.load( checkpoint );
+				tickRate = saved.getTickRate();
+				height = saved.getBoard().getHeight();
+				width = saved.getBoard().getWidth();
+				colours = saved.getColours();
+			}
+			catch( IOException e )
+			{
+				System.err.println( "Could not carry on the saved game: " + e.getMessage() );
+			}
+		}
+		
+		LuminesGUI game = new LuminesGUI( tickRate, seed, height, width, colours );
+		if( saved != null )
+			game.restoreGame( saved );
+		if( checkpoint != null )
+			game.checkpointTo( checkpoint );
+		
+		//A saved game keeps the key repeat it was played with, along with which keys were held
+		if( repeatGiven && saved == null )
+			game.setAutoRepeat( repeatDelay, repeatTime );
+		
+		if( computer )
+			game.setComputerPlayer( new SearchPolicy( Runtime.getRuntime().availableProcessors() ) );
+		if( player != null )
+			game.replayInput( player );
+		else if( record != null )
+			game.recordInput( record );
+		game.setShowPerformance( showPerf );
+		if( perfCsv != null )
+			game.recordPerformance( perfCsv );
 		
 		//Run the game
 		game.run();
@@ -1,15 +1,23 @@
 import java.awt.Color;
+import java.awt.DisplayMode;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
-import java.awt.Toolkit;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
 
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -18,6 +26,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  * The interface for Lumines
@@ -26,21 +35,27 @@ import javax.swing.JPanel;
 public class LuminesGUI extends JFrame implements ActionListener
 {
 	//Constants
-	private final int SQUARE_WIDTH = 20; //Width of one block (in pixels)
-	private final int BOARD_WIDTH = 16; //The width of the board in blocks
-	private final int BOARD_HEIGHT = 10; //The height of the board in blocks
-	private final int FRAME_RATE = 12; //Frames per second
+	private static final int SQUARE_WIDTH = LuminesGame.SQUARE_WIDTH; //Width of one block (in pixels)
+	private static final int DEFAULT_REFRESH_RATE = 60; //Frames per second to draw when the screen doesn't say
+	private static final int MAX_CATCH_UP = 5; //Most ticks to run at once after the game stalls
+	private static final int CHECKPOINT_SECONDS = 5; //Seconds of play between snapshots of the game
+	private static final int PERF_WIDTH = 260; //Width of the performance overlay (in pixels)
+	private static final int PERF_LINE_HEIGHT = 14; //Height of a line on the performance overlay (in pixels)
+	private static final Color PERF_BACKGROUND = new Color( 0, 0, 0, 160 ); //See-through background of the overlay
 	
 	//Instance variables - gameplay related
 	private boolean running = true; //Whether or not the game is still running
 	private LuminesInput input = new LuminesInput( this ); //Keyboard input for the game
-	private Square currentSquare = new Square(); //Square that the user is controlling
-	private Square[] nextSquares = new Square[3]; //What the next squares will be
-	private Board luminesBoard = new Board( BOARD_HEIGHT, BOARD_WIDTH ); //The board of blocks
-	private Line line = new Line(); //The line to clear the blocks
-	private long startTime; //What time the current game started
-	private int score = 0; //The score of the player
-	private HighScore highScores; //Holds the high scores
+	private InputState inputState = new InputState(); //The keys held down for this frame
+	private LuminesGame game; //The rules of the game
+	private volatile HighScore highScores; //Holds the high scores, null until they are loaded or if they couldn't be
+	private volatile String highScoreError; //Why the high scores couldn't be loaded, null if they could
+	private CountDownLatch highScoresLoaded = new CountDownLatch( 1 ); //Counted down once the high scores are loaded or failed to
+	private InputRecorder inputRecorder; //Records the keys on every tick, null if they aren't recorded
+	private InputPlayer inputPlayer; //Plays keys back from a recording, null if the player is playing
+	private InputPolicy computerPlayer; //Plays the game instead of the keyboard, null if the player is playing
+	private Checkpointer checkpointer; //Saves snapshots of the game, null if it isn't saved
+	private int checkpointTicks = 0; //Ticks since the last snapshot
 	
 	//GUI Components
 	private JLabel title; //Title label
@@ -48,8 +63,29 @@ public class LuminesGUI extends JFrame implements ActionListener
 	private JLabel time; //Time for the current game
 	private JPanel luminesGrid; //Grid for the blocks
 	private JPanel nextPieces; //Shows the next 3 pieces coming
+	private LuminesRenderer renderer; //Draws the grid, made once the size of the grid is known
+	private long shownSquareCount = -1; //Square count of the game when the next squares were last painted
+	private int[][] nextCells = new int[LuminesGame.NEXT_SQUARES][4]; //Cells of the next squares, copied on the game's thread for the panel to paint
 	private JPanel highScorePanel;
-	private JLabel[] highScoreLabels = new JLabel[5];
+	private JLabel[] highScoreLabels = new JLabel[HighScore.TOP_SIZE];
+	private String[] topNames = new String[HighScore.TOP_SIZE]; //Names on the high score labels
+	private int[] topScores = new int[HighScore.TOP_SIZE]; //Scores on the high score labels
+	private int shownScore = -1; //Score on the score label
+	private long shownSecond = -1; //Time on the time label, in seconds
+	private String shownSaveError; //Problem saving the high scores shown in the title, null if there isn't one
+	private boolean highScoresShown = false; //Whether or not the loaded high scores are on the labels yet
+	
+	//Performance overlay
+	private PerfRecorder perf; //Times each part of every frame
+	private boolean showPerf = false; //Whether or not the overlay is shown
+	private boolean perfKeyDown = false; //Whether or not the key that shows the overlay was down last frame
+	private String[] perfLines = new String[0]; //Lines of text on the overlay
+	private long perfResults = -1; //Which numbers from the recorder are on the overlay
+	
+	//Startup times
+	private long createdTime; //When the constructor started, from System.nanoTime()
+	private volatile long firstFrameTime = -1; //Nanoseconds from the constructor to the first painted frame, -1 until then
+	private CountDownLatch firstFrame = new CountDownLatch( 1 ); //Counted down once the first frame is painted
 	
 	/**
 	 * Default constructor for LuminesGUI
@@ -57,12 +93,70 @@ public class LuminesGUI extends JFrame implements ActionListener
 	 */
 	public LuminesGUI() throws Exception
 	{
+		this( LuminesGame.TICK_RATE );
+	}
+	
+	/**
+	 * Constructor for LuminesGUI
+	 * Sets up the interface
+	 * @param tickRate How many times a second the game is ticked
+	 */
+	public LuminesGUI( int tickRate ) throws Exception
+	{
+		this( tickRate, System.nanoTime() );
+	}
+	
+	/**
+	 * Constructor for LuminesGUI
+	 * Sets up the interface
+	 * The game's time is counted in ticks, so the same seed and keys always give the same game
+	 * @param tickRate How many times a second the game is ticked
+	 * @param seed Seed for the colours of the squares
+	 */
+	public LuminesGUI( int tickRate, long seed ) throws Exception
+	{
+		this( tickRate, seed, LuminesGame.BOARD_HEIGHT, LuminesGame.BOARD_WIDTH );
+	}
+	
+	/**
+	 * Constructor for LuminesGUI
+	 * Sets up the interface
+	 * @param tickRate How many times a second the game is ticked
+	 * @param seed Seed for the colours of the squares
+	 * @param boardHeight Height of the board in blocks
+	 * @param boardWidth Width of the board in blocks
+	 */
+	public LuminesGUI( int tickRate, long seed, int boardHeight, int boardWidth ) throws Exception
+	{
+		this( tickRate, seed, boardHeight, boardWidth, 2 );
+	}
+	
+	/**
+	 * Constructor for LuminesGUI
+	 * Sets up the interface
+	 * @param tickRate How many times a second the game is ticked
+	 * @param seed Seed for the colours of the squares
+	 * @param boardHeight Height of the board in blocks
+	 * @param boardWidth Width of the board in blocks
+	 * @param colours Number of colours the blocks can be, from 2 to Cell.MAX_COLOURS
+	 */
+	public LuminesGUI( int tickRate, long seed, int boardHeight, int boardWidth, int colours ) throws Exception
+	{
+		createdTime = System.nanoTime();
+		
+		//The icon and the high scores are read from the disk while the window is built, so they don't hold up the first frame
+		loadIcon( "LuminesIcon.jpg" );
+		loadHighScores( "HighScores.dat", "HighScores.txt" );
+		
+		game = new LuminesGame( new TickClock( tickRate ), tickRate, seed, boardHeight, boardWidth, colours );
+		perf = new PerfRecorder();
+		game.setRecorder( perf );
+		
 		//Do initialization required for frame
 		setTitle( "Lumines: By Michael Parrott" );
 		setSize( 800, 600 );
 		setResizable( false );
 		setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
-		setIconImage( Toolkit.getDefaultToolkit().getImage("LuminesIcon.jpg") );
 		
 		//Set up the layout of Lumines
 		setLayout( new GridBagLayout() );
@@ -88,7 +182,7 @@ public class LuminesGUI extends JFrame implements ActionListener
 		time.setFont( scoreLabel.getFont() );
 		add( time, c );
 		
-		luminesGrid = new JPanel();
+		luminesGrid = new GridPanel();
 		c.gridx = 1;
 		c.gridy = 1;
 		c.weightx = 0.9;
@@ -98,14 +192,14 @@ public class LuminesGUI extends JFrame implements ActionListener
 		luminesGrid.setVisible( true );
 		add( luminesGrid, c );
 		
-		nextPieces = new JPanel();
+		nextPieces = new NextPiecesPanel();
 		c.insets = new GridBagConstraints().insets;
 		c.weightx = .2;
 		
 		c.gridx = 2;
 		c.gridy = 1;
 		nextPieces.setVisible( true );
-		add( nextPieces, c ); 
+		add( nextPieces, c );
 		
 		c.gridy = 2;
 		c.weightx = 0.2;
@@ -116,12 +210,14 @@ public class LuminesGUI extends JFrame implements ActionListener
 		JLabel highScoreTitle = new JLabel( "High scores:" );
 		highScoreTitle.setFont( new Font( "Serif", Font.ITALIC, 20 ) );
 		highScorePanel.add( highScoreTitle );
-		highScores = new HighScore( "HighScores.txt" );
 		for( int i = 0; i < highScoreLabels.length; i++ )
 		{
-			highScoreLabels[i] = new JLabel( i + 1 + ". " + highScores.getNames()[i] + ": " + highScores.getScores()[i] );
+			highScoreLabels[i] = new JLabel();
 			highScorePanel.add( highScoreLabels[i] );
 		}
+		
+		//The labels are filled in by updateLabels() once the high scores are loaded
+		highScoreLabels[0].setText( "Loading..." );
 		add( highScorePanel, c );
 		
 		JMenuBar bar = new JMenuBar();
@@ -132,545 +228,631 @@ public class LuminesGUI extends JFrame implements ActionListener
 		setJMenuBar( bar );
 		
 		setVisible( true );
-		
-		//Do game initialization required
-		for( int i = 0; i < 3; i++ )
-		{
-			nextSquares[i] = new Square();
-		}
-		startTime = System.currentTimeMillis();
 	}
 	
 	/**
 	 * Method to start the game
+	 * The game ticks at a fixed rate, no matter how fast the frames are drawn
+	 * Frames are drawn as often as the screen refreshes, with the line moved smoothly between ticks
 	 * @exception Thread.sleep
 	 */
 	public void run() throws Exception
 	{
+		long tickLength = 1000000000L / game.getTickRate(); //Nanoseconds in one tick
+		long frameLength = 1000000000L / getRefreshRate(); //Nanoseconds in one frame
+		long previous = System.nanoTime();
+		long lag = 0; //Time that still needs to be ticked
+		
 		while( running )
 		{
-			//Keep track of the start time of the frame
-			long start = System.currentTimeMillis();
+			long start = System.nanoTime();
+			lag += start - previous;
+			previous = start;
+			
+			//If the game stalled then only catch up a few ticks, instead of rushing through all of them
+			if( lag > tickLength * MAX_CATCH_UP )
+				lag = tickLength * MAX_CATCH_UP;
+			
+			//Tick as many times as needed to catch up to the real time
+			long tickEnd = start - lag + tickLength; //Keys pressed after this are left for the next tick
+			while( lag >= tickLength && running )
+			{
+				update( tickEnd );
+				perf.addTick();
+				lag -= tickLength;
+				tickEnd += tickLength;
+			}
+			
+			//The replay ended during those ticks and the window is gone, so there is nothing to draw on
+			if( !running )
+				break;
 			
-			//Update and draw the changes
-			update();
-			draw();
+			long drawStart = System.nanoTime();
+			perf.add( PerfRecorder.UPDATE, drawStart - start );
 			
-			//Get the total frame time
-			long frameTime = System.currentTimeMillis() - start;
+			//Draw with the line part of the way to the next tick
+			draw( (double) lag / tickLength );
+			long sleepStart = System.nanoTime();
+			perf.add( PerfRecorder.DRAW, sleepStart - drawStart );
 			
-			//If the frame was faster than the expected frame rate then
-			if( frameTime < ( 1000 / FRAME_RATE ) )
-				//Stop the game until enough time has been taken
-				Thread.sleep( (long)( 1000 / FRAME_RATE ) - frameTime );
+			//Wait until the next frame or the next tick, whichever comes first
+			long wait = Math.min( frameLength, tickLength - lag ) - ( sleepStart - start );
+			if( wait > 0 )
+				Thread.sleep( wait / 1000000, (int)( wait % 1000000 ) );
+			perf.add( PerfRecorder.SLEEP, System.nanoTime() - sleepStart );
+			perf.endFrame();
 		}
 	}
 	
+	/**
+	 * Find out how often the screen refreshes
+	 * @return The refresh rate of the screen in frames per second
+	 */
+	private int getRefreshRate()
+	{
+		int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+		if( rate == DisplayMode.REFRESH_RATE_UNKNOWN )
+			return DEFAULT_REFRESH_RATE;
+		
+		return rate;
+	}
+	
 	/**
 	 * Get keyboard input and determine what to do with it
+	 * @param tickEnd When the tick ends, from System.nanoTime(), so keys pressed later go to the next tick
 	 */
-	private void update() throws Exception
+	private void update( long tickEnd ) throws Exception
 	{
-		//Erase the previous location of the square
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		input.poll( tickEnd );
+		
+		//Let the game do one tick with the keys that are pressed, or the keys from the recording
+		if( inputPlayer != null )
 		{
-			for( int j = 0; j < BOARD_WIDTH; j++ )
+			if( !inputPlayer.next( inputState ) )
 			{
-				if( luminesBoard.getPiece( i, j ) == Block.COLOUR_ONE || luminesBoard.getPiece( i, j ) == Block.COLOUR_TWO )
-					luminesBoard.setPiece( i, j, Block.EMPTY );
+				JOptionPane.showMessageDialog( null, "The replay is over" );
+				running = false;
+				dispose();
+				return;
 			}
 		}
+		else
+		{
+			if( computerPlayer != null )
+				computerPlayer.choose( game, inputState );
+			else
+				input.getState( inputState );
+			if( inputRecorder != null )
+				inputRecorder.record( inputState );
+		}
+		game.tick( inputState );
 		
-		//Rotate the square clockwise if up is pressed
-		if( input.isKeyPressed( KeyEvent.VK_UP ) )
-			currentSquare.rotate();
-		
-		/* Move the square down if they press the down arrow or it is time for the square to
-		move down on its own */
-		currentSquare.moveDownAdd();
-		if( currentSquare.getMovingDown() % FRAME_RATE == 0 )
+		//Save the game every so often so it can be carried on if the program stops
+		if( checkpointer != null && ++checkpointTicks >= game.getTickRate() * CHECKPOINT_SECONDS )
 		{
-			currentSquare.moveDown();
+			checkpointer.save( game );
+			checkpointTicks = 0;
 		}
-		else if( input.isKeyPressed( KeyEvent.VK_DOWN ) )
-			currentSquare.moveDown();
 		
-		//Move the square left or right if possible when the arrows keys are pressed
-		if( input.isKeyPressed( KeyEvent.VK_LEFT ) && isClear( currentSquare.getRow(), currentSquare.getColumn() - 1 ))
-			currentSquare.moveLeft();
+		if( game.isGameOver() && inputPlayer != null )
+		{
+			//Replays just keep going with the next game
+			game.newGame();
+		}
+		else if( game.isGameOver() )
+		{
+			//Tell the player they lost
+			JOptionPane.showMessageDialog( null, "You lose!" );
+			
+			//Start up a new game
+			newGame();
+		}
+	}
+	
+	/**
+	 * Show the score and the time played
+	 * The labels are only changed when what they show changes
+	 */
+	private void updateLabels()
+	{
+		//Figure out the time in minutes and seconds
+		long timePlayed = game.getTimePlayed();
+		if( timePlayed / 1000 != shownSecond )
+		{
+			shownSecond = timePlayed / 1000;
+			long min = timePlayed / 60000;
+			long sec = ( timePlayed % 60000 ) / 1000;
+			if( sec < 10 )
+				time.setText( "Time: " + min + ": 0" + sec );
+			else
+				time.setText( "Time: " + min + ": " + sec );
+		}
 		
-		if( input.isKeyPressed( KeyEvent.VK_RIGHT ) && isClear( currentSquare.getRow(), currentSquare.getColumn() + 1 ) )
-			currentSquare.moveRight();
+		if( game.getScore() != shownScore )
+		{
+			shownScore = game.getScore();
+			scoreLabel.setText( "Score: " + shownScore );
+		}
 		
-		//Prevent the square from going outside the widths of the board
-		if( currentSquare.getColumn() < 0 )
-			currentSquare.setColumn( 0 );
-		if( currentSquare.getColumn() > 14 )
-			currentSquare.setColumn( 14 );
+		//Fill in the high scores the first frame after they are loaded
+		if( !highScoresShown && highScoresLoaded.getCount() == 0 )
+		{
+			highScoresShown = true;
+			updateHighScores();
+		}
 		
-		//If the square has fallen onto the board then
-		if( currentSquare.getRow() >= 0 )
+		//Let the player know if the high scores can't be saved, without stopping the game
+		HighScore scores = highScores;
+		String saveError = scores != null ? scores.getSaveError() : null;
+		if( saveError != shownSaveError )
 		{
-			//If the square is going to be below the bottom of the grid then
-			if( currentSquare.getRow() > 8 )
-			{
-				//Move it back up
-				currentSquare.setRow( currentSquare.getRow() - 1 );
-				
-				//Solidify the position of the square
-				for( int i = 0; i < 2; i++ )
-				{
-					for( int j = 0; j < 2; j++ )
-					{
-						luminesBoard.setPiece( currentSquare.getRow() + i, currentSquare.getColumn() + j, currentSquare.getBlocks()[i][j].getNext() );
-					}
-				}
-				
-				//Create a new square
-				newSquare();
-				//Check to see if the newly placed square made a 2x2 square of same colour blocks
-				setClear();
-			}
-			//If the square is going to get cut in half 
-			else if( luminesBoard.getPiece( currentSquare.getRow() + 1, currentSquare.getColumn() ) != Block.EMPTY 
-					|| luminesBoard.getPiece( currentSquare.getRow() + 1, currentSquare.getColumn() + 1 ) != Block.EMPTY )
-			{
-				//Move it back up a row
-				currentSquare.setRow( currentSquare.getRow() - 1 );
-				
-				//Check both sides for how low to go
-				for( int j = 0; j < 2; j++ )
-				{
-					if( luminesBoard.getPiece( currentSquare.getRow() + 2, currentSquare.getColumn() + j ) == Block.EMPTY )
-					{
-						int curRow = currentSquare.getRow() + 2;
-						boolean done = false;
-						for( int i = curRow+1; i < BOARD_HEIGHT; i++ )
-						{
-							if( luminesBoard.getPiece( i, currentSquare.getColumn() + j ) != Block.EMPTY )
-							{
-								luminesBoard.setPiece( i - 1, currentSquare.getColumn() + j, currentSquare.getBlocks()[1][j].getNext() );
-								luminesBoard.setPiece( i - 2, currentSquare.getColumn() + j, currentSquare.getBlocks()[0][j].getNext() );
-								done = true;
-								break;
-							}
-						}
-						if( !done )
-						{
-							luminesBoard.setPiece( 9, currentSquare.getColumn() + j, currentSquare.getBlocks()[1][j].getNext() );
-							luminesBoard.setPiece( 8, currentSquare.getColumn() + j, currentSquare.getBlocks()[0][j].getNext() );
-						}
-					}
-					else
-					{
-						if( currentSquare.getRow() >= 0 )
-							luminesBoard.setPiece( currentSquare.getRow(), currentSquare.getColumn() + j, currentSquare.getBlocks()[0][j].getNext() );
-						
-						if( currentSquare.getRow() + 1 >= 0 )
-							luminesBoard.setPiece( currentSquare.getRow()+1, currentSquare.getColumn() + j, currentSquare.getBlocks()[1][j].getNext() );
-					}
-				}
-				
-				newSquare();
-				setClear();
-			}
-			
-			//Show the square on the screen
-			if( currentSquare.getRow() >= 0 )
-				for( int i = 0; i < 2; i++ )
-					for( int j = 0; j < 2; j++ )
-						luminesBoard.setPiece( currentSquare.getRow()+i, currentSquare.getColumn()+j, currentSquare.getBlocks()[i][j] );
+			shownSaveError = saveError;
+			if( saveError == null )
+				setTitle( "Lumines: By Michael Parrott" );
+			else
+				setTitle( "Lumines: By Michael Parrott (high scores not saved: " + saveError + ")" );
 		}
-		//If the square is still above the board
-		else
+	}
+	
+	/**
+	 * Start a new game of lumines
+	 */
+	public void newGame() throws Exception
+	{
+		int score = game.getScore();
+		
+		//Empty the board and get new squares
+		game.newGame();
+		
+		//The lost game shouldn't be carried on the next time the program starts
+		if( checkpointer != null )
 		{
-			for( int i = 0; i < 2; i++ )
-				for( int j = 0; j < 2; j++ )
-					if( currentSquare.getRow()+i >= 0 && currentSquare.getColumn() + j >= 0 
-							&& luminesBoard.getPiece( currentSquare.getRow() + i, currentSquare.getColumn() + j ) != Block.EMPTY )
-					{
-						//Tell the player they lost
-						JOptionPane.showMessageDialog( null, "You lose!" );
-						
-						//Start up a new game
-						newGame();
-					}
+			checkpointer.save( game );
+			checkpointTicks = 0;
 		}
 		
-		//Move the line over
-		line.move();
+		//Set the values of all keys to false
+		input.clearKeys();
 		
-		//If the line just passed a column of blocks then
-		if( line.getX() % SQUARE_WIDTH == 0 )
+		//Enter the high score in if they got a new high score
+		HighScore scores = waitForHighScores();
+		if( scores != null && scores.shouldEnter( score ) )
 		{
-			//Clear the column of blocks it just passed
-			doClear( line.getX() / SQUARE_WIDTH - 1 );
+			String s = JOptionPane.showInputDialog( "Congratulations! You got a high score. Enter your name:" );
+			scores.insertScore( s, score );
+			updateHighScores();
 		}
+	}
+	
+	/**
+	 * Do the drawing on the frame
+	 * The grid is drawn on an image that is kept between frames, then only the part that changed is painted
+	 * @param alpha How far it is from the last tick to the next one, from 0 to 1
+	 */
+	private void draw( double alpha )
+	{
+		updateLabels();
+		updatePerfOverlay();
 		
-		//If the line has reached the end of the board then
-		if( line.getX() > ( SQUARE_WIDTH * BOARD_WIDTH ) )
-			//Move it back to the start
-			line.resetLine();
+		if( renderer == null )
+			renderer = new LuminesRenderer( luminesGrid.getWidth(), luminesGrid.getHeight() );
 		
-		//Figure out the time in minutes and seconds
-		long timePlayed = System.currentTimeMillis() - startTime;
-		long min = timePlayed / 60000;
-		long sec = ( timePlayed % 60000 ) / 1000;
-		if( sec < 10 )
-			time.setText( "Time: " + min + ": 0" + sec );
-		else
-			time.setText( "Time: " + min + ": " + sec );
+		Rectangle changed;
+		synchronized( renderer )
+		{
+			changed = renderer.render( game, alpha );
+		}
+		if( !changed.isEmpty() )
+			luminesGrid.repaint( changed );
 		
-		scoreLabel.setText( "Score: " + score );
+		//The next squares only need to be painted when a new square comes
+		//They are used again once they land, so the panel paints a copy instead of the squares themselves
+		if( game.getSquareCount() != shownSquareCount )
+		{
+			shownSquareCount = game.getSquareCount();
+			synchronized( nextCells )
+			{
+				for( int i = 0; i < LuminesGame.NEXT_SQUARES; i++ )
+					for( int k = 0; k < 4; k++ )
+						nextCells[i][k] = game.getNextSquare( i ).getCell( k / 2, k % 2 );
+			}
+			nextPieces.repaint();
+		}
 	}
 	
 	/**
-	 * Labelling the blocks to be cleared
+	 * Panel that paints the image of the grid
 	 */
-	public void setClear()
+	private class GridPanel extends JPanel
 	{
-		boolean continueClear = true;
+		private static final long serialVersionUID = 1L; //Version of the class if it is ever serialized
 		
-		while( continueClear )
+		/**
+		 * Paint the part of the image that needs to be painted
+		 */
+		protected void paintComponent( Graphics g )
 		{
-			continueClear = false;
-			Block[][] tempBoard = new Block[BOARD_HEIGHT][BOARD_WIDTH];
-			for( int i = 0; i < BOARD_HEIGHT; i++ )
+			if( renderer == null )
 			{
-				for( int j = 0; j < BOARD_WIDTH; j++ )
-				{
-					tempBoard[i][j] = luminesBoard.getPiece( i, j );
-				}
+				super.paintComponent( g );
+				return;
 			}
 			
-			for( int i = 0; i < BOARD_HEIGHT - 1; i++ )
+			synchronized( renderer )
 			{
-				for( int j = 0; j < BOARD_WIDTH - 1; j++ )
-				{
-					if( luminesBoard.getPiece( i, j ).isFixed() )
-					{
-						Block pos = luminesBoard.getPiece( i, j );
-						if( pos.equalColour( luminesBoard.getPiece( i + 1, j ) ) 
-								&& pos.equalColour( luminesBoard.getPiece( i, j + 1 ) ) 
-								&& pos.equalColour( luminesBoard.getPiece( i + 1, j + 1 ) ) )
-						{
-							if( tempBoard[i][j].isNotCleared() )
-							{
-								continueClear = true;
-								tempBoard[i][j] = tempBoard[i][j].getNext();
-							}
-							
-							if( tempBoard[i+1][j].isNotCleared() )
-							{
-								continueClear = true;
-								tempBoard[i+1][j] = tempBoard[i+1][j].getNext();
-							}
-							
-							if( tempBoard[i][j+1].isNotCleared() )
-							{
-								continueClear = true;
-								tempBoard[i][j+1] = tempBoard[i+1][j+1].getNext();
-							}
-							
-							if( tempBoard[i+1][j+1].isNotCleared() )
-							{
-								continueClear = true;
-								tempBoard[i+1][j+1] = tempBoard[i+1][j+1].getNext();
-							}
-							
-						}
-					}
-				}
+				g.drawImage( renderer.getImage(), 0, 0, this );
 			}
 			
-			for( int i = 0; i < BOARD_HEIGHT; i++ )
+			if( firstFrameTime < 0 )
 			{
-				for( int j = 0; j < BOARD_WIDTH; j++ )
-				{
-					luminesBoard.setPiece( i, j, tempBoard[i][j] );
-				}
+				firstFrameTime = System.nanoTime() - createdTime;
+				firstFrame.countDown();
+				if( showPerf )
+					System.out.printf( "First frame %.1f ms after the window was made, %d ms after the program started%n",
+							firstFrameTime / 1e6, getStartupTime() );
+			}
+			
+			//Draw the performance numbers over the top right of the grid
+			String[] lines = perfLines;
+			if( showPerf && lines.length > 0 )
+			{
+				int x = getWidth() - PERF_WIDTH;
+				g.setColor( PERF_BACKGROUND );
+				g.fillRect( x, 0, PERF_WIDTH, PERF_LINE_HEIGHT * lines.length + 4 );
+				g.setColor( Color.white );
+				for( int i = 0; i < lines.length; i++ )
+					g.drawString( lines[i], x + 4, PERF_LINE_HEIGHT * ( i + 1 ) );
 			}
 		}
 	}
 	
 	/**
-	 * Start a new game of lumines
+	 * Show or hide the performance overlay when F3 is pressed, and update its numbers once a second
+	 * The text is only made when the numbers change, so most frames don't create anything
 	 */
-	public void newGame() throws Exception
+	private void updatePerfOverlay()
 	{
-		//Empty the board
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
-		{
-			for( int j = 0; j < BOARD_WIDTH; j++ )
-			{
-				luminesBoard.setPiece( i, j, Block.EMPTY );
-			}
-		}
-		
-		//Get new squares
-		currentSquare = new Square();
-		for( int i = 0; i < 3; i++ )
+		boolean keyDown = input.isKeyPressed( KeyEvent.VK_F3 );
+		if( keyDown && !perfKeyDown )
 		{
-			nextSquares[i] = new Square();
+			showPerf = !showPerf;
+			luminesGrid.repaint( luminesGrid.getWidth() - PERF_WIDTH, 0, PERF_WIDTH, luminesGrid.getHeight() );
 		}
+		perfKeyDown = keyDown;
 		
-		//Get a new line
-		line = new Line();
-		//Set the values of all keys to false
-		input.clearKeys();
+		if( !showPerf || perf.getResults() == perfResults )
+			return;
+		perfResults = perf.getResults();
 		
-		//Enter the high score in if they got a new high score
-		if( highScores.shouldEnter( score ) )
-		{
-			String s = JOptionPane.showInputDialog( "Congratulations! You got a high score. Enter your name:" );
-			highScores.insertScore( s, score );
-			highScores.close();
-			updateHighScores();
-		}
-		score = 0;
+		String[] lines = new String[PerfRecorder.PHASES + 3];
+		lines[0] = String.format( "FPS: %.1f", perf.getFps() );
+		lines[1] = String.format( "Frame p50/p99/max: %.2f / %.2f / %.2f ms", perf.getP50() / 1e6, perf.getP99() / 1e6, perf.getMax() / 1e6 );
+		for( int i = 0; i < PerfRecorder.PHASES; i++ )
+			lines[i + 2] = String.format( "%s p50/p99: %.3f / %.3f ms", PerfRecorder.PHASE_NAMES[i], perf.getPhaseP50( i ) / 1e6, perf.getPhaseP99( i ) / 1e6 );
+		lines[lines.length - 1] = String.format( "Allocated: %.1f KB/s", perf.getAllocationRate() / 1024 );
+		perfLines = lines;
 		
-		startTime = System.currentTimeMillis();
+		luminesGrid.repaint( luminesGrid.getWidth() - PERF_WIDTH, 0, PERF_WIDTH, PERF_LINE_HEIGHT * lines.length + 4 );
 	}
 	
 	/**
-	 * Clear the column of any blocks that need to be cleared
-	 * @param column The column to look at
+	 * Show the performance overlay
+	 * @param show Whether or not to show it
 	 */
-	public void doClear( int column )
+	public void setShowPerformance( boolean show )
 	{
-		/*
-		 * The actual clearing of the blocks, rather than just labeling them to be cleared
-		 */
-		int clearCount = 0;
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		showPerf = show;
+	}
+	
+	/**
+	 * Write how long each part of every frame takes to a CSV file
+	 * The file is finished when the program exits
+	 * @param file Name of the CSV file
+	 */
+	public void recordPerformance( String file ) throws Exception
+	{
+		perf.openCsv( file );
+		Runtime.getRuntime().addShutdownHook( new Thread()
 		{
-			if( luminesBoard.getPiece( i, column ).isClear() )
+			public void run()
 			{
-				clearCount++;
+				perf.close();
 			}
-		}
-		
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		} );
+	}
+	
+	/**
+	 * Record the keys on every tick so the game can be replayed
+	 * The file is finished when the program exits
+	 * @param file Name of the recording
+	 */
+	public void recordInput( String file ) throws Exception
+	{
+		inputRecorder = new InputRecorder( file, game.getTickRate(), game.getPieceSource().getSeed(), game.getBoard().getHeight(),
+				game.getBoard().getWidth(), game.getAutoRepeat() );
+		Runtime.getRuntime().addShutdownHook( new Thread()
 		{
-			if( luminesBoard.getPiece( i, column ).isClear() )
+			public void run()
 			{
-				for( int k = i; k >= 1; k-- )
+				try
+				{
+					inputRecorder.close();
+				}
+				catch( Exception e )
 				{
-					if( luminesBoard.getPiece( k, column ).isFixed() )
-						luminesBoard.setPiece( k, column, luminesBoard.getPiece( k - 1, column ) );
+					System.err.println( "Could not finish the recording: " + e.getMessage() );
 				}
 			}
-		}
-		
-		score += clearCount;
-		
-		for( int i = 0; i < clearCount; i++ )
-		{
-			luminesBoard.setPiece( i, column, Block.EMPTY );
-		}
-		
-		if( luminesBoard.isBoardEmpty() && clearCount != 0 )
-			score += 15;
-		
-		setClear();
+		} );
+	}
+	
+	/**
+	 * Carry on with a saved game instead of the new one
+	 * The game has to have the same size of board as the one the interface was made with
+	 * @param saved The game, from GameSnapshot
+	 */
+	public void restoreGame( LuminesGame saved )
+	{
+		game = saved;
+		game.setRecorder( perf );
+		shownSquareCount = -1;
 	}
 	
 	/**
-	 * Check to see if there is a block at the position
-	 * @param row Row to look at
-	 * @param column Column to look at
-	 * @return Whether or not there is a square at row and column
+	 * Save snapshots of the game to a file every few seconds, on a thread of its own
+	 * The last snapshot is finished when the program exits
+	 * @param file Name of the file
 	 */
-	public boolean isClear( int row, int column )
+	public void checkpointTo( String file )
 	{
-		for( int i = 0; i < 2; i++ )
+		checkpointer = new Checkpointer( file );
+		Runtime.getRuntime().addShutdownHook( new Thread()
 		{
-			for( int j = 0; j < 2; j++ )
+			public void run()
 			{
-				if( column+j < BOARD_WIDTH && column+j >= 0 && row+i < BOARD_HEIGHT && row+i >= 0 
-						&& luminesBoard.getPiece( row+i, column+j ) != Block.EMPTY )
-					return false;
+				checkpointer.close();
 			}
-		}
-		
-		return true;
+		} );
 	}
 	
+	/**
+	 * Play the keys from a recording instead of the keyboard
+	 * The game has to be made with the same tick rate and seed as the recording
+	 * @param player The recording to play
+	 */
+	public void replayInput( InputPlayer player )
+	{
+		inputPlayer = player;
+		player.setUp( game );
+	}
 	
+	/**
+	 * Change how held keys repeat
+	 * Has to be done before the keys are recorded, and a replay changes it back to the way the recording was made
+	 * @param delay Milliseconds a key is held before it repeats
+	 * @param repeat Milliseconds between each repeat
+	 */
+	public void setAutoRepeat( int delay, int repeat )
+	{
+		game.setAutoRepeat( AutoRepeat.toTicks( delay, game.getTickRate() ), AutoRepeat.toTicks( repeat, game.getTickRate() ) );
+	}
 	
 	/**
-	 * Gives you a new square to use
+	 * Let the computer play instead of the keyboard
+	 * @param policy What plays the game, null to play with the keyboard
 	 */
-	public void newSquare()
+	public void setComputerPlayer( InputPolicy policy )
 	{
-		currentSquare = nextSquares[0];
-		nextSquares[0] = nextSquares[1];
-		nextSquares[1] = nextSquares[2];
-		nextSquares[2] = new Square();
+		computerPlayer = policy;
 	}
 	
 	/**
-	 * Do the drawing on the frame
+	 * Panel that shows the next squares
 	 */
-	private void draw()
+	private class NextPiecesPanel extends JPanel
 	{
-		//Area around the grid to make room for new pieces
-		int xPlus = SQUARE_WIDTH * 2;
-		int yPlus = SQUARE_WIDTH * 2;
+		private static final long serialVersionUID = 1L; //Version of the class if it is ever serialized
 		
-		BufferedImage gridImage = new BufferedImage( luminesGrid.getWidth(), luminesGrid.getHeight(), BufferedImage.TYPE_INT_RGB );
-		Graphics grid = gridImage.getGraphics();
-		grid.setColor( Color.white );
-		grid.clearRect( 0, 0, gridImage.getWidth(), gridImage.getHeight() );
-		
-		BufferedImage gridPanelImage = new BufferedImage( luminesGrid.getWidth(), luminesGrid.getHeight(), BufferedImage.TYPE_INT_RGB );
-		Graphics gridPanel = gridPanelImage.getGraphics();
-		gridPanel.setColor( Color.white );
-		gridPanel.clearRect( 0, 0, gridPanelImage.getWidth(), gridPanelImage.getHeight() );
-		
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		/**
+		 * Draw the next squares
+		 */
+		protected void paintComponent( Graphics nextSquaresGraphics )
 		{
-			for( int j = 0; j < BOARD_WIDTH; j++ )
+			super.paintComponent( nextSquaresGraphics );
+			
+			int xAdd = 30;
+			int yAdd = 50;
+			nextSquaresGraphics.drawString( "Next pieces:", xAdd - 10, 30 );
+			
+			synchronized( nextCells )
 			{
-				grid.setColor( new Color( 0, 0, 0 ) );
-				grid.drawRect( ( j * SQUARE_WIDTH ), ( i * SQUARE_WIDTH ), SQUARE_WIDTH, SQUARE_WIDTH );
-				if( luminesBoard.getPiece( i, j ) == Block.EMPTY )
-				{
-					grid.setColor( new Color( 255, 255, 255 ) );
-					grid.fillRect( 1 + ( j * SQUARE_WIDTH ), 1 + ( i * SQUARE_WIDTH ), SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-				}
-				else if( luminesBoard.getPiece( i, j ) == Block.COLOUR_ONE || luminesBoard.getPiece( i, j ) == Block.COLOUR_ONE_INPLACE )
-				{
-					grid.setColor( new Color( 255, 0, 0 ) );
-					grid.fillRect( 1 + ( j * SQUARE_WIDTH ), 1 + ( i * SQUARE_WIDTH ), SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-				}
-				else if( luminesBoard.getPiece( i, j ) == Block.COLOUR_TWO || luminesBoard.getPiece( i, j ) == Block.COLOUR_TWO_INPLACE )
-				{
-					grid.setColor( new Color( 0, 255, 0 ) );
-					grid.fillRect( 1 + ( j * SQUARE_WIDTH ), 1 + ( i * SQUARE_WIDTH ), SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-				}
-				else if( luminesBoard.getPiece( i, j ) == Block.COLOUR_ONE_CLEAR )
-				{
-					grid.setColor( new Color( 128, 0, 0 ) );
-					grid.fillRect( 1 + ( j * SQUARE_WIDTH ), 1 + ( i * SQUARE_WIDTH ), SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-				}
-				else if( luminesBoard.getPiece( i, j ) == Block.COLOUR_TWO_CLEAR )
+				for( int i = 0; i < LuminesGame.NEXT_SQUARES; i++ )
 				{
-					grid.setColor( new Color( 0, 128, 0 ) );
-					grid.fillRect( 1 + ( j * SQUARE_WIDTH ), 1 + ( i * SQUARE_WIDTH ), SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
+					//Start from top left, clockwise
+					nextSquaresGraphics.setColor( LuminesRenderer.getColour( nextCells[i][0] ) );
+					nextSquaresGraphics.fillRect( xAdd, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH );
+					nextSquaresGraphics.setColor( Color.black );
+					nextSquaresGraphics.drawRect( xAdd, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH);
+					
+					nextSquaresGraphics.setColor( LuminesRenderer.getColour( nextCells[i][1] ) );
+					nextSquaresGraphics.fillRect( xAdd + SQUARE_WIDTH, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH );
+					nextSquaresGraphics.setColor( Color.black );
+					nextSquaresGraphics.drawRect( xAdd + SQUARE_WIDTH, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH);
+					
+					nextSquaresGraphics.setColor( LuminesRenderer.getColour( nextCells[i][2] ) );
+					nextSquaresGraphics.fillRect( xAdd, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH );
+					nextSquaresGraphics.setColor( Color.black );
+					nextSquaresGraphics.drawRect( xAdd, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH);
+					
+					nextSquaresGraphics.setColor( LuminesRenderer.getColour( nextCells[i][3] ) );
+					nextSquaresGraphics.fillRect( xAdd + SQUARE_WIDTH, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH );
+					nextSquaresGraphics.setColor( Color.black );
+					nextSquaresGraphics.drawRect( xAdd + SQUARE_WIDTH, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH);
 				}
 			}
 		}
-		//Draw the line that clears the blocks
-		grid.setColor( new Color( 0, 0, 255 ) );
-		grid.drawLine( line.getX(), 0, line.getX(), 200 );
-		
-		gridPanel.drawImage( gridImage, xPlus, yPlus, this );
+	}
+	
+	/**
+	 * Update the high score labels with new scores
+	 */
+	private void updateHighScores()
+	{
+		HighScore scores = highScores;
+		if( scores == null )
+		{
+			highScoreLabels[0].setText( "Not loaded" );
+			highScoreLabels[0].setToolTipText( highScoreError );
+			return;
+		}
 		
-		if( currentSquare.getRow() < 0 )
+		int count = scores.getTop( topNames, topScores );
+		for( int i = 0; i < highScoreLabels.length; i++ )
+		{
+			if( i < count )
+				highScoreLabels[i].setText( i + 1 + ". " + topNames[i] + ": " + topScores[i] );
+			else
+				highScoreLabels[i].setText( i + 1 + ". " );
+		}
+	}
+	
+	/**
+	 * Read the window's icon on a thread of its own and set it once it is decoded
+	 * The window just has the default icon if it can't be read
+	 * @param file Name of the image
+	 */
+	private void loadIcon( final String file )
+	{
+		Thread t = new Thread( new Runnable()
 		{
-			for( int i = 0; i < 2; i++ )
+			public void run()
 			{
-				for( int j = 0; j < 2; j++ )
+				try
 				{
-					if( currentSquare.getBlocks()[i][j] == Block.COLOUR_ONE )
-					{
-						gridPanel.setColor( new Color( 255, 0, 0 ) );
-						gridPanel.fillRect( xPlus + 1 + ( currentSquare.getColumn() * SQUARE_WIDTH ) + (j * SQUARE_WIDTH), 
-								i * SQUARE_WIDTH + ( currentSquare.getRow() + 2 ) * SQUARE_WIDTH + 1,
-								SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-					}
-					else
+					final BufferedImage icon = ImageIO.read( new File( file ) );
+					if( icon == null )
+						return;
+					
+					SwingUtilities.invokeLater( new Runnable()
 					{
-						gridPanel.setColor( new Color( 0, 255, 0 ) );
-						gridPanel.fillRect( xPlus + 1 + ( currentSquare.getColumn() * SQUARE_WIDTH ) + (j * SQUARE_WIDTH), 
-								i * SQUARE_WIDTH + ( currentSquare.getRow() + 2 ) * SQUARE_WIDTH + 1,
-								SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
-					}
+						public void run()
+						{
+							setIconImage( icon );
+						}
+					} );
+				}
+				catch( Exception e )
+				{
+					System.err.println( "Could not load the icon: " + e.getMessage() );
 				}
 			}
-		}
-		
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		}, "Icon loader" );
+		t.setDaemon( true );
+		t.start();
+	}
+	
+	/**
+	 * Read the high scores on a thread of its own
+	 * The game can be played while they load; they are shown once they are ready
+	 * If they can't be read the game carries on without them
+	 * @param file Name of the high score file
+	 * @param textFile Name of the old text file to read the scores from if there isn't one yet
+	 */
+	private void loadHighScores( final String file, final String textFile )
+	{
+		Thread t = new Thread( new Runnable()
 		{
-			for( int j = 0; j < BOARD_WIDTH; j++ )
+			public void run()
 			{
-				grid.setColor( new Color( 0, 0, 0 ) );
-				grid.drawRect( ( j * SQUARE_WIDTH ), ( i * SQUARE_WIDTH ), SQUARE_WIDTH, SQUARE_WIDTH );
+				try
+				{
+					highScores = new HighScore( file, textFile );
+				}
+				catch( Exception e )
+				{
+					highScoreError = e.getMessage();
+					System.err.println( "Could not load the high scores: " + highScoreError );
+				}
+				highScoresLoaded.countDown();
 			}
-		}
+		}, "High score loader" );
+		t.setDaemon( true );
+		t.start();
 		
-		luminesGrid.getGraphics().drawImage( gridPanelImage, 0, 0, this );
-		
-		//Draw the next squares
-		Graphics nextSquaresGraphics = nextPieces.getGraphics();
-		int xAdd = 30;
-		int yAdd = 50;
-		nextSquaresGraphics.drawString( "Next pieces:", xAdd - 10, 30 );
-		
-		for( int i = 0; i < nextSquares.length; i++ )
+		Runtime.getRuntime().addShutdownHook( new Thread()
 		{
-			//Start from top left, clockwise
-			if( nextSquares[i].getBlocks()[0][0] == Block.COLOUR_ONE )
-				nextSquaresGraphics.setColor( Color.red );
-			else {
-				nextSquaresGraphics.setColor( Color.green );
-			}
-			nextSquaresGraphics.fillRect( xAdd, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH );
-			nextSquaresGraphics.setColor( Color.black );
-			nextSquaresGraphics.drawRect( xAdd, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH);
-			
-			if( nextSquares[i].getBlocks()[0][1] == Block.COLOUR_ONE )
-				nextSquaresGraphics.setColor( Color.red );
-			else {
-				nextSquaresGraphics.setColor( Color.green );
+			public void run()
+			{
+				//Save any high scores that are still waiting to be written
+				HighScore scores = waitForHighScores();
+				if( scores != null )
+					scores.close();
 			}
-			
-			nextSquaresGraphics.fillRect( xAdd + SQUARE_WIDTH, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH );
-			nextSquaresGraphics.setColor( Color.black );
-			nextSquaresGraphics.drawRect( xAdd + SQUARE_WIDTH, yAdd + i * 50, SQUARE_WIDTH, SQUARE_WIDTH);
-			
-			if( nextSquares[i].getBlocks()[1][0] == Block.COLOUR_ONE )
-				nextSquaresGraphics.setColor( Color.red );
-			else {
-				nextSquaresGraphics.setColor( Color.green );
+		} );
+	}
+	
+	/**
+	 * Wait until the high scores are loaded
+	 * @return The high scores, null if they couldn't be loaded
+	 */
+	private HighScore waitForHighScores()
+	{
+		while( true )
+		{
+			try
+			{
+				highScoresLoaded.await();
+				return highScores;
 			}
-			nextSquaresGraphics.fillRect( xAdd, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH );
-			nextSquaresGraphics.setColor( Color.black );
-			nextSquaresGraphics.drawRect( xAdd, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH);
-			
-			if( nextSquares[i].getBlocks()[1][1] == Block.COLOUR_ONE )
-				nextSquaresGraphics.setColor( Color.red );
-			else {
-				nextSquaresGraphics.setColor( Color.green );
+			catch( InterruptedException e )
+			{
 			}
-			nextSquaresGraphics.fillRect( xAdd + SQUARE_WIDTH, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH );
-			nextSquaresGraphics.setColor( Color.black );
-			nextSquaresGraphics.drawRect( xAdd + SQUARE_WIDTH, yAdd + i * 50 + SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH);
 		}
 	}
 	
 	/**
-	 * Update the high score labels with new scores
+	 * Wait for the first frame to be painted
+	 * @param timeout Most milliseconds to wait
+	 * @return Nanoseconds from when the constructor started to when the first frame was painted, -1 if it wasn't painted in time
 	 */
-	private void updateHighScores()
+	public long waitForFirstFrame( long timeout ) throws InterruptedException
 	{
-		for( int i = 0; i < highScoreLabels.length; i++ )
-		{
-			highScoreLabels[i].setText( i + 1 + ". " + highScores.getNames()[i] + ": " + highScores.getScores()[i] );
-		}
+		firstFrame.await( timeout, TimeUnit.MILLISECONDS );
+		return firstFrameTime;
+	}
+	
+	/**
+	 * @return Milliseconds from when the program started to when the first frame was painted, -1 if it hasn't been yet
+	 */
+	public long getStartupTime()
+	{
+		if( firstFrameTime < 0 )
+			return -1;
+		
+		long now = System.nanoTime();
+		long sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		return sinceStart - ( now - createdTime - firstFrameTime ) / 1000000;
 	}
 	
 	/**
 	 * Print the contents of the board onto the console for analysis
+	 * Each block is its colour, then F if it is fixed in place and C if it is going to be cleared, and an empty cell is a dot
 	 */
 	public void printBoard()
 	{
-		for( int i = 0; i < BOARD_HEIGHT; i++ )
+		Board luminesBoard = game.getBoard();
+		
+		for( int i = 0; i < luminesBoard.getHeight(); i++ )
 		{
-			for( int j = 0; j < BOARD_WIDTH; j++ )
+			for( int j = 0; j < luminesBoard.getWidth(); j++ )
 			{
-				System.out.print( luminesBoard.getPiece( i, j ) + " " );
+				int c = luminesBoard.getCell( i, j );
+				String block = c == Cell.EMPTY ? "." : String.valueOf( Cell.getColour( c ) );
+				if( Cell.isFixed( c ) )
+					block += "F";
+				if( Cell.isClear( c ) )
+					block += "C";
+				System.out.print( String.format( "%-3s ", block ) );
 			}
 			System.out.println();
 		}
@@ -0,0 +1,609 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The rules of Lumines, without any of the interface
+ * Each call to tick() moves the game forward by one frame
+ */
+public class LuminesGame
+{
+	//Constants
+	public static final int SQUARE_WIDTH = 20; //Width of one block (in pixels), the line moves in pixels
+	public static final int BOARD_WIDTH = 16; //Default width of the board in blocks
+	public static final int BOARD_HEIGHT = 10; //Default height of the board in blocks
+	public static final int TICK_RATE = 12; //Default number of ticks per second
+	public static final int MOVE_RATE = 12; //How many times a second the square can be moved by holding a key
+	public static final int NEXT_SQUARES = 3; //Number of squares shown before they come
+	public static final int LEGACY_ROTATE_TIME = 100; //Milliseconds between rotations when the keys are read the old way
+	
+	//Instance variables
+	private GameClock clock; //Where the time comes from
+	private int tickRate; //Ticks in one second
+	private int moveTimer = 0; //Counts up to the tick rate to decide when the square can be moved, only used the old way
+	private AutoRepeat autoRepeat; //Turns the keys held down into moves
+	private boolean legacyInput = false; //Whether or not keys are read the old way, for recordings made before taps were kept
+	private PieceSource pieces; //Where the colours of new squares come from
+	private Square currentSquare; //Square that the user is controlling
+	private Square[] squares = new Square[NEXT_SQUARES + 1]; //The square being controlled then the next squares, going round from first
+	private int first = 0; //Where the square being controlled is in squares
+	private long squareCount = 0; //Squares that have come since the game was made
+	private Board luminesBoard; //The board of blocks
+	private int boardWidth; //The width of the board in blocks
+	private int boardHeight; //The height of the board in blocks
+	private Line line; //The line to clear the blocks
+	private long startTime; //What time the current game started
+	private int score = 0; //The score of the player
+	private boolean gameOver = false; //Whether or not the player has lost
+	private PerfRecorder recorder; //Times how long clearing takes, null if nothing is timed
+	
+	//The square shown on the board, erased at the start of the next tick
+	private int shownRow = -1; //Row of the square shown on the board, -1 if it isn't shown
+	private int shownColumn; //Column of the square shown on the board
+	
+	/**
+	 * Constructor for a game that uses the real time
+	 */
+	public LuminesGame()
+	{
+		this( new SystemClock() );
+	}
+	
+	/**
+	 * Constructor for a game that ticks at the default rate
+	 * @param c The clock to get the time from
+	 */
+	public LuminesGame( GameClock c )
+	{
+		this( c, TICK_RATE );
+	}
+	
+	/**
+	 * Constructor
+	 * @param c The clock to get the time from
+	 * @param rate How many times a second the game will be ticked
+	 */
+	public LuminesGame( GameClock c, int rate )
+	{
+		this( c, rate, System.nanoTime() );
+	}
+	
+	/**
+	 * Constructor
+	 * The same seed and the same keys always give the same game
+	 * @param c The clock to get the time from
+	 * @param rate How many times a second the game will be ticked
+	 * @param seed Seed for the colours of the squares
+	 */
+	public LuminesGame( GameClock c, int rate, long seed )
+	{
+		this( c, rate, seed, BOARD_HEIGHT, BOARD_WIDTH );
+	}
+	
+	/**
+	 * Constructor
+	 * The same seed, size and keys always give the same game
+	 * @param c The clock to get the time from
+	 * @param rate How many times a second the game will be ticked
+	 * @param seed Seed for the colours of the squares
+	 * @param height Height of the board in blocks, at least 2
+	 * @param width Width of the board in blocks, at least 2
+	 */
+	public LuminesGame( GameClock c, int rate, long seed, int height, int width )
+	{
+		this( c, rate, seed, height, width, 2 );
+	}
+	
+	/**
+	 * Constructor
+	 * The same seed, size, number of colours and keys always give the same game
+	 * @param c The clock to get the time from
+	 * @param rate How many times a second the game will be ticked
+	 * @param seed Seed for the colours of the squares
+	 * @param height Height of the board in blocks, at least 2
+	 * @param width Width of the board in blocks, at least 2
+	 * @param colours Number of colours the blocks can be, from 2 to Cell.MAX_COLOURS
+	 */
+	public LuminesGame( GameClock c, int rate, long seed, int height, int width, int colours )
+	{
+		if( height < 2 || width < 2 )
+			throw new IllegalArgumentException( "The board has to be at least 2x2, not " + height + "x" + width );
+		
+		clock = c;
+		tickRate = rate;
+		autoRepeat = AutoRepeat.forTickRate( rate );
+		boardHeight = height;
+		boardWidth = width;
+		luminesBoard = new BitBoard( height, width, colours );
+		line = new Line( tickRate );
+		pieces = new PieceSource( seed, colours );
+		
+		for( int i = 0; i < squares.length; i++ )
+		{
+			squares[i] = new Square( pieces, boardWidth );
+		}
+		currentSquare = squares[first];
+		startTime = clock.getTime();
+	}
+	
+	/**
+	 * Move the game forward one frame
+	 * @param input The keys that are held down
+	 */
+	public void tick( InputState input )
+	{
+		//Nothing happens once the player has lost
+		if( gameOver )
+			return;
+		
+		clock.tick();
+		
+		//Erase the previous location of the square
+		if( shownRow >= 0 )
+		{
+			for( int i = 0; i < 2; i++ )
+				for( int j = 0; j < 2; j++ )
+					eraseSquare( shownRow + i, shownColumn + j );
+			shownRow = -1;
+		}
+		
+		int moves = legacyInput ? getLegacyMoves( input ) : autoRepeat.step( input.getBits(), input.getTaps() );
+		
+		//Rotate the square clockwise if up is pressed
+		if( ( moves & InputState.ROTATE ) != 0 )
+			currentSquare.rotate( clock.getTime() );
+		
+		/* Move the square down if they press the down arrow or it is time for the square to
+		move down on its own, which is once a second */
+		currentSquare.moveDownAdd();
+		if( currentSquare.getMovingDown() % tickRate == 0 )
+		{
+			currentSquare.moveDown();
+		}
+		else if( ( moves & InputState.DOWN ) != 0 )
+			currentSquare.moveDown();
+		
+		//Move the square left or right if possible when the arrows keys are pressed
+		if( ( moves & InputState.LEFT ) != 0 && isClear( currentSquare.getRow(), currentSquare.getColumn() - 1 ))
+			currentSquare.moveLeft();
+		
+		if( ( moves & InputState.RIGHT ) != 0 && isClear( currentSquare.getRow(), currentSquare.getColumn() + 1 ) )
+			currentSquare.moveRight();
+		
+		//Prevent the square from going outside the widths of the board
+		if( currentSquare.getColumn() < 0 )
+			currentSquare.setColumn( 0 );
+		if( currentSquare.getColumn() > boardWidth - 2 )
+			currentSquare.setColumn( boardWidth - 2 );
+		
+		//If the square has fallen onto the board then
+		if( currentSquare.getRow() >= 0 )
+		{
+			//If the square is going to be below the bottom of the grid then
+			if( currentSquare.getRow() > boardHeight - 2 )
+			{
+				//Move it back up
+				currentSquare.setRow( currentSquare.getRow() - 1 );
+				
+				//Solidify the position of the square
+				for( int i = 0; i < 2; i++ )
+				{
+					for( int j = 0; j < 2; j++ )
+					{
+						luminesBoard.setCell( currentSquare.getRow() + i, currentSquare.getColumn() + j, Cell.getNext( currentSquare.getCell( i, j ) ) );
+					}
+				}
+				
+				//Create a new square
+				newSquare();
+				//Check to see if the newly placed square made a 2x2 square of same colour blocks
+				setClear();
+			}
+			//If the square is going to get cut in half
+			else if( luminesBoard.isFixed( currentSquare.getRow() + 1, currentSquare.getColumn() )
+					|| luminesBoard.isFixed( currentSquare.getRow() + 1, currentSquare.getColumn() + 1 ) )
+			{
+				//Move it back up a row
+				currentSquare.setRow( currentSquare.getRow() - 1 );
+				
+				//Check both sides for how low to go
+				for( int j = 0; j < 2; j++ )
+				{
+					if( !luminesBoard.isFixed( currentSquare.getRow() + 2, currentSquare.getColumn() + j ) )
+					{
+						//The half falls onto the next fixed block down, or the bottom of the board
+						int i = luminesBoard.getTop( currentSquare.getColumn() + j, currentSquare.getRow() + 3 );
+						luminesBoard.setCell( i - 1, currentSquare.getColumn() + j, Cell.getNext( currentSquare.getCell( 1, j ) ) );
+						luminesBoard.setCell( i - 2, currentSquare.getColumn() + j, Cell.getNext( currentSquare.getCell( 0, j ) ) );
+					}
+					else
+					{
+						if( currentSquare.getRow() >= 0 )
+							luminesBoard.setCell( currentSquare.getRow(), currentSquare.getColumn() + j, Cell.getNext( currentSquare.getCell( 0, j ) ) );
+						
+						if( currentSquare.getRow() + 1 >= 0 )
+							luminesBoard.setCell( currentSquare.getRow()+1, currentSquare.getColumn() + j, Cell.getNext( currentSquare.getCell( 1, j ) ) );
+					}
+				}
+				
+				newSquare();
+				setClear();
+			}
+			
+			//Show the square on the screen
+			if( currentSquare.getRow() >= 0 )
+			{
+				for( int i = 0; i < 2; i++ )
+					for( int j = 0; j < 2; j++ )
+						luminesBoard.setCell( currentSquare.getRow()+i, currentSquare.getColumn()+j, currentSquare.getCell( i, j ) );
+				shownRow = currentSquare.getRow();
+				shownColumn = currentSquare.getColumn();
+			}
+		}
+		//If the square is still above the board
+		else
+		{
+			for( int i = 0; i < 2; i++ )
+				for( int j = 0; j < 2; j++ )
+					if( currentSquare.getRow()+i >= 0 && currentSquare.getColumn() + j >= 0
+							&& luminesBoard.isFixed( currentSquare.getRow() + i, currentSquare.getColumn() + j ) )
+					{
+						//The player lost, wait for a new game to be started
+						gameOver = true;
+						return;
+					}
+		}
+		
+		//Move the line over
+		int oldColumn = line.getX() / SQUARE_WIDTH;
+		line.move();
+		
+		//Clear any columns of blocks the line just passed
+		for( int j = oldColumn; j < line.getX() / SQUARE_WIDTH && j < boardWidth; j++ )
+		{
+			doClear( j );
+		}
+		
+		//If the line has reached the end of the board then
+		if( line.getX() > ( SQUARE_WIDTH * boardWidth ) )
+			//Move it back to the start
+			line.resetLine();
+	}
+	
+	/**
+	 * Work out the moves for a tick the way keys were read before taps were kept
+	 * Held keys move the square at MOVE_RATE no matter how fast the game ticks,
+	 * and the square rotates at most once every LEGACY_ROTATE_TIME milliseconds of game time
+	 * @param input The keys that are held down
+	 * @return A bit for each key that moves the square
+	 */
+	private int getLegacyMoves( InputState input )
+	{
+		int moves = 0;
+		if( input.isRotate() && clock.getTime() - currentSquare.getLastRotate() > LEGACY_ROTATE_TIME )
+			moves |= InputState.ROTATE;
+		
+		moveTimer += MOVE_RATE;
+		if( moveTimer >= tickRate )
+		{
+			moveTimer -= tickRate;
+			moves |= input.getBits() & ( InputState.DOWN | InputState.LEFT | InputState.RIGHT );
+		}
+		
+		return moves;
+	}
+	
+	/**
+	 * Erase a block of the square that was shown on the board
+	 * Fixed blocks are left alone
+	 * @param row Row of the block
+	 * @param column Column of the block
+	 */
+	private void eraseSquare( int row, int column )
+	{
+		if( Cell.isFalling( luminesBoard.getCell( row, column ) ) )
+			luminesBoard.setCell( row, column, Cell.EMPTY );
+	}
+	
+	/**
+	 * Labelling the blocks to be cleared
+	 */
+	public void setClear()
+	{
+		long start = recorder != null ? System.nanoTime() : 0;
+		
+		//Only the blocks that changed since the last time need to be looked at
+		luminesBoard.markClears();
+		
+		if( recorder != null )
+			recorder.add( PerfRecorder.SET_CLEAR, System.nanoTime() - start );
+	}
+	
+	/**
+	 * Start a new game of lumines
+	 */
+	public void newGame()
+	{
+		//Empty the board
+		luminesBoard.clear();
+		shownRow = -1;
+		
+		//Get new squares, in the same order as they were first made
+		for( int i = 0; i < squares.length; i++ )
+		{
+			squares[( first + i ) % squares.length].reset( pieces, boardWidth );
+		}
+		squareCount++;
+		
+		//Start the line again
+		line.resetLine();
+		
+		autoRepeat.reset();
+		score = 0;
+		gameOver = false;
+		startTime = clock.getTime();
+	}
+	
+	/**
+	 * @return The number of bytes saveState() writes
+	 */
+	public int getStateSize()
+	{
+		return 42 + AutoRepeat.STATE_SIZE + 4 * Square.STATE_SIZE + luminesBoard.getStateSize();
+	}
+	
+	/**
+	 * Write everything needed to carry on with the game to a buffer
+	 * The tick rate, seed and size of the board aren't written, the game loading the state has to already have the same ones
+	 * @param buffer Where to write the state, with at least getStateSize() bytes left
+	 */
+	public void saveState( ByteBuffer buffer )
+	{
+		//Times are kept as how long ago they were, so the state can be loaded into a game with a different clock
+		long now = clock.getTime();
+		buffer.putInt( score );
+		buffer.put( (byte)( gameOver ? 1 : 0 ) );
+		buffer.putLong( now - startTime );
+		buffer.putInt( moveTimer );
+		buffer.put( (byte)( legacyInput ? 1 : 0 ) );
+		buffer.putInt( shownRow );
+		buffer.putInt( shownColumn );
+		buffer.putLong( pieces.getState() );
+		buffer.putLong( line.getState() );
+		autoRepeat.saveState( buffer );
+		
+		for( int i = 0; i < squares.length; i++ )
+			squares[( first + i ) % squares.length].saveState( buffer, now );
+		
+		luminesBoard.saveState( buffer );
+	}
+	
+	/**
+	 * Carry on from a state written by saveState()
+	 * @param buffer Where to read the state from
+	 */
+	public void loadState( ByteBuffer buffer )
+	{
+		long now = clock.getTime();
+		score = buffer.getInt();
+		gameOver = buffer.get() != 0;
+		startTime = now - buffer.getLong();
+		moveTimer = buffer.getInt();
+		legacyInput = buffer.get() != 0;
+		shownRow = buffer.getInt();
+		shownColumn = buffer.getInt();
+		pieces.setState( buffer.getLong() );
+		line.setState( buffer.getLong() );
+		autoRepeat.loadState( buffer );
+		
+		for( int i = 0; i < squares.length; i++ )
+			squares[( first + i ) % squares.length].loadState( buffer, now );
+		squareCount++;
+		
+		luminesBoard.loadState( buffer );
+	}
+	
+	/**
+	 * Clear the column of any blocks that need to be cleared
+	 * @param column The column to look at
+	 */
+	public void doClear( int column )
+	{
+		//Most columns the line passes have nothing to clear
+		if( !luminesBoard.hasClear( column ) )
+			return;
+		
+		long start = recorder != null ? System.nanoTime() : 0;
+		
+		/*
+		 * The actual clearing of the blocks, rather than just labeling them to be cleared
+		 */
+		int clearCount = luminesBoard.compactColumn( column );
+		score += clearCount;
+		
+		//Only the blocks that fell need to be checked for new squares
+		if( clearCount != 0 )
+		{
+			if( luminesBoard.isBoardEmpty() )
+				score += 15;
+			
+			setClear();
+		}
+		
+		if( recorder != null )
+			recorder.add( PerfRecorder.DO_CLEAR, System.nanoTime() - start );
+	}
+	
+	/**
+	 * Check to see if there is a block at the position
+	 * @param row Row to look at
+	 * @param column Column to look at
+	 * @return Whether or not there is a square at row and column
+	 */
+	public boolean isClear( int row, int column )
+	{
+		for( int i = 0; i < 2; i++ )
+		{
+			for( int j = 0; j < 2; j++ )
+			{
+				if( column+j < boardWidth && column+j >= 0 && row+i < boardHeight && row+i >= 0
+						&& luminesBoard.isFixed( row+i, column+j ) )
+					return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gives you a new square to use
+	 * The square that landed is used again as the last of the next squares
+	 */
+	public void newSquare()
+	{
+		currentSquare.reset( pieces, boardWidth );
+		first = ( first + 1 ) % squares.length;
+		currentSquare = squares[first];
+		squareCount++;
+	}
+	
+	/**
+	 * @return The time in milliseconds since the current game started
+	 */
+	public long getTimePlayed()
+	{
+		return clock.getTime() - startTime;
+	}
+	
+	/**
+	 * Time how long clearing blocks takes
+	 * @param r Where to put the times, null to stop timing
+	 */
+	public void setRecorder( PerfRecorder r )
+	{
+		recorder = r;
+	}
+	
+	/**
+	 * Change how held keys repeat
+	 * @param delay Ticks a key has to be held before it repeats
+	 * @param repeat Ticks between each repeat
+	 */
+	public void setAutoRepeat( int delay, int repeat )
+	{
+		autoRepeat = new AutoRepeat( delay, repeat );
+	}
+	
+	/**
+	 * @return How held keys repeat
+	 */
+	public AutoRepeat getAutoRepeat()
+	{
+		return autoRepeat;
+	}
+	
+	/**
+	 * Read the keys the way they were read before taps were kept, so older recordings play back the same
+	 * @param legacy Whether or not to read the keys the old way
+	 */
+	public void setLegacyInput( boolean legacy )
+	{
+		legacyInput = legacy;
+	}
+	
+	/**
+	 * @return Whether or not the keys are read the old way
+	 */
+	public boolean isLegacyInput()
+	{
+		return legacyInput;
+	}
+	
+	/**
+	 * @return Where the time comes from
+	 */
+	public GameClock getClock()
+	{
+		return clock;
+	}
+	
+	/**
+	 * @return How many times a second the game is ticked
+	 */
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+	
+	/**
+	 * @return The number of colours the blocks can be
+	 */
+	public int getColours()
+	{
+		return luminesBoard.getColours();
+	}
+	
+	/**
+	 * @return Where the colours of new squares come from
+	 */
+	public PieceSource getPieceSource()
+	{
+		return pieces;
+	}
+	
+	/**
+	 * @return The board of blocks
+	 */
+	public Board getBoard()
+	{
+		return luminesBoard;
+	}
+	
+	/**
+	 * @return The square that the user is controlling
+	 */
+	public Square getCurrentSquare()
+	{
+		return currentSquare;
+	}
+	
+	/**
+	 * @param i Which of the next squares, 0 for the one that comes next
+	 * @return One of the next squares that are coming
+	 */
+	public Square getNextSquare( int i )
+	{
+		return squares[( first + 1 + i ) % squares.length];
+	}
+	
+	/**
+	 * The same square objects are used again once they land, so this is how to tell when a new square comes
+	 * @return The number of squares that have come since the game was made, counting each new game as one
+	 */
+	public long getSquareCount()
+	{
+		return squareCount;
+	}
+	
+	/**
+	 * @return The line that clears the blocks
+	 */
+	public Line getLine()
+	{
+		return line;
+	}
+	
+	/**
+	 * @return The score of the player
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * @return Whether or not the player has lost
+	 */
+	public boolean isGameOver()
+	{
+		return gameOver;
+	}
+}
\ No newline at end of file
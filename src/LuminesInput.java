@@ -5,10 +5,14 @@ import java.util.Arrays;
 
 /**
  * Keyboard input for Lumines
+ * The AWT thread puts each press and release in a queue with the time it happened
+ * The game thread takes them out on each tick, so the keys are only ever looked at by the game thread
  */
 public class LuminesInput implements KeyListener
 {
-	boolean[] keys = new boolean[256]; //Holds the current state of the all of the keyboard keys
+	private KeyEventQueue events = new KeyEventQueue(); //Presses and releases waiting for the game thread
+	private boolean[] keys = new boolean[256]; //Holds the current state of the all of the keyboard keys
+	private int taps = 0; //A bit for each game key pressed since the state was last filled in
 	
 	/**
 	 * Setup the KeyListener for the GUI component
@@ -25,7 +29,51 @@ public class LuminesInput implements KeyListener
 	 */
 	public void clearKeys()
 	{
+		events.clear();
 		Arrays.fill( keys, false );
+		taps = 0;
+	}
+	
+	/**
+	 * Take the presses and releases that happened up to a time out of the queue
+	 * Events after the time are left for the next tick
+	 * @param until Time of the end of the tick, from System.nanoTime()
+	 */
+	public void poll( long until )
+	{
+		int event;
+		while( ( event = events.take( until ) ) >= 0 )
+		{
+			int key = event >>> 1;
+			boolean pressed = ( event & 1 ) != 0;
+			
+			//Holding a key down sends more presses, which aren't new taps
+			if( pressed && !keys[key] )
+				taps |= getBit( key );
+			keys[key] = pressed;
+		}
+	}
+	
+	/**
+	 * Find the bit that InputState uses for a key
+	 * @param key The keycode of the key
+	 * @return The bit, or 0 if the game doesn't use the key
+	 */
+	private static int getBit( int key )
+	{
+		switch( key )
+		{
+			case KeyEvent.VK_UP:
+				return InputState.ROTATE;
+			case KeyEvent.VK_DOWN:
+				return InputState.DOWN;
+			case KeyEvent.VK_LEFT:
+				return InputState.LEFT;
+			case KeyEvent.VK_RIGHT:
+				return InputState.RIGHT;
+			default:
+				return 0;
+		}
 	}
 	
 	/**
@@ -42,21 +90,36 @@ public class LuminesInput implements KeyListener
 	}
 	
 	/**
-	 * Sets the state of the key in e to pressed
+	 * Fill in the keys that the game uses, and the keys tapped since the last time
+	 * @param state Where to put the state of the keys
+	 */
+	public void getState( InputState state )
+	{
+		state.setRotate( isKeyPressed( KeyEvent.VK_UP ) );
+		state.setDown( isKeyPressed( KeyEvent.VK_DOWN ) );
+		state.setLeft( isKeyPressed( KeyEvent.VK_LEFT ) );
+		state.setRight( isKeyPressed( KeyEvent.VK_RIGHT ) );
+		state.setTaps( taps );
+		taps = 0;
+	}
+	
+	/**
+	 * Queues the key in e being pressed
+	 * The time comes from System.nanoTime() instead of e.getWhen(), which is only in milliseconds of the wall clock
 	 */
 	public void keyPressed( KeyEvent e )
 	{
 		if( e.getKeyCode() >= 0 && e.getKeyCode() < keys.length )
-			keys[e.getKeyCode()] = true;
+			events.add( e.getKeyCode(), true, System.nanoTime() );
 	}
 	
 	/**
-	 * Sets the state of the key in e to released
+	 * Queues the key in e being released
 	 */
 	public void keyReleased( KeyEvent e )
 	{
 		if( e.getKeyCode() >= 0 && e.getKeyCode() < keys.length )
-			keys[e.getKeyCode()] = false;
+			events.add( e.getKeyCode(), false, System.nanoTime() );
 	}
 	
 	/**
@@ -0,0 +1,261 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws the grid of blocks onto an image that is kept from frame to frame
+ * Only the blocks that changed since the last frame, the line and the square above the board get drawn again
+ * Doesn't use the screen, so it also works without a display
+ */
+public class LuminesRenderer
+{
+	//Constants
+	private static final int SQUARE_WIDTH = LuminesGame.SQUARE_WIDTH; //Width of one block (in pixels)
+	private static final int X_PLUS = SQUARE_WIDTH * 2; //Area left of the grid
+	private static final int Y_PLUS = SQUARE_WIDTH * 2; //Area above the grid to make room for new pieces
+	private static final Color BACKGROUND = Color.black; //Colour around the grid
+	private static final Color OUTLINE = new Color( 0, 0, 0 ); //Colour of the lines between blocks
+	private static final Color LINE = new Color( 0, 0, 255 ); //Colour of the line that clears the blocks
+	private static final Color EMPTY = new Color( 255, 255, 255 ); //Colour of an empty block
+	private static final Color[] COLOURS = { EMPTY, new Color( 255, 0, 0 ), new Color( 0, 255, 0 ), new Color( 255, 255, 0 ),
+			new Color( 255, 0, 255 ), new Color( 0, 255, 255 ), new Color( 255, 128, 0 ), new Color( 160, 96, 255 ),
+			new Color( 160, 160, 160 ) }; //Colour of a block of each colour, by its number
+	private static final Color[] CLEAR_COLOURS = { EMPTY, new Color( 128, 0, 0 ), new Color( 0, 128, 0 ), new Color( 128, 128, 0 ),
+			new Color( 128, 0, 128 ), new Color( 0, 128, 128 ), new Color( 128, 64, 0 ), new Color( 80, 48, 128 ),
+			new Color( 80, 80, 80 ) }; //Colour of a block of each colour that will be cleared
+	
+	//Instance variables
+	private BufferedImage image; //The image that is drawn on
+	private Graphics graphics; //Graphics for the image
+	private Color[][] drawn; //Colour of each block on the image, null if it has to be drawn again
+	private int lineX = -1; //Where the line was drawn, -1 if it wasn't
+	private int squareRow; //Row of the square drawn above the board
+	private int squareColumn; //Column of the square drawn above the board
+	private boolean squareShown = false; //Whether or not the square is drawn above the board
+	
+	//Area of the image that changed in the last frame
+	private int dirtyLeft;
+	private int dirtyTop;
+	private int dirtyRight;
+	private int dirtyBottom;
+	private Rectangle dirty = new Rectangle(); //The area that changed, given to whoever draws the image
+	
+	/**
+	 * Constructor
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 */
+	public LuminesRenderer( int width, int height )
+	{
+		image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+		graphics = image.getGraphics();
+		
+		//Start with the background everywhere
+		graphics.setColor( BACKGROUND );
+		graphics.fillRect( 0, 0, width, height );
+		addDirty( 0, 0, width, height );
+	}
+	
+	/**
+	 * Draw everything that changed since the last frame
+	 * @param game The game to draw
+	 * @return The area of the image that changed
+	 */
+	public Rectangle render( LuminesGame game )
+	{
+		return render( game, 0 );
+	}
+	
+	/**
+	 * Draw everything that changed since the last frame
+	 * @param game The game to draw
+	 * @param alpha How far it is from the last tick to the next one, from 0 to 1, used to move the line smoothly
+	 * @return The area of the image that changed
+	 */
+	public Rectangle render( LuminesGame game, double alpha )
+	{
+		Board luminesBoard = game.getBoard();
+		Square currentSquare = game.getCurrentSquare();
+		Line line = game.getLine();
+		int boardHeight = luminesBoard.getHeight();
+		int boardWidth = luminesBoard.getWidth();
+		
+		//Start over when the board is a new size
+		if( drawn == null || drawn.length != boardHeight || drawn[0].length != boardWidth )
+		{
+			drawn = new Color[boardHeight][boardWidth];
+			lineX = -1;
+		}
+		
+		//The blocks under the old line have to be drawn again to erase it
+		if( lineX >= 0 )
+		{
+			redrawColumn( ( lineX - 1 ) / SQUARE_WIDTH );
+			redrawColumn( lineX / SQUARE_WIDTH );
+		}
+		
+		//Erase the square above the board
+		if( squareShown )
+		{
+			graphics.setColor( BACKGROUND );
+			for( int i = 0; i < 2; i++ )
+			{
+				for( int j = 0; j < 2; j++ )
+				{
+					//The bottom of the square can be on the top row of the board
+					if( squareRow + i >= 0 )
+						drawn[squareRow + i][squareColumn + j] = null;
+					else
+						graphics.fillRect( X_PLUS + 1 + ( squareColumn + j ) * SQUARE_WIDTH, ( squareRow + i + 2 ) * SQUARE_WIDTH + 1,
+								SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
+				}
+			}
+			addDirty( X_PLUS + squareColumn * SQUARE_WIDTH, squareRow * SQUARE_WIDTH + Y_PLUS, SQUARE_WIDTH * 2, SQUARE_WIDTH * 2 );
+			squareShown = false;
+		}
+		
+		//Draw the blocks that changed
+		for( int i = 0; i < boardHeight; i++ )
+		{
+			for( int j = 0; j < boardWidth; j++ )
+			{
+				Color c = getColour( luminesBoard.getCell( i, j ) );
+				if( drawn[i][j] != c )
+				{
+					drawn[i][j] = c;
+					graphics.setColor( OUTLINE );
+					graphics.drawRect( X_PLUS + j * SQUARE_WIDTH, Y_PLUS + i * SQUARE_WIDTH, SQUARE_WIDTH, SQUARE_WIDTH );
+					graphics.setColor( c );
+					graphics.fillRect( X_PLUS + 1 + j * SQUARE_WIDTH, Y_PLUS + 1 + i * SQUARE_WIDTH, SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
+					addDirty( X_PLUS + j * SQUARE_WIDTH, Y_PLUS + i * SQUARE_WIDTH, SQUARE_WIDTH + 1, SQUARE_WIDTH + 1 );
+				}
+			}
+		}
+		
+		//Draw the line that clears the blocks
+		lineX = Math.min( line.getX( alpha ), SQUARE_WIDTH * boardWidth );
+		graphics.setColor( LINE );
+		graphics.drawLine( X_PLUS + lineX, Y_PLUS, X_PLUS + lineX, Y_PLUS + SQUARE_WIDTH * boardHeight );
+		addDirty( X_PLUS + lineX, Y_PLUS, 1, SQUARE_WIDTH * boardHeight + 1 );
+		
+		//Draw the square if it is still above the board
+		if( currentSquare.getRow() < 0 )
+		{
+			squareShown = true;
+			squareRow = currentSquare.getRow();
+			squareColumn = currentSquare.getColumn();
+			
+			for( int i = 0; i < 2; i++ )
+			{
+				for( int j = 0; j < 2; j++ )
+				{
+					graphics.setColor( getColour( currentSquare.getCell( i, j ) ) );
+					
+					graphics.fillRect( X_PLUS + 1 + ( squareColumn + j ) * SQUARE_WIDTH, ( squareRow + i + 2 ) * SQUARE_WIDTH + 1,
+							SQUARE_WIDTH - 1, SQUARE_WIDTH - 1 );
+				}
+			}
+			addDirty( X_PLUS + squareColumn * SQUARE_WIDTH, squareRow * SQUARE_WIDTH + Y_PLUS, SQUARE_WIDTH * 2, SQUARE_WIDTH * 2 );
+		}
+		
+		//Hand back the area that changed and start a new one
+		if( dirtyRight > dirtyLeft )
+			dirty.setBounds( dirtyLeft, dirtyTop, dirtyRight - dirtyLeft, dirtyBottom - dirtyTop );
+		else
+			dirty.setBounds( 0, 0, 0, 0 );
+		dirtyLeft = Integer.MAX_VALUE;
+		dirtyTop = Integer.MAX_VALUE;
+		dirtyRight = Integer.MIN_VALUE;
+		dirtyBottom = Integer.MIN_VALUE;
+		
+		return dirty;
+	}
+	
+	/**
+	 * Draw every block again on the next frame
+	 */
+	public void redrawAll()
+	{
+		if( drawn == null )
+			return;
+		
+		for( int i = 0; i < drawn.length; i++ )
+			redrawRow( i );
+	}
+	
+	/**
+	 * Make a column of blocks get drawn again on the next frame
+	 * @param column The column to draw again
+	 */
+	private void redrawColumn( int column )
+	{
+		if( column >= 0 && column < drawn[0].length )
+			for( int i = 0; i < drawn.length; i++ )
+				drawn[i][column] = null;
+	}
+	
+	/**
+	 * Make a row of blocks get drawn again on the next frame
+	 * @param row The row to draw again
+	 */
+	private void redrawRow( int row )
+	{
+		for( int j = 0; j < drawn[row].length; j++ )
+			drawn[row][j] = null;
+	}
+	
+	/**
+	 * Add an area to the part of the image that changed
+	 * @param x Left side of the area
+	 * @param y Top of the area
+	 * @param w Width of the area
+	 * @param h Height of the area
+	 */
+	private void addDirty( int x, int y, int w, int h )
+	{
+		dirtyLeft = Math.min( dirtyLeft, x );
+		dirtyTop = Math.min( dirtyTop, y );
+		dirtyRight = Math.max( dirtyRight, x + w );
+		dirtyBottom = Math.max( dirtyBottom, y + h );
+	}
+	
+	/**
+	 * @param boardWidth Width of the board in blocks
+	 * @return Width of an image that fits the whole board, with as much room right of it as left
+	 */
+	public static int getImageWidth( int boardWidth )
+	{
+		return X_PLUS * 2 + boardWidth * SQUARE_WIDTH;
+	}
+	
+	/**
+	 * @param boardHeight Height of the board in blocks
+	 * @return Height of an image that fits the whole board and the square above it
+	 */
+	public static int getImageHeight( int boardHeight )
+	{
+		return Y_PLUS + boardHeight * SQUARE_WIDTH + SQUARE_WIDTH;
+	}
+	
+	/**
+	 * Get the colour to draw a block with
+	 * @param c The block as a cell, see Cell
+	 * @return The colour of the block
+	 */
+	public static Color getColour( int c )
+	{
+		if( Cell.isClear( c ) )
+			return CLEAR_COLOURS[Cell.getColour( c )];
+		
+		return COLOURS[Cell.getColour( c )];
+	}
+	
+	/**
+	 * @return The image that is drawn on
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,329 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Keeps track of how long each part of a frame takes
+ * Times are added up over a frame, then put into histograms when the frame ends
+ * Every second the histograms are turned into numbers that can be shown on the screen
+ * Each frame can also be written to a CSV file
+ * None of the recording creates any objects
+ */
+public class PerfRecorder
+{
+	//The parts of a frame
+	public static final int UPDATE = 0; //Ticking the game
+	public static final int SET_CLEAR = 1; //Labelling blocks to be cleared, part of UPDATE
+	public static final int DO_CLEAR = 2; //Clearing blocks behind the line, part of UPDATE
+	public static final int DRAW = 3; //Drawing the frame
+	public static final int SLEEP = 4; //Waiting for the next frame
+	public static final int PHASES = 5; //Number of parts
+	public static final String[] PHASE_NAMES = { "update", "setClear", "doClear", "draw", "sleep" };
+	
+	//Constants
+	private static final long WINDOW = 1000000000L; //Nanoseconds between each time the numbers are worked out
+	private static final String CSV_HEADER = "frame,start_ns,frame_ns,update_ns,set_clear_ns,do_clear_ns,draw_ns,sleep_ns,ticks,alloc_bytes\n";
+	
+	//Instance variables - the frame being recorded
+	private long frameStart; //When the frame started
+	private long[] phaseTime = new long[PHASES]; //Time spent on each part this frame
+	private int ticks; //Ticks this frame
+	private long frames = 0; //Frames recorded so far
+	private long lastAllocated; //Bytes the thread had allocated when the frame started
+	
+	//Instance variables - histograms for the current window
+	private LatencyHistogram frameHistogram = new LatencyHistogram(); //Time taken by whole frames
+	private LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASES]; //Time taken by each part
+	private long windowStart; //When the window started
+	private long windowFrames; //Frames in the window
+	private long windowAllocated; //Bytes allocated in the window
+	
+	//Instance variables - numbers from the last window
+	private double fps; //Frames per second
+	private long p50; //Half of the frames were this fast
+	private long p99; //99% of the frames were this fast
+	private long max; //The slowest frame
+	private long[] phaseP50 = new long[PHASES]; //Half of each part was this fast
+	private long[] phaseP99 = new long[PHASES]; //99% of each part was this fast
+	private double allocationRate; //Bytes allocated per second
+	private long results = 0; //How many times the numbers have been worked out
+	
+	//Instance variables - CSV output
+	private FileOutputStream csv; //File the frames are written to, null if they aren't
+	private byte[] buffer = new byte[1 << 16]; //Lines waiting to be written
+	private int bufferLength = 0; //Bytes used in the buffer
+	
+	//Instance variables - allocation counting
+	private com.sun.management.ThreadMXBean threads; //Counts bytes allocated, null if the JVM can't
+	private long threadId; //The thread that is recorded
+	
+	/**
+	 * Constructor
+	 * The recorder should only be used by the thread that made it
+	 */
+	public PerfRecorder()
+	{
+		for( int i = 0; i < PHASES; i++ )
+			phaseHistograms[i] = new LatencyHistogram();
+		
+		if( ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean )
+		{
+			threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			threadId = Thread.currentThread().getId();
+		}
+		
+		frameStart = System.nanoTime();
+		windowStart = frameStart;
+		lastAllocated = getAllocated();
+	}
+	
+	/**
+	 * Start writing every frame to a CSV file
+	 * @param file Name of the file
+	 * @throws IOException If the file can't be made
+	 */
+	public synchronized void openCsv( String file ) throws IOException
+	{
+		csv = new FileOutputStream( file );
+		byte[] header = CSV_HEADER.getBytes( "US-ASCII" );
+		csv.write( header );
+	}
+	
+	/**
+	 * Add time spent on a part of the frame
+	 * @param phase The part of the frame
+	 * @param nanos How long it took
+	 */
+	public void add( int phase, long nanos )
+	{
+		phaseTime[phase] += nanos;
+	}
+	
+	/**
+	 * Count one tick of the game
+	 */
+	public void addTick()
+	{
+		ticks++;
+	}
+	
+	/**
+	 * Finish the frame and start the next one
+	 */
+	public synchronized void endFrame()
+	{
+		long now = System.nanoTime();
+		long frameTime = now - frameStart;
+		long allocated = getAllocated();
+		long frameAllocated = allocated - lastAllocated;
+		
+		frameHistogram.record( frameTime );
+		for( int i = 0; i < PHASES; i++ )
+			phaseHistograms[i].record( phaseTime[i] );
+		windowFrames++;
+		windowAllocated += frameAllocated;
+		
+		if( csv != null )
+			writeFrame( frameTime, frameAllocated );
+		
+		//Work out the numbers once every second
+		if( now - windowStart >= WINDOW )
+		{
+			double seconds = ( now - windowStart ) / 1e9;
+			fps = windowFrames / seconds;
+			allocationRate = windowAllocated / seconds;
+			p50 = frameHistogram.getPercentile( 50 );
+			p99 = frameHistogram.getPercentile( 99 );
+			max = frameHistogram.getMax();
+			for( int i = 0; i < PHASES; i++ )
+			{
+				phaseP50[i] = phaseHistograms[i].getPercentile( 50 );
+				phaseP99[i] = phaseHistograms[i].getPercentile( 99 );
+				phaseHistograms[i].reset();
+			}
+			frameHistogram.reset();
+			windowStart = now;
+			windowFrames = 0;
+			windowAllocated = 0;
+			results++;
+		}
+		
+		//Start the next frame
+		frames++;
+		frameStart = now;
+		lastAllocated = getAllocated();
+		ticks = 0;
+		for( int i = 0; i < PHASES; i++ )
+			phaseTime[i] = 0;
+	}
+	
+	/**
+	 * Put one frame in the CSV buffer
+	 * @param frameTime How long the frame took
+	 * @param allocated Bytes allocated during the frame
+	 */
+	private void writeFrame( long frameTime, long allocated )
+	{
+		//Make sure there is room for a whole line
+		if( bufferLength > buffer.length - 256 )
+			flush();
+		
+		writeNumber( frames );
+		writeNumber( frameStart );
+		writeNumber( frameTime );
+		for( int i = 0; i < PHASES; i++ )
+			writeNumber( phaseTime[i] );
+		writeNumber( ticks );
+		writeNumber( allocated );
+		
+		//Change the last comma to the end of the line
+		buffer[bufferLength - 1] = '\n';
+	}
+	
+	/**
+	 * Put a number and a comma in the CSV buffer
+	 * @param n The number
+	 */
+	private void writeNumber( long n )
+	{
+		if( n < 0 )
+		{
+			buffer[bufferLength++] = '-';
+			n = -n;
+		}
+		
+		//Write the digits backwards then turn them around
+		int start = bufferLength;
+		do
+		{
+			buffer[bufferLength++] = (byte)( '0' + n % 10 );
+			n /= 10;
+		} while( n > 0 );
+		
+		for( int i = start, j = bufferLength - 1; i < j; i++, j-- )
+		{
+			byte temp = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = temp;
+		}
+		
+		buffer[bufferLength++] = ',';
+	}
+	
+	/**
+	 * Write the CSV buffer to the file
+	 */
+	public synchronized void flush()
+	{
+		if( csv == null )
+			return;
+		
+		try
+		{
+			csv.write( buffer, 0, bufferLength );
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Could not write performance data: " + e.getMessage() );
+			csv = null;
+		}
+		bufferLength = 0;
+	}
+	
+	/**
+	 * Write what is left and close the CSV file
+	 */
+	public synchronized void close()
+	{
+		flush();
+		
+		try
+		{
+			if( csv != null )
+				csv.close();
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Could not close performance data: " + e.getMessage() );
+		}
+		csv = null;
+	}
+	
+	/**
+	 * Find out how many bytes the thread has allocated
+	 * @return The bytes allocated, or 0 if the JVM can't tell
+	 */
+	private long getAllocated()
+	{
+		if( threads == null )
+			return 0;
+		
+		return threads.getThreadAllocatedBytes( threadId );
+	}
+	
+	/**
+	 * @return How many times the numbers have been worked out, changes once a second
+	 */
+	public long getResults()
+	{
+		return results;
+	}
+	
+	/**
+	 * @return Frames per second over the last second
+	 */
+	public double getFps()
+	{
+		return fps;
+	}
+	
+	/**
+	 * @return The median frame time over the last second, in nanoseconds
+	 */
+	public long getP50()
+	{
+		return p50;
+	}
+	
+	/**
+	 * @return The 99th percentile frame time over the last second, in nanoseconds
+	 */
+	public long getP99()
+	{
+		return p99;
+	}
+	
+	/**
+	 * @return The longest frame time over the last second, in nanoseconds
+	 */
+	public long getMax()
+	{
+		return max;
+	}
+	
+	/**
+	 * @param phase The part of the frame
+	 * @return The median time of the part over the last second, in nanoseconds
+	 */
+	public long getPhaseP50( int phase )
+	{
+		return phaseP50[phase];
+	}
+	
+	/**
+	 * @param phase The part of the frame
+	 * @return The 99th percentile time of the part over the last second, in nanoseconds
+	 */
+	public long getPhaseP99( int phase )
+	{
+		return phaseP99[phase];
+	}
+	
+	/**
+	 * @return Bytes allocated per second over the last second
+	 */
+	public double getAllocationRate()
+	{
+		return allocationRate;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+/**
+ * Where the colours of new squares come from
+ * One source is used for a whole game, so the same seed always gives the same squares
+ * Uses the SplitMix64 generator, which is fast and only needs one number of state
+ */
+public class PieceSource
+{
+	static final long GAMMA = 0x9E3779B97F4A7C15L; //Added to the state of a SplitMix64 generator for each number
+	
+	private long seed; //The seed the source started with
+	private long state; //Current state of the generator
+	private int colours; //Number of colours the blocks can be
+	
+	/**
+	 * Constructor for a source of two colours
+	 * @param s The seed to start from
+	 */
+	public PieceSource( long s )
+	{
+		this( s, 2 );
+	}
+	
+	/**
+	 * Constructor
+	 * @param s The seed to start from
+	 * @param c Number of colours the blocks can be
+	 */
+	public PieceSource( long s, int c )
+	{
+		Cell.checkColours( c );
+		seed = s;
+		state = s;
+		colours = c;
+	}
+	
+	/**
+	 * Pick the colour of the next block
+	 * With two colours this is the lowest bit of the random number, the same as it always was
+	 * @return A colour from 1 to the number of colours
+	 */
+	public int nextColour()
+	{
+		return (int)( ( nextLong() & Long.MAX_VALUE ) % colours ) + 1;
+	}
+	
+	/**
+	 * Pick the colours of the blocks of the next square
+	 * Gives the same colours as calling nextColour() for each block, row by row
+	 * @return The colour of each block, 4 bits each, the way Square keeps them
+	 */
+	public int nextColours()
+	{
+		int c = 0;
+		for( int i = 0; i < 4; i++ )
+			c |= nextColour() << ( i * 4 );
+		
+		return c;
+	}
+	
+	/**
+	 * Get the next random number
+	 * @return A random number
+	 */
+	private long nextLong()
+	{
+		state += GAMMA;
+		return mix( state );
+	}
+	
+	/**
+	 * Scramble a number with the SplitMix64 finalizer, which the generator, Board.zobrist() and Leaderboard all use
+	 * Numbers that are close together give results that look unrelated
+	 * @param z The number
+	 * @return The scrambled number
+	 */
+	static long mix( long z )
+	{
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+	
+	/**
+	 * @return The seed the source started with
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * @return The number of colours the blocks can be
+	 */
+	public int getColours()
+	{
+		return colours;
+	}
+	
+	/**
+	 * @return The current state of the generator
+	 */
+	public long getState()
+	{
+		return state;
+	}
+	
+	/**
+	 * @param state The state to continue the generator from
+	 */
+	public void setState( long state )
+	{
+		this.state = state;
+	}
+}
\ No newline at end of file
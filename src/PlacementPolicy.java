@@ -0,0 +1,84 @@
+/**
+ * A policy that picks a column and rotation for each new square, then holds the keys that get it there
+ * Turns the square until it matches the rotation, moves it to the column, then drops it
+ */
+public abstract class PlacementPolicy implements InputPolicy
+{
+	private LuminesGame plannedGame; //The game that the plan is for
+	private long planned = -1; //The square count of the game when the plan was made
+	private int targetColumn; //Column to move the square to
+	private int[] target = new int[4]; //Colours the square should be rotated to, clockwise from the top left
+	private int[] current = new int[4]; //Colours of the square right now, clockwise from the top left
+	
+	/**
+	 * Pick where to put a new square, then hold the keys that get it there
+	 */
+	public void choose( LuminesGame game, InputState input )
+	{
+		//Squares are used again once they land, so a new square is told apart by the count
+		Square s = game.getCurrentSquare();
+		if( game != plannedGame || game.getSquareCount() != planned )
+		{
+			plannedGame = game;
+			planned = game.getSquareCount();
+			plan( game );
+		}
+		
+		input.clear();
+		getClockwise( s, current );
+		if( !sameColours( current, target ) )
+			input.setRotate( true );
+		else if( s.getColumn() < targetColumn )
+			input.setRight( true );
+		else if( s.getColumn() > targetColumn )
+			input.setLeft( true );
+		else
+			input.setDown( true );
+	}
+	
+	/**
+	 * Pick where to put the current square, then call setTarget()
+	 * @param game The game being played
+	 */
+	protected abstract void plan( LuminesGame game );
+	
+	/**
+	 * Set where the current square should go
+	 * @param s The square
+	 * @param column Column for the left side of the square
+	 * @param rotation How many times to turn the square clockwise
+	 */
+	protected void setTarget( Square s, int column, int rotation )
+	{
+		targetColumn = column;
+		getClockwise( s, current );
+		for( int p = 0; p < 4; p++ )
+			target[p] = current[( p - rotation ) & 3];
+	}
+	
+	/**
+	 * Get the colours of the blocks of a square going clockwise from the top left
+	 * Turning the square clockwise moves each block one place along
+	 * @param s The square
+	 * @param colours Where to put the colours
+	 */
+	public static void getClockwise( Square s, int[] colours )
+	{
+		colours[0] = s.getColour( 0, 0 );
+		colours[1] = s.getColour( 0, 1 );
+		colours[2] = s.getColour( 1, 1 );
+		colours[3] = s.getColour( 1, 0 );
+	}
+	
+	/**
+	 * @return Whether or not two squares have the same colours in the same places
+	 */
+	private static boolean sameColours( int[] a, int[] b )
+	{
+		for( int i = 0; i < 4; i++ )
+			if( a[i] != b[i] )
+				return false;
+		
+		return true;
+	}
+}
\ No newline at end of file
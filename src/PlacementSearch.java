@@ -0,0 +1,498 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches for the best column and rotation for the current square, looking ahead at the next squares
+ * Uses a beam search: every column and rotation of a square is tried on each of the best boards so far,
+ * then only the best boards are kept for the next square
+ * Boards are scored after the square is dropped with the same split rule as the game and setClear() has labelled them
+ * Scores are kept in a table by the Zobrist key of the board, so a board reached in two ways is only scored once
+ * Nothing is created while searching when one thread is used
+ */
+public class PlacementSearch
+{
+	//Constants
+	public static final int DEFAULT_BEAM_WIDTH = 24; //Boards kept after each square
+	public static final int DEFAULT_TABLE_BITS = 16; //The table holds 2^this scores
+	private static final int INVALID = Integer.MIN_VALUE; //Score of a move that loses the game
+	
+	//How boards are scored
+	private static final int CLEAR_SCORE = 6; //For each block labelled to be cleared
+	private static final int PAIR_SCORE = 2; //For each two blocks of the same colour side by side or on top of each other
+	private static final int HEIGHT_SCORE = 1; //Taken away for each block on the board
+	private static final int BUMP_SCORE = 2; //Taken away for each row of difference between columns next to each other
+	private static final int DANGER_SCORE = 60; //Taken away for each column that is nearly full
+	private static final int DANGER_ROWS = 3; //How close to the top a column is nearly full
+	
+	//Instance variables - the search
+	private int height; //Height of the boards searched
+	private int width; //Width of the boards searched
+	private int moves; //Columns times rotations for one square
+	private int beamWidth; //Boards kept after each square
+	private Board[] beam; //The best boards so far
+	private int[] beamFirst; //The move for the current square that each board came from
+	private int[] beamScore; //Score of each board
+	private int beamSize; //Boards in the beam
+	private Board[] nextBeam; //Where the best boards for the next square are put
+	private int[] nextFirst;
+	private int[] nextScore;
+	private Board[] scratch; //Board each beam board's moves are tried on, one for each so they can be tried at once
+	private int[] candidateScore; //Score of each move from each board
+	private long[] candidateHash; //Key of the board after each move from each board
+	private int[] hits; //Scores found in the table for each board's moves
+	private long[] heap; //The best moves, as score and move packed together, smallest first
+	private int[][] squares = new int[4][4]; //Colours of the squares searched, clockwise from the top left
+	private int depth; //Which square is being tried
+	private int[] tops; //Top row of each column, for each beam board
+	
+	//Instance variables - the table of scores
+	private long[] tableKeys; //Key of the board in each slot, XORed with the score so a torn write never matches
+	private long[] tableScores; //Score in each slot
+	private int tableMask; //Slots minus one
+	
+	//Instance variables - threads
+	private ForkJoinPool pool; //Tries moves from different boards at once, null to use one thread
+	
+	//Instance variables - results
+	private int bestColumn; //Column for the left side of the current square
+	private int bestRotation; //Times to turn the current square clockwise
+	private long lastNodes; //Boards scored in the last search
+	private long lastHits; //Scores found in the table in the last search
+	
+	/**
+	 * Tries the moves from a range of beam boards, splitting the range in half until there is one board left
+	 */
+	private class Expand extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L; //Version of the class if it is ever serialized
+		private int from; //First board
+		private int to; //One after the last board
+		
+		/**
+		 * Constructor
+		 * @param f First board
+		 * @param t One after the last board
+		 */
+		public Expand( int f, int t )
+		{
+			from = f;
+			to = t;
+		}
+		
+		protected void compute()
+		{
+			if( to - from == 1 )
+				expand( from );
+			else
+			{
+				int middle = ( from + to ) >>> 1;
+				invokeAll( new Expand( from, middle ), new Expand( middle, to ) );
+			}
+		}
+	}
+	
+	/**
+	 * Constructor for a search on one thread with the default beam and table
+	 * @param h Height of the boards to search
+	 * @param w Width of the boards to search
+	 */
+	public PlacementSearch( int h, int w )
+	{
+		this( h, w, 2, DEFAULT_BEAM_WIDTH, DEFAULT_TABLE_BITS, 1 );
+	}
+	
+	/**
+	 * Constructor for boards with two colours
+	 * @param h Height of the boards to search
+	 * @param w Width of the boards to search
+	 * @param beamSize Boards kept after each square
+	 * @param tableBits The table holds 2^tableBits scores
+	 * @param threads How many threads to search with
+	 */
+	public PlacementSearch( int h, int w, int beamSize, int tableBits, int threads )
+	{
+		this( h, w, 2, beamSize, tableBits, threads );
+	}
+	
+	/**
+	 * Constructor
+	 * @param h Height of the boards to search
+	 * @param w Width of the boards to search
+	 * @param colours Number of colours the blocks can be
+	 * @param beamSize Boards kept after each square
+	 * @param tableBits The table holds 2^tableBits scores
+	 * @param threads How many threads to search with
+	 */
+	public PlacementSearch( int h, int w, int colours, int beamSize, int tableBits, int threads )
+	{
+		height = h;
+		width = w;
+		moves = 4 * ( w - 1 );
+		beamWidth = beamSize;
+		
+		beam = new Board[beamWidth];
+		nextBeam = new Board[beamWidth];
+		scratch = new Board[beamWidth];
+		for( int i = 0; i < beamWidth; i++ )
+		{
+			beam[i] = new BitBoard( h, w, colours );
+			nextBeam[i] = new BitBoard( h, w, colours );
+			scratch[i] = new BitBoard( h, w, colours );
+		}
+		beamFirst = new int[beamWidth];
+		beamScore = new int[beamWidth];
+		nextFirst = new int[beamWidth];
+		nextScore = new int[beamWidth];
+		candidateScore = new int[beamWidth * moves];
+		candidateHash = new long[beamWidth * moves];
+		hits = new int[beamWidth];
+		heap = new long[beamWidth];
+		tops = new int[beamWidth * w];
+		
+		tableKeys = new long[1 << tableBits];
+		tableScores = new long[1 << tableBits];
+		tableMask = ( 1 << tableBits ) - 1;
+		
+		if( threads > 1 )
+			pool = new ForkJoinPool( threads );
+	}
+	
+	/**
+	 * Find the best column and rotation for the current square of a game
+	 * The results are given by getColumn() and getRotation()
+	 * @param game The game to search
+	 */
+	public void search( LuminesGame game )
+	{
+		//Start from the fixed blocks, without the square that is falling
+		Board root = beam[0];
+		root.copyFrom( game.getBoard() );
+		for( int i = 0; i < height; i++ )
+			for( int j = 0; j < width; j++ )
+				if( Cell.isFalling( root.getCell( i, j ) ) )
+					root.setCell( i, j, Cell.EMPTY );
+		root.markClears();
+		beamSize = 1;
+		beamFirst[0] = -1;
+		beamScore[0] = 0;
+		
+		PlacementPolicy.getClockwise( game.getCurrentSquare(), squares[0] );
+		for( int i = 0; i < LuminesGame.NEXT_SQUARES; i++ )
+			PlacementPolicy.getClockwise( game.getNextSquare( i ), squares[i + 1] );
+		
+		lastNodes = 0;
+		lastHits = 0;
+		for( depth = 0; depth < squares.length; depth++ )
+		{
+			//Try every move from every board in the beam
+			if( pool != null && beamSize > 1 )
+				pool.invoke( new Expand( 0, beamSize ) );
+			else
+				for( int p = 0; p < beamSize; p++ )
+					expand( p );
+			
+			lastNodes += (long) beamSize * moves;
+			for( int p = 0; p < beamSize; p++ )
+				lastHits += hits[p];
+			
+			//Stop looking ahead when every move loses
+			if( !selectBest() )
+				break;
+		}
+		
+		//The best board left came from the best move for the current square
+		int best = 0;
+		for( int k = 1; k < beamSize; k++ )
+			if( beamScore[k] > beamScore[best] )
+				best = k;
+		
+		if( beamFirst[best] < 0 )
+		{
+			//Nothing can be done, so leave the square where it is
+			bestColumn = game.getCurrentSquare().getColumn();
+			bestRotation = 0;
+		}
+		else
+		{
+			bestColumn = beamFirst[best] % ( width - 1 );
+			bestRotation = beamFirst[best] / ( width - 1 );
+		}
+	}
+	
+	/**
+	 * Try every move of the current square on one board of the beam
+	 * @param p Which board of the beam
+	 */
+	private void expand( int p )
+	{
+		Board board = scratch[p];
+		int[] square = squares[depth];
+		int base = p * moves;
+		findTops( beam[p], p );
+		hits[p] = 0;
+		
+		for( int m = 0; m < moves; m++ )
+		{
+			int rotation = m / ( width - 1 );
+			int column = m % ( width - 1 );
+			
+			//Skip rotations that look the same as one already tried, and columns that are full
+			if( sameAsEarlierRotation( square, rotation ) || tops[p * width + column] < 2 || tops[p * width + column + 1] < 2 )
+			{
+				candidateScore[base + m] = INVALID;
+				continue;
+			}
+			
+			board.copyFrom( beam[p] );
+			drop( board, square, rotation, column, tops[p * width + column], tops[p * width + column + 1] );
+			candidateHash[base + m] = board.getHash();
+			candidateScore[base + m] = scoreOf( board, p );
+		}
+	}
+	
+	/**
+	 * Find the top row of the blocks in each column of a board
+	 * @param board The board
+	 * @param p Which board of the beam, to say where to put the tops
+	 */
+	private void findTops( Board board, int p )
+	{
+		for( int j = 0; j < width; j++ )
+			tops[p * width + j] = board.getTop( j );
+	}
+	
+	/**
+	 * Whether or not turning a square gives the same blocks as turning it fewer times
+	 * @param square The colours of the square, clockwise from the top left
+	 * @param rotation How many times it is turned
+	 * @return If a smaller rotation looks the same
+	 */
+	private static boolean sameAsEarlierRotation( int[] square, int rotation )
+	{
+		for( int r = 0; r < rotation; r++ )
+		{
+			boolean same = true;
+			for( int i = 0; i < 4 && same; i++ )
+				same = square[( i - r ) & 3] == square[( i - rotation ) & 3];
+			if( same )
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Drop a square onto a board, each column falling on its own, then label the blocks to be cleared
+	 * @param board The board
+	 * @param square The colours of the square, clockwise from the top left
+	 * @param rotation How many times the square is turned clockwise
+	 * @param column Column for the left side of the square
+	 * @param leftTop Top row of the blocks in the left column
+	 * @param rightTop Top row of the blocks in the right column
+	 */
+	private static void drop( Board board, int[] square, int rotation, int column, int leftTop, int rightTop )
+	{
+		board.setCell( leftTop - 2, column, Cell.getNext( square[( 0 - rotation ) & 3] ) );
+		board.setCell( leftTop - 1, column, Cell.getNext( square[( 3 - rotation ) & 3] ) );
+		board.setCell( rightTop - 2, column + 1, Cell.getNext( square[( 1 - rotation ) & 3] ) );
+		board.setCell( rightTop - 1, column + 1, Cell.getNext( square[( 2 - rotation ) & 3] ) );
+		board.markClears();
+	}
+	
+	/**
+	 * Score a board, using the table if it was scored before
+	 * @param board The board
+	 * @param p Which board of the beam the moves are from, to count the table hits
+	 * @return The score, higher is better
+	 */
+	private int scoreOf( Board board, int p )
+	{
+		long key = board.getHash();
+		int slot = (int) key & tableMask;
+		long score = tableScores[slot];
+		if( ( tableKeys[slot] ^ score ) == key && key != 0 )
+		{
+			hits[p]++;
+			return (int) score;
+		}
+		
+		score = evaluate( board );
+		tableKeys[slot] = key ^ score;
+		tableScores[slot] = score;
+		return (int) score;
+	}
+	
+	/**
+	 * Score a board
+	 * Blocks that will be cleared and blocks of the same colour next to each other are good,
+	 * high or uneven columns are bad
+	 * @param board The board
+	 * @return The score, higher is better
+	 */
+	private int evaluate( Board board )
+	{
+		int score = CLEAR_SCORE * board.countClear() + PAIR_SCORE * board.countPairs();
+		int lastTop = -1;
+		
+		for( int j = 0; j < width; j++ )
+		{
+			int top = board.getTop( j );
+			score -= HEIGHT_SCORE * ( height - top );
+			if( top < DANGER_ROWS )
+				score -= DANGER_SCORE;
+			if( lastTop >= 0 )
+				score -= BUMP_SCORE * Math.abs( top - lastTop );
+			lastTop = top;
+		}
+		
+		return score;
+	}
+	
+	/**
+	 * Keep the best boards from the moves that were tried
+	 * Boards with the same key are only kept once
+	 * @return Whether or not any move didn't lose the game
+	 */
+	private boolean selectBest()
+	{
+		int size = 0;
+		int candidates = beamSize * moves;
+		
+		for( int c = 0; c < candidates; c++ )
+		{
+			int score = candidateScore[c];
+			if( score == INVALID )
+				continue;
+			
+			long packed = ( (long) score << 32 ) | c;
+			if( size == beamWidth && packed <= heap[0] )
+				continue;
+			if( inHeap( candidateHash[c], size ) )
+				continue;
+			
+			if( size < beamWidth )
+			{
+				//Add it to the bottom and move it up
+				int k = size++;
+				while( k > 0 && heap[( k - 1 ) >>> 1] > packed )
+				{
+					heap[k] = heap[( k - 1 ) >>> 1];
+					k = ( k - 1 ) >>> 1;
+				}
+				heap[k] = packed;
+			}
+			else
+				replaceSmallest( packed, size );
+		}
+		
+		if( size == 0 )
+			return false;
+		
+		//Make the kept moves into the next beam
+		for( int k = 0; k < size; k++ )
+		{
+			int c = (int) heap[k];
+			int p = c / moves;
+			int m = c % moves;
+			int rotation = m / ( width - 1 );
+			int column = m % ( width - 1 );
+			
+			nextBeam[k].copyFrom( beam[p] );
+			drop( nextBeam[k], squares[depth], rotation, column, tops[p * width + column], tops[p * width + column + 1] );
+			nextFirst[k] = depth == 0 ? m : beamFirst[p];
+			nextScore[k] = (int)( heap[k] >> 32 );
+		}
+		
+		Board[] b = beam;
+		beam = nextBeam;
+		nextBeam = b;
+		int[] f = beamFirst;
+		beamFirst = nextFirst;
+		nextFirst = f;
+		int[] s = beamScore;
+		beamScore = nextScore;
+		nextScore = s;
+		beamSize = size;
+		
+		return true;
+	}
+	
+	/**
+	 * Whether or not a board is already in the heap
+	 * @param hash Key of the board
+	 * @param size Moves in the heap
+	 * @return If a move in the heap gives the same board
+	 */
+	private boolean inHeap( long hash, int size )
+	{
+		for( int k = 0; k < size; k++ )
+			if( candidateHash[(int) heap[k]] == hash )
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Put a move in place of the worst move in the heap and move it down to where it belongs
+	 * @param packed The score and move packed together
+	 * @param size Moves in the heap
+	 */
+	private void replaceSmallest( long packed, int size )
+	{
+		int k = 0;
+		while( true )
+		{
+			int child = 2 * k + 1;
+			if( child >= size )
+				break;
+			if( child + 1 < size && heap[child + 1] < heap[child] )
+				child++;
+			if( heap[child] >= packed )
+				break;
+			heap[k] = heap[child];
+			k = child;
+		}
+		heap[k] = packed;
+	}
+	
+	/**
+	 * Stop the threads used for searching
+	 */
+	public void close()
+	{
+		if( pool != null )
+			pool.shutdown();
+	}
+	
+	/**
+	 * @return Column for the left side of the current square, from the last search
+	 */
+	public int getColumn()
+	{
+		return bestColumn;
+	}
+	
+	/**
+	 * @return How many times to turn the current square clockwise, from the last search
+	 */
+	public int getRotation()
+	{
+		return bestRotation;
+	}
+	
+	/**
+	 * @return How many boards were looked at in the last search
+	 */
+	public long getLastNodes()
+	{
+		return lastNodes;
+	}
+	
+	/**
+	 * @return How many boards had their score found in the table in the last search
+	 */
+	public long getLastHits()
+	{
+		return lastHits;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+import java.util.Random;
+
+/**
+ * Plays by holding down random keys
+ * Each choice of keys is held for a few ticks, like a person would
+ */
+public class RandomPolicy implements InputPolicy
+{
+	private Random rnd; //Where the choices come from
+	private int bits = 0; //The keys being held down
+	
+	/**
+	 * Constructor
+	 * @param seed Seed for the choices
+	 */
+	public RandomPolicy( long seed )
+	{
+		rnd = new Random( seed );
+	}
+	
+	/**
+	 * Change to new keys about once every 6 ticks
+	 */
+	public void choose( LuminesGame game, InputState input )
+	{
+		if( rnd.nextInt( 6 ) == 0 )
+			bits = rnd.nextInt( 16 );
+		
+		input.setBits( bits );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,465 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.imageio.ImageIO;
+
+/**
+ * Turns a recording, or a game played by one of the SelfPlay policies, into PNG frames or an uncompressed AVI without a display
+ * The game is played on the main thread, which only takes a snapshot of each frame with GameSnapshot
+ * The frames are drawn and encoded by a pool of worker threads, each loading the snapshots into a game and LuminesRenderer of its own
+ * Only a fixed number of frames are ever in use, so when the workers fall behind the game waits for them, and memory doesn't grow with the length of the game
+ * AVI frames are written in order as soon as every frame before them is done, in a new file every AviWriter.MAX_SIZE bytes
+ *
+ * Usage: java ReplayExporter (--replay FILE | --policy random|greedy|search|scripted) (--png DIRECTORY | --avi FILE)
+ *                            [--threads N] [--frames N] [--step N] [--script KEYS] [--seed N] [--tick-rate N] [--max-ticks N]
+ *                            [--width N] [--height N] [--colours N]
+ */
+public class ReplayExporter implements Runnable
+{
+	//Constants
+	private static final Frame STOP = new Frame(); //Given to a worker to make it stop
+	
+	//Instance variables
+	private String png; //Directory the PNG frames go in, null when writing an AVI
+	private String avi; //Name of the AVI file, null when writing PNG frames
+	private int imageWidth; //Width of the frames
+	private int imageHeight; //Height of the frames
+	private int rate; //Frames per scale seconds
+	private int scale; //Seconds that rate frames take up
+	private ArrayBlockingQueue<Frame> free; //Frames that can be used for the next snapshot
+	private ArrayBlockingQueue<Frame> jobs; //Frames waiting to be drawn
+	private Thread[] workers; //The worker threads
+	private long added = 0; //Frames given to the workers, only used by the game's thread
+	private volatile IOException error; //The first thing that went wrong, null if nothing did
+	
+	//Instance variables - putting the AVI frames back in order
+	private Frame[] ready; //Drawn frames waiting for the frames before them, by number modulo the number of frames
+	private long written = 0; //Frames written to the AVI
+	private boolean writing = false; //Whether or not a worker is writing frames
+	private AviWriter video; //The AVI file being written
+	private int parts = 0; //AVI files started
+	private long bytes = 0; //Bytes in the AVI files that were finished
+	
+	/**
+	 * A frame being exported
+	 */
+	private static class Frame
+	{
+		private long number; //Number of the frame, from 0
+		private ByteBuffer snapshot; //The game at the frame
+		private byte[] pixels; //The frame as it goes in the AVI, null for PNG frames
+	}
+	
+	/**
+	 * Constructor
+	 * Starts the worker threads
+	 * @param p Directory to write PNG frames to, null to write an AVI
+	 * @param a Name of the AVI file to write, null to write PNG frames
+	 * @param threads Number of worker threads
+	 * @param frames Most frames in use at once, at least the number of threads
+	 * @param boardHeight Height of the board in blocks
+	 * @param boardWidth Width of the board in blocks
+	 * @param r Frames per s seconds
+	 * @param s Seconds that r frames take up
+	 * @throws IOException If the directory or AVI file can't be made
+	 */
+	public ReplayExporter( String p, String a, int threads, int frames, int boardHeight, int boardWidth, int r, int s ) throws IOException
+	{
+		if( ( p == null ) == ( a == null ) )
+			throw new IllegalArgumentException( "Give either a directory for PNG frames or an AVI file" );
+		if( threads < 1 || frames < threads )
+			throw new IllegalArgumentException( "Need at least one thread and a frame for each thread, not " + threads + " threads and " + frames + " frames" );
+		
+		png = p;
+		avi = a;
+		imageWidth = LuminesRenderer.getImageWidth( boardWidth );
+		imageHeight = LuminesRenderer.getImageHeight( boardHeight );
+		rate = r;
+		scale = s;
+		
+		if( png != null && !new File( png ).isDirectory() && !new File( png ).mkdirs() )
+			throw new IOException( "Could not make the directory " + png );
+		if( avi != null )
+			nextPart();
+		
+		//Every frame is made now, so nothing bigger than a snapshot is allocated while exporting
+		free = new ArrayBlockingQueue<Frame>( frames );
+		jobs = new ArrayBlockingQueue<Frame>( frames + threads );
+		ready = new Frame[frames];
+		for( int i = 0; i < frames; i++ )
+		{
+			Frame f = new Frame();
+			if( avi != null )
+				f.pixels = new byte[video.getFrameSize()];
+			free.add( f );
+		}
+		
+		workers = new Thread[threads];
+		for( int i = 0; i < threads; i++ )
+		{
+			workers[i] = new Thread( this, "Frame exporter " + ( i + 1 ) );
+			workers[i].setDaemon( true );
+			workers[i].start();
+		}
+	}
+	
+	/**
+	 * Close the AVI file being written, if there is one, and start the next one
+	 * The first file has the name it was given, the ones after it have -2, -3 and so on before the extension
+	 * @throws IOException If the file can't be made
+	 */
+	private void nextPart() throws IOException
+	{
+		if( video != null )
+		{
+			video.close();
+			bytes += video.getSize();
+		}
+		
+		parts++;
+		String name = avi;
+		if( parts > 1 )
+		{
+			int dot = avi.lastIndexOf( '.' );
+			if( dot <= avi.lastIndexOf( File.separatorChar ) )
+				dot = avi.length();
+			name = avi.substring( 0, dot ) + "-" + parts + avi.substring( dot );
+		}
+		
+		video = new AviWriter( name, imageWidth, imageHeight, rate, scale );
+	}
+	
+	/**
+	 * Take a snapshot of the game as the next frame and hand it to the workers, only from the game's thread
+	 * Waits if every frame is in use
+	 * @param game The game
+	 * @throws IOException If a frame couldn't be exported
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public void add( LuminesGame game ) throws IOException, InterruptedException
+	{
+		if( error != null )
+			throw error;
+		
+		Frame f = free.take();
+		f.number = added++;
+		int size = GameSnapshot.getSize( game );
+		if( f.snapshot == null || f.snapshot.capacity() < size )
+			f.snapshot = ByteBuffer.allocate( size );
+		
+		f.snapshot.clear();
+		GameSnapshot.write( game, f.snapshot );
+		f.snapshot.flip();
+		jobs.put( f );
+	}
+	
+	/**
+	 * Draw and encode frames until told to stop
+	 */
+	public void run()
+	{
+		LuminesRenderer renderer = new LuminesRenderer( imageWidth, imageHeight );
+		LuminesGame game = null;
+		
+		try
+		{
+			while( true )
+			{
+				Frame f = jobs.take();
+				if( f == STOP )
+					return;
+				
+				try
+				{
+					if( error == null )
+					{
+						//The renderer only draws what changed since the last frame this worker drew, whichever frame that was
+						if( game == null )
+							game = GameSnapshot.read( f.snapshot );
+						else
+							GameSnapshot.read( f.snapshot, game );
+						renderer.render( game );
+						
+						if( png != null )
+							ImageIO.write( renderer.getImage(), "png", new File( png, String.format( "frame%06d.png", f.number ) ) );
+						else
+							toPixels( renderer.getImage(), f.pixels );
+					}
+				}
+				catch( IOException e )
+				{
+					fail( e );
+				}
+				
+				if( png != null || error != null )
+					free.put( f );
+				else
+					finish( f );
+			}
+		}
+		catch( InterruptedException e )
+		{
+		}
+	}
+	
+	/**
+	 * Write an AVI frame, and any frames after it that were waiting for it
+	 * Only one worker writes at a time, the others go back to drawing
+	 * @param f The frame
+	 * @throws InterruptedException If the thread was interrupted
+	 */
+	private void finish( Frame f ) throws InterruptedException
+	{
+		synchronized( this )
+		{
+			ready[(int)( f.number % ready.length )] = f;
+			if( writing )
+				return;
+			writing = true;
+		}
+		
+		while( true )
+		{
+			Frame next;
+			synchronized( this )
+			{
+				int slot = (int)( written % ready.length );
+				next = ready[slot];
+				if( next == null )
+				{
+					writing = false;
+					return;
+				}
+				ready[slot] = null;
+			}
+			
+			try
+			{
+				if( video.isFull() )
+					nextPart();
+				video.writeFrame( next.pixels );
+			}
+			catch( IOException e )
+			{
+				fail( e );
+			}
+			
+			synchronized( this )
+			{
+				written++;
+			}
+			free.put( next );
+		}
+	}
+	
+	/**
+	 * Remember the first thing that went wrong, which is thrown to the game's thread
+	 * @param e What went wrong
+	 */
+	private synchronized void fail( IOException e )
+	{
+		if( error == null )
+			error = e;
+	}
+	
+	/**
+	 * Turn an image into the pixels of an AVI frame: blue, green and red, bottom row first
+	 * @param image The image
+	 * @param pixels Where to put the pixels
+	 */
+	private void toPixels( BufferedImage image, byte[] pixels )
+	{
+		int[] rgb = ( (DataBufferInt) image.getRaster().getDataBuffer() ).getData();
+		int stride = AviWriter.getStride( imageWidth );
+		
+		for( int y = 0; y < imageHeight; y++ )
+		{
+			int from = y * imageWidth;
+			int to = ( imageHeight - 1 - y ) * stride;
+			for( int x = 0; x < imageWidth; x++ )
+			{
+				int c = rgb[from + x];
+				pixels[to++] = (byte) c;
+				pixels[to++] = (byte)( c >> 8 );
+				pixels[to++] = (byte)( c >> 16 );
+			}
+		}
+	}
+	
+	/**
+	 * Wait for every frame to be exported, stop the workers and finish the AVI file
+	 * @throws IOException If a frame couldn't be exported
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public void close() throws IOException, InterruptedException
+	{
+		for( int i = 0; i < workers.length; i++ )
+			jobs.put( STOP );
+		for( int i = 0; i < workers.length; i++ )
+			workers[i].join();
+		
+		if( video != null )
+		{
+			video.close();
+			bytes += video.getSize();
+			video = null;
+		}
+		
+		if( error != null )
+			throw error;
+	}
+	
+	/**
+	 * @return Frames given to the workers
+	 */
+	public long getFrames()
+	{
+		return added;
+	}
+	
+	/**
+	 * @return AVI files written
+	 */
+	public int getParts()
+	{
+		return parts;
+	}
+	
+	/**
+	 * @return Bytes of frames in the AVI files, once they are closed
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+	
+	/**
+	 * Export a recording or a game played by a policy
+	 * @param args See the usage above
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		String replay = null;
+		String policy = null;
+		String script = ScriptedPolicy.DEFAULT_SCRIPT;
+		String png = null;
+		String avi = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int frames = 0;
+		int step = 1;
+		long seed = 1;
+		int tickRate = LuminesGame.TICK_RATE;
+		long maxTicks = 0;
+		int height = LuminesGame.BOARD_HEIGHT;
+		int width = LuminesGame.BOARD_WIDTH;
+		int colours = 2;
+		
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[i].equals( "--replay" ) && i + 1 < args.length )
+				replay = args[++i];
+			else if( args[i].equals( "--policy" ) && i + 1 < args.length )
+				policy = args[++i];
+			else if( args[i].equals( "--script" ) && i + 1 < args.length )
+				script = args[++i];
+			else if( args[i].equals( "--png" ) && i + 1 < args.length )
+				png = args[++i];
+			else if( args[i].equals( "--avi" ) && i + 1 < args.length )
+				avi = args[++i];
+			else if( args[i].equals( "--threads" ) && i + 1 < args.length )
+				threads = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--frames" ) && i + 1 < args.length )
+				frames = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--step" ) && i + 1 < args.length )
+				step = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--seed" ) && i + 1 < args.length )
+				seed = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--tick-rate" ) && i + 1 < args.length )
+				tickRate = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--max-ticks" ) && i + 1 < args.length )
+				maxTicks = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--width" ) && i + 1 < args.length )
+				width = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--height" ) && i + 1 < args.length )
+				height = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--colours" ) && i + 1 < args.length )
+				colours = Integer.parseInt( args[++i] );
+		}
+		
+		if( ( replay == null ) == ( policy == null ) )
+			throw new IllegalArgumentException( "Give either a recording with --replay or a policy with --policy" );
+		if( step < 1 )
+			throw new IllegalArgumentException( "The step has to be at least 1, not " + step );
+		
+		//Two frames for each worker, so one can be drawn while the other waits to be written
+		if( frames <= 0 )
+			frames = threads * 2;
+		
+		//A recording sets the game up the same way it was recorded, and plays to its end unless told otherwise
+		InputPlayer player = null;
+		InputPolicy computer = null;
+		if( replay != null )
+		{
+			player = new InputPlayer( replay );
+			tickRate = player.getTickRate();
+			seed = player.getSeed();
+			height = player.getHeight();
+			width = player.getWidth();
+			colours = 2;
+			if( maxTicks <= 0 )
+				maxTicks = Long.MAX_VALUE;
+		}
+		else
+		{
+			computer = SelfPlay.makePolicy( policy, script, seed );
+			if( maxTicks <= 0 )
+				maxTicks = 3600L * tickRate;
+		}
+		
+		LuminesGame game = new LuminesGame( new TickClock( tickRate ), tickRate, seed, height, width, colours );
+		if( player != null )
+			player.setUp( game );
+		InputState input = new InputState();
+		
+		ReplayExporter exporter = new ReplayExporter( png, avi, threads, frames, height, width, tickRate, step );
+		long start = System.nanoTime();
+		exporter.add( game );
+		
+		long ticks = 0;
+		while( ticks < maxTicks )
+		{
+			if( player != null )
+			{
+				if( !player.next( input ) )
+					break;
+			}
+			else
+				computer.choose( game, input );
+			
+			game.tick( input );
+			ticks++;
+			if( ticks % step == 0 )
+				exporter.add( game );
+			
+			//A recording carries on with a new game the same way the interface does, a policy only plays one
+			if( game.isGameOver() )
+			{
+				if( player == null )
+					break;
+				game.newGame();
+			}
+		}
+		
+		exporter.close();
+		long time = System.nanoTime() - start;
+		
+		System.out.printf( "%d frames of %d ticks in %.3f s (%.0f frames/s) on %d threads%n", exporter.getFrames(), ticks, time / 1e9,
+				exporter.getFrames() * 1e9 / time, threads );
+		if( avi != null )
+			System.out.printf( "%d MB in %d AVI files at %.2f frames a second%n", exporter.getBytes() >> 20, exporter.getParts(),
+					(double) tickRate / step );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+/**
+ * Plays the same keys over and over
+ * The script is a list of ticks split by spaces, each one made of the letters of the keys to hold down
+ * U rotates, D moves down, L moves left, R moves right and . holds nothing
+ * For example "L L U D" moves left for two ticks, rotates for one, then moves down for one
+ */
+public class ScriptedPolicy implements InputPolicy
+{
+	//Constants
+	public static final String DEFAULT_SCRIPT = "L L L U . D D D D D D D D D D D . R R R R U . D D D D D D D D D D D ."; //Drops squares to either side of the middle
+	
+	//Instance variables
+	private int[] ticks; //The keys for each tick of the script
+	private int next = 0; //The tick of the script to play next
+	
+	/**
+	 * Constructor
+	 * @param script The keys to play
+	 */
+	public ScriptedPolicy( String script )
+	{
+		String[] parts = script.trim().split( "\\s+" );
+		ticks = new int[parts.length];
+		
+		for( int i = 0; i < parts.length; i++ )
+		{
+			for( int j = 0; j < parts[i].length(); j++ )
+			{
+				char c = Character.toUpperCase( parts[i].charAt( j ) );
+				if( c == 'U' )
+					ticks[i] |= InputState.ROTATE;
+				else if( c == 'D' )
+					ticks[i] |= InputState.DOWN;
+				else if( c == 'L' )
+					ticks[i] |= InputState.LEFT;
+				else if( c == 'R' )
+					ticks[i] |= InputState.RIGHT;
+				else if( c != '.' )
+					throw new IllegalArgumentException( "Unknown key " + c + " in script" );
+			}
+		}
+	}
+	
+	/**
+	 * Play the next tick of the script, starting again at the end
+	 */
+	public void choose( LuminesGame game, InputState input )
+	{
+		input.setBits( ticks[next] );
+		next = ( next + 1 ) % ticks.length;
+	}
+}
\ No newline at end of file
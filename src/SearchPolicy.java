@@ -0,0 +1,47 @@
+/**
+ * Plays by searching every column and rotation of the current square and the next three squares
+ * See PlacementSearch for how the search works
+ */
+public class SearchPolicy extends PlacementPolicy
+{
+	private PlacementSearch search; //Does the searching, made once the size of the board is known
+	private int threads; //How many threads to search with
+	
+	/**
+	 * Constructor for a policy that searches on one thread
+	 */
+	public SearchPolicy()
+	{
+		this( 1 );
+	}
+	
+	/**
+	 * Constructor
+	 * @param t How many threads to search with
+	 */
+	public SearchPolicy( int t )
+	{
+		threads = t;
+	}
+	
+	/**
+	 * Search for the best column and rotation for the current square
+	 */
+	protected void plan( LuminesGame game )
+	{
+		if( search == null )
+			search = new PlacementSearch( game.getBoard().getHeight(), game.getBoard().getWidth(), game.getColours(),
+					PlacementSearch.DEFAULT_BEAM_WIDTH, PlacementSearch.DEFAULT_TABLE_BITS, threads );
+		
+		search.search( game );
+		setTarget( game.getCurrentSquare(), search.getColumn(), search.getRotation() );
+	}
+	
+	/**
+	 * @return The search, null before the first square
+	 */
+	public PlacementSearch getSearch()
+	{
+		return search;
+	}
+}
\ No newline at end of file
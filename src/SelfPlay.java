@@ -0,0 +1,279 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays many games at once without a display, one game on each core at a time
+ * Every game has its own board, squares, line and seed, so the games don't share anything
+ * Prints how fast the games were played, the spread of the scores and how long the games lasted
+ *
+ * Usage: java SelfPlay [--games N] [--policy random|greedy|search|scripted] [--script KEYS] [--threads N]
+ *                      [--seed N] [--tick-rate N] [--max-ticks N] [--width N] [--height N] [--colours N]
+ */
+public class SelfPlay
+{
+	//Constants
+	private static final int HISTOGRAM_BUCKETS = 12; //Number of bars in the game length histogram
+	private static final int HISTOGRAM_WIDTH = 50; //Length of the longest bar
+	
+	//Instance variables
+	private String policy; //Name of the policy that plays the games
+	private String script; //Keys for the scripted policy
+	private long seed; //Seed that the seed of each game comes from
+	private int tickRate; //How many times a second the games tick
+	private long maxTicks; //Games are stopped after this many ticks
+	private int height; //Height of the boards
+	private int width; //Width of the boards
+	private int colours = 2; //Number of colours the blocks can be
+	private int[] scores; //Score of each game
+	private long[] lengths; //Ticks each game lasted
+	
+	/**
+	 * Plays a range of games, splitting the range in half until there is one game left
+	 */
+	private class Games extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L; //Version of the class if it is ever serialized
+		private int from; //First game to play
+		private int to; //One after the last game to play
+		
+		/**
+		 * Constructor
+		 * @param f First game to play
+		 * @param t One after the last game to play
+		 */
+		public Games( int f, int t )
+		{
+			from = f;
+			to = t;
+		}
+		
+		protected void compute()
+		{
+			if( to - from <= 1 )
+			{
+				if( to > from )
+					play( from );
+			}
+			else
+			{
+				int middle = ( from + to ) >>> 1;
+				invokeAll( new Games( from, middle ), new Games( middle, to ) );
+			}
+		}
+	}
+	
+	/**
+	 * Constructor
+	 * @param games How many games to play, at least 1
+	 * @param p Name of the policy that plays the games
+	 * @param s Keys for the scripted policy
+	 * @param sd Seed that the seed of each game comes from
+	 * @param rate How many times a second the games tick
+	 * @param max Games are stopped after this many ticks
+	 * @param h Height of the boards
+	 * @param w Width of the boards
+	 */
+	public SelfPlay( int games, String p, String s, long sd, int rate, long max, int h, int w )
+	{
+		if( games < 1 )
+			throw new IllegalArgumentException( "At least one game has to be played, not " + games );
+		
+		height = h;
+		width = w;
+		policy = p;
+		script = s;
+		seed = sd;
+		tickRate = rate;
+		maxTicks = max;
+		scores = new int[games];
+		lengths = new long[games];
+	}
+	
+	/**
+	 * Play one game until it is lost or runs out of ticks
+	 * @param n Number of the game
+	 */
+	private void play( int n )
+	{
+		//Each game gets a different seed, but the same seed every time the runner is started with the same seed
+		long gameSeed = seed + n * PieceSource.GAMMA;
+		LuminesGame game = new LuminesGame( new TickClock( tickRate ), tickRate, gameSeed, height, width, colours );
+		InputPolicy player = makePolicy( policy, script, gameSeed );
+		InputState input = new InputState();
+		
+		long ticks = 0;
+		while( !game.isGameOver() && ticks < maxTicks )
+		{
+			player.choose( game, input );
+			game.tick( input );
+			ticks++;
+		}
+		
+		scores[n] = game.getScore();
+		lengths[n] = ticks;
+	}
+	
+	/**
+	 * Play games with more colours than two
+	 * @param c Number of colours the blocks can be, from 2 to Cell.MAX_COLOURS
+	 */
+	public void setColours( int c )
+	{
+		Cell.checkColours( c );
+		colours = c;
+	}
+	
+	/**
+	 * Make a policy
+	 * @param name Name of the policy
+	 * @param script Keys for the scripted policy
+	 * @param seed Seed for the random policy
+	 * @return The policy
+	 */
+	public static InputPolicy makePolicy( String name, String script, long seed )
+	{
+		if( name.equals( "random" ) )
+			return new RandomPolicy( seed );
+		else if( name.equals( "greedy" ) )
+			return new GreedyPolicy();
+		else if( name.equals( "search" ) )
+			return new SearchPolicy();
+		else if( name.equals( "scripted" ) )
+			return new ScriptedPolicy( script );
+		else
+			throw new IllegalArgumentException( "Unknown policy " + name );
+	}
+	
+	/**
+	 * Play all of the games and print the results
+	 * @param threads How many games to play at once
+	 */
+	public void run( int threads )
+	{
+		ForkJoinPool pool = new ForkJoinPool( threads );
+		long start = System.nanoTime();
+		pool.invoke( new Games( 0, scores.length ) );
+		long time = System.nanoTime() - start;
+		pool.shutdown();
+		
+		long totalTicks = 0;
+		long totalScore = 0;
+		int stopped = 0;
+		for( int i = 0; i < scores.length; i++ )
+		{
+			totalTicks += lengths[i];
+			totalScore += scores[i];
+			if( lengths[i] >= maxTicks )
+				stopped++;
+		}
+		
+		double seconds = time / 1e9;
+		System.out.printf( "%d %s games on %d threads in %.3f s%n", scores.length, policy, threads, seconds );
+		System.out.printf( "%.1f games/s, %.0f ticks/s%n", scores.length / seconds, totalTicks / seconds );
+		if( stopped > 0 )
+			System.out.println( stopped + " games were stopped after " + maxTicks + " ticks" );
+		
+		int[] sorted = scores.clone();
+		Arrays.sort( sorted );
+		System.out.printf( "Score: mean %.1f, min %d, p50 %d, p90 %d, p99 %d, max %d%n", (double) totalScore / scores.length,
+				sorted[0], percentile( sorted, 50 ), percentile( sorted, 90 ), percentile( sorted, 99 ), sorted[sorted.length - 1] );
+		
+		printLengths();
+	}
+	
+	/**
+	 * Find the score that a percent of the games got less than or equal to
+	 * @param sorted The scores, smallest first
+	 * @param percent The percent, from 0 to 100
+	 * @return The score
+	 */
+	private static int percentile( int[] sorted, double percent )
+	{
+		int index = (int) Math.ceil( sorted.length * percent / 100 ) - 1;
+		return sorted[Math.max( 0, Math.min( index, sorted.length - 1 ) )];
+	}
+	
+	/**
+	 * Print a histogram of how many seconds of game time the games lasted
+	 */
+	private void printLengths()
+	{
+		long longest = 0;
+		for( int i = 0; i < lengths.length; i++ )
+			longest = Math.max( longest, lengths[i] );
+		
+		//Make the buckets a whole number of seconds wide
+		long bucketTicks = ( longest / HISTOGRAM_BUCKETS / tickRate + 1 ) * tickRate;
+		int[] counts = new int[HISTOGRAM_BUCKETS];
+		int most = 0;
+		for( int i = 0; i < lengths.length; i++ )
+		{
+			int b = (int) Math.min( lengths[i] / bucketTicks, HISTOGRAM_BUCKETS - 1 );
+			counts[b]++;
+			most = Math.max( most, counts[b] );
+		}
+		
+		System.out.println( "Game length:" );
+		for( int b = 0; b < HISTOGRAM_BUCKETS; b++ )
+		{
+			StringBuilder bar = new StringBuilder();
+			for( int i = 0; i < (long) counts[b] * HISTOGRAM_WIDTH / most; i++ )
+				bar.append( '#' );
+			System.out.printf( "  %5d-%-5d s %7d %s%n", b * bucketTicks / tickRate, ( b + 1 ) * bucketTicks / tickRate, counts[b], bar );
+		}
+	}
+	
+	/**
+	 * Read the options and play the games
+	 * @param args The options
+	 */
+	public static void main( String[] args )
+	{
+		int games = 1000;
+		String policy = "greedy";
+		String script = ScriptedPolicy.DEFAULT_SCRIPT;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		int tickRate = LuminesGame.TICK_RATE;
+		long maxTicks = 0;
+		int height = LuminesGame.BOARD_HEIGHT;
+		int width = LuminesGame.BOARD_WIDTH;
+		int colours = 2;
+		
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[i].equals( "--games" ) && i + 1 < args.length )
+				games = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--policy" ) && i + 1 < args.length )
+				policy = args[++i];
+			else if( args[i].equals( "--script" ) && i + 1 < args.length )
+				script = args[++i];
+			else if( args[i].equals( "--threads" ) && i + 1 < args.length )
+				threads = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--seed" ) && i + 1 < args.length )
+				seed = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--tick-rate" ) && i + 1 < args.length )
+				tickRate = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--max-ticks" ) && i + 1 < args.length )
+				maxTicks = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--width" ) && i + 1 < args.length )
+				width = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--height" ) && i + 1 < args.length )
+				height = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--colours" ) && i + 1 < args.length )
+				colours = Integer.parseInt( args[++i] );
+		}
+		
+		//Stop games after an hour of game time unless told otherwise
+		if( maxTicks <= 0 )
+			maxTicks = 3600L * tickRate;
+		
+		//Make sure the policy exists before starting
+		makePolicy( policy, script, seed );
+		
+		SelfPlay runner = new SelfPlay( games, policy, script, seed, tickRate, maxTicks, height, width );
+		runner.setColours( colours );
+		runner.run( threads );
+	}
+}
\ No newline at end of file
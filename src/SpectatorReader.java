@@ -0,0 +1,542 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a stream made by SpectatorWriter one tick at a time
+ * A stream joined part way through starts at its next keyframe
+ * A stream read from a file can also jump to any keyframe, or to any tick by starting from the keyframe before it
+ *
+ * Usage: java SpectatorReader FILE [TICK]
+ * Prints how big the stream is, and the board at TICK if it is given
+ */
+public class SpectatorReader
+{
+	//Instance variables
+	private DataInputStream in; //Where the stream comes from
+	private FileChannel channel; //The file the stream comes from, null if it isn't a file
+	private long position; //Byte in the file where the next frame starts
+	private long headerSize; //Bytes before the first frame
+	private int tickRate; //How many times a second the game ticks
+	private int height; //Height of the board
+	private int width; //Width of the board
+	private int keyframeTicks; //Ticks between keyframes
+	private byte[] frame = new byte[256]; //The frame being read
+	private boolean started = false; //Whether or not a keyframe has been read
+	
+	//Instance variables - keyframes in the file, found the first time they are needed
+	private long[] keyframeAt; //Byte in the file where each keyframe starts
+	private long[] keyframeTick; //Tick of each keyframe
+	private int keyframes = -1; //Keyframes found, -1 before the file is looked through
+	
+	//Instance variables - the game as of the last frame read
+	private byte[] cells; //Block ordinal of each cell, down each column
+	private long tick = -1; //The tick
+	private int score; //Score
+	private int row; //Row of the square
+	private int column; //Column of the square
+	private int colours; //Colours of the square
+	private int lineX; //X of the line
+	private boolean gameOver; //Whether or not the game is over
+	private boolean shown; //Whether or not the square is shown on the board
+	
+	/**
+	 * Open a stream in a file, which can jump to any keyframe
+	 * @param file Name of the file
+	 * @throws IOException If the file can't be read or isn't a stream
+	 */
+	public SpectatorReader( String file ) throws IOException
+	{
+		this( new FileInputStream( file ) );
+	}
+	
+	/**
+	 * Open a stream, such as from a socket
+	 * Only a stream from a file can jump to a keyframe, any other stream can only be read in order
+	 * @param stream Where the stream comes from
+	 * @throws IOException If the stream can't be read or isn't a spectator stream
+	 */
+	public SpectatorReader( InputStream stream ) throws IOException
+	{
+		long start = 0;
+		if( stream instanceof FileInputStream )
+		{
+			channel = ( (FileInputStream) stream ).getChannel();
+			start = channel.position();
+		}
+		in = new DataInputStream( new BufferedInputStream( stream ) );
+		
+		for( int i = 0; i < SpectatorWriter.MAGIC.length; i++ )
+			if( in.readByte() != SpectatorWriter.MAGIC[i] )
+				throw new IOException( "Not a spectator stream" );
+		
+		int version = in.readByte();
+		if( version != SpectatorWriter.VERSION )
+			throw new IOException( "Spectator stream is version " + version + " but only version " + SpectatorWriter.VERSION + " can be read" );
+		
+		tickRate = in.readInt();
+		height = in.readInt();
+		width = in.readInt();
+		keyframeTicks = in.readInt();
+		cells = new byte[height * width];
+		headerSize = start + SpectatorWriter.MAGIC.length + 1 + 4 * 4;
+		position = headerSize;
+	}
+	
+	/**
+	 * Read the next tick
+	 * A stream that was joined part way through skips ahead to its next keyframe
+	 * @return Whether or not there was another tick, false at the end of the stream
+	 * @throws IOException If the stream can't be read or doesn't make sense
+	 */
+	public boolean next() throws IOException
+	{
+		while( true )
+		{
+			int length = readFrame();
+			if( length < 0 )
+				return false;
+			
+			ByteBuffer f = ByteBuffer.wrap( frame, 0, length );
+			int flags = f.get() & 0xFF;
+			if( ( flags & SpectatorWriter.KEYFRAME ) != 0 )
+			{
+				readKeyframe( f );
+				started = true;
+			}
+			else if( started )
+				readDelta( f, flags );
+			else
+				continue;
+			
+			gameOver = ( flags & SpectatorWriter.GAME_OVER ) != 0;
+			shown = ( flags & SpectatorWriter.SHOWN ) != 0;
+			if( f.hasRemaining() )
+				throw new IOException( "Frame for tick " + tick + " has " + f.remaining() + " bytes left over" );
+			return true;
+		}
+	}
+	
+	/**
+	 * Read the next frame into the frame array
+	 * @return The length of the frame, or -1 at the end of the stream
+	 * @throws IOException If the stream can't be read
+	 */
+	private int readFrame() throws IOException
+	{
+		long length = readNumber();
+		if( length < 0 )
+			return -1;
+		if( length == 0 || length > Integer.MAX_VALUE )
+			throw new IOException( "Frame after tick " + tick + " is " + length + " bytes long" );
+		
+		if( length > frame.length )
+			frame = new byte[(int) length];
+		in.readFully( frame, 0, (int) length );
+		position += VersusProtocol.numberSize( length ) + length;
+		return (int) length;
+	}
+	
+	/**
+	 * Read a variable length number from the stream
+	 * @return The number, or -1 if the stream ended before it started
+	 * @throws IOException If the stream can't be read or ends in the middle of the number
+	 */
+	private long readNumber() throws IOException
+	{
+		int b = in.read();
+		if( b < 0 )
+			return -1;
+		
+		long n = b & 0x7F;
+		int shift = 7;
+		while( ( b & 0x80 ) != 0 )
+		{
+			b = in.readUnsignedByte();
+			n |= (long)( b & 0x7F ) << shift;
+			shift += 7;
+		}
+		
+		return n;
+	}
+	
+	/**
+	 * Read a frame with the whole game
+	 * @param f The frame, after its flags
+	 */
+	private void readKeyframe( ByteBuffer f )
+	{
+		tick = VersusProtocol.getNumber( f );
+		score = (int) VersusProtocol.getNumber( f );
+		row = (int) VersusProtocol.getNumber( f ) - 2;
+		column = (int) VersusProtocol.getNumber( f );
+		colours = f.get();
+		lineX = (int) VersusProtocol.getNumber( f );
+		getCells( f, cells, 0, cells.length );
+	}
+	
+	/**
+	 * Read a frame with what changed since the last tick
+	 * @param f The frame, after its flags
+	 * @param flags The flags of the frame
+	 * @throws IOException If the frame has cells off the board
+	 */
+	private void readDelta( ByteBuffer f, int flags ) throws IOException
+	{
+		tick++;
+		
+		if( ( flags & SpectatorWriter.SCORE ) != 0 )
+			score = (int) VersusProtocol.getNumber( f );
+		
+		if( ( flags & SpectatorWriter.POSITION ) != 0 )
+		{
+			row = (int) VersusProtocol.getNumber( f ) - 2;
+			column = (int) VersusProtocol.getNumber( f );
+		}
+		
+		if( ( flags & SpectatorWriter.COLOURS ) != 0 )
+			colours = f.get();
+		
+		if( ( flags & SpectatorWriter.LINE ) != 0 )
+		{
+			int move = (int) VersusProtocol.getNumber( f );
+			lineX += ( move >>> 1 ) ^ -( move & 1 );
+		}
+		
+		if( ( flags & SpectatorWriter.CELLS ) != 0 )
+		{
+			long runs = VersusProtocol.getNumber( f );
+			long cell = 0;
+			for( long r = 0; r < runs; r++ )
+			{
+				cell += VersusProtocol.getNumber( f );
+				long count = VersusProtocol.getNumber( f );
+				if( cell < 0 || count < 0 || cell + count > cells.length )
+					throw new IOException( "Frame for tick " + tick + " has cells off the board" );
+				
+				getCells( f, cells, (int) cell, (int) count );
+				cell += count;
+			}
+		}
+	}
+	
+	/**
+	 * Unpack cells packed by SpectatorWriter.putCells()
+	 * @param buffer Where to read them from
+	 * @param to Where to put the Block ordinal of each cell
+	 * @param start First cell to unpack
+	 * @param count Number of cells to unpack
+	 */
+	public static void getCells( ByteBuffer buffer, byte[] to, int start, int count )
+	{
+		int bits = 0;
+		int have = 0;
+		for( int i = start; i < start + count; i++ )
+		{
+			if( have < 3 )
+			{
+				bits |= ( buffer.get() & 0xFF ) << have;
+				have += 8;
+			}
+			to[i] = (byte)( bits & 7 );
+			bits >>>= 3;
+			have -= 3;
+		}
+	}
+	
+	/**
+	 * Look through the file for its keyframes, the first time they are needed
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 */
+	private void findKeyframes() throws IOException
+	{
+		if( keyframes >= 0 )
+			return;
+		if( channel == null )
+			throw new IOException( "Only a stream from a file can jump to a keyframe" );
+		
+		//Only the length and start of each frame is read, the rest is skipped
+		long resume = position;
+		keyframes = 0;
+		keyframeAt = new long[16];
+		keyframeTick = new long[16];
+		moveTo( headerSize );
+		
+		long length;
+		while( ( length = readNumber() ) > 0 )
+		{
+			long at = position;
+			position += VersusProtocol.numberSize( length ) + length;
+			
+			int flags = in.readUnsignedByte();
+			length--;
+			if( ( flags & SpectatorWriter.KEYFRAME ) != 0 )
+			{
+				if( keyframes == keyframeAt.length )
+				{
+					keyframeAt = Arrays.copyOf( keyframeAt, keyframes * 2 );
+					keyframeTick = Arrays.copyOf( keyframeTick, keyframes * 2 );
+				}
+				
+				long t = readNumber();
+				keyframeAt[keyframes] = at;
+				keyframeTick[keyframes] = t;
+				keyframes++;
+				length -= VersusProtocol.numberSize( t );
+			}
+			
+			while( length > 0 )
+			{
+				int skipped = in.skipBytes( (int) Math.min( length, Integer.MAX_VALUE ) );
+				if( skipped <= 0 )
+					throw new IOException( "Stream ends in the middle of the frame after keyframe " + keyframes );
+				length -= skipped;
+			}
+		}
+		
+		moveTo( resume );
+	}
+	
+	/**
+	 * Carry on reading from a byte in the file
+	 * @param at The byte
+	 * @throws IOException If the file can't be read
+	 */
+	private void moveTo( long at ) throws IOException
+	{
+		channel.position( at );
+		in = new DataInputStream( new BufferedInputStream( Channels.newInputStream( channel ) ) );
+		position = at;
+	}
+	
+	/**
+	 * Jump to a keyframe, so the next call to next() reads it
+	 * @param n Which keyframe, from 0
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 * @throws IndexOutOfBoundsException If the file doesn't have that keyframe
+	 */
+	public void seekKeyframe( int n ) throws IOException
+	{
+		checkKeyframe( n );
+		moveTo( keyframeAt[n] );
+		started = false;
+	}
+	
+	/**
+	 * Jump to a tick by reading from the keyframe before it
+	 * @param t The tick
+	 * @return False if the stream ends before the tick, or has no frames at all
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 */
+	public boolean seek( long t ) throws IOException
+	{
+		findKeyframes();
+		if( keyframes == 0 )
+			return false;
+		
+		//Binary search for the last keyframe at or before the tick
+		int low = 0;
+		int high = keyframes - 1;
+		while( low < high )
+		{
+			int mid = ( low + high + 1 ) >>> 1;
+			if( keyframeTick[mid] <= t )
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		
+		seekKeyframe( low );
+		while( next() )
+			if( tick >= t )
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * @return The number of keyframes in the file
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 */
+	public int getKeyframes() throws IOException
+	{
+		findKeyframes();
+		return keyframes;
+	}
+	
+	/**
+	 * @param n Which keyframe, from 0
+	 * @return The tick of the keyframe
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 * @throws IndexOutOfBoundsException If the file doesn't have that keyframe
+	 */
+	public long getKeyframeTick( int n ) throws IOException
+	{
+		checkKeyframe( n );
+		return keyframeTick[n];
+	}
+	
+	/**
+	 * Find the keyframes and make sure the file has a keyframe
+	 * The arrays are bigger than the number of keyframes, so past the end they hold zeros instead of throwing
+	 * @param n Which keyframe, from 0
+	 * @throws IOException If the stream isn't from a file or the file can't be read
+	 * @throws IndexOutOfBoundsException If the file doesn't have that keyframe
+	 */
+	private void checkKeyframe( int n ) throws IOException
+	{
+		findKeyframes();
+		if( n < 0 || n >= keyframes )
+			throw new IndexOutOfBoundsException( "Keyframe " + n + " of " + keyframes + " keyframes" );
+	}
+	
+	/**
+	 * @param r Row of the cell
+	 * @param c Column of the cell
+	 * @return The block in the cell, the same as Board.getPiece() including the square
+	 */
+	public Block getPiece( int r, int c )
+	{
+		if( shown && r >= row && r <= row + 1 && c >= column && c <= column + 1 )
+			return getSquareBlock( r - row, c - column );
+		
+		return Block.values()[cells[c * height + r]];
+	}
+	
+	/**
+	 * @param i Row in the square, 0 or 1
+	 * @param j Column in the square, 0 or 1
+	 * @return The block in the square
+	 */
+	public Block getSquareBlock( int i, int j )
+	{
+		return ( colours & ( 1 << ( i * 2 + j ) ) ) != 0 ? Block.COLOUR_TWO : Block.COLOUR_ONE;
+	}
+	
+	/**
+	 * @return The tick that was read last, from 0
+	 */
+	public long getTick()
+	{
+		return tick;
+	}
+	
+	/**
+	 * @return The score
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * @return The row of the top left block of the square
+	 */
+	public int getSquareRow()
+	{
+		return row;
+	}
+	
+	/**
+	 * @return The column of the top left block of the square
+	 */
+	public int getSquareColumn()
+	{
+		return column;
+	}
+	
+	/**
+	 * @return The x of the line, in pixels
+	 */
+	public int getLineX()
+	{
+		return lineX;
+	}
+	
+	/**
+	 * @return Whether or not the game is over
+	 */
+	public boolean isGameOver()
+	{
+		return gameOver;
+	}
+	
+	/**
+	 * @return How many times a second the game ticks
+	 */
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+	
+	/**
+	 * @return Height of the board
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	/**
+	 * @return Width of the board
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * @return Ticks between keyframes
+	 */
+	public int getKeyframeTicks()
+	{
+		return keyframeTicks;
+	}
+	
+	/**
+	 * Print how big a stream is, and the board at a tick
+	 * @param args The name of the stream and the tick
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		SpectatorReader reader = new SpectatorReader( args[0] );
+		long bytes = new File( args[0] ).length();
+		
+		long ticks = 0;
+		long start = System.nanoTime();
+		while( reader.next() )
+			ticks++;
+		long time = System.nanoTime() - start;
+		
+		System.out.printf( "%d ticks, %d keyframes, %d bytes (%.2f bytes per tick)%n", ticks, reader.getKeyframes(), bytes,
+				ticks == 0 ? 0.0 : bytes / (double) ticks );
+		System.out.printf( "Read in %.3f s (%.0f ticks/s)%n", time / 1e9, ticks * 1e9 / time );
+		
+		if( args.length > 1 )
+		{
+			long t = Long.parseLong( args[1] );
+			if( !reader.seek( t ) )
+			{
+				System.out.println( "The stream ends before tick " + t );
+				return;
+			}
+			
+			System.out.println( "Tick " + reader.getTick() + ": score " + reader.getScore() + ", square at row " + reader.getSquareRow()
+					+ " column " + reader.getSquareColumn() + ", line at " + reader.getLineX() + ( reader.isGameOver() ? ", game over" : "" ) );
+			for( int i = 0; i < reader.getHeight(); i++ )
+			{
+				StringBuilder line = new StringBuilder();
+				for( int j = 0; j < reader.getWidth(); j++ )
+					line.append( ".abABxX".charAt( reader.getPiece( i, j ).ordinal() ) );
+				System.out.println( line );
+			}
+		}
+	}
+}
\ No newline at end of file
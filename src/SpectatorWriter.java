@@ -0,0 +1,403 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes what a game looks like on every tick, so it can be watched live or later
+ * Most ticks only write what changed since the last tick, which is usually a few bytes
+ * Every so often the whole game is written, so a watcher can start from there without the ticks before it
+ *
+ * File format:
+ * The letters LSPC, a version byte, then the tick rate, height, width and ticks between whole games as ints
+ * Then one frame for each tick: its length as a variable length number, a flags byte and what the flags say comes next
+ * A keyframe has the KEYFRAME flag and holds the tick, score, the square's row + 2, column and colours, the line's x and every cell
+ * Any other frame holds the score if SCORE is set, the row + 2 and column if POSITION is set, the colours if COLOURS is set,
+ * how far the line moved if LINE is set and the cells that changed if CELLS is set
+ * GAME_OVER is set on every frame where the game is over, and SHOWN on every frame where the square is shown on the board
+ * The blocks of the square are never written as cells, so a square moving only costs its new position
+ *
+ * The colours of the square are 4 bits, bit row * 2 + column set for each block that is colour two, so they also show how it was rotated
+ * Cells go down each column from the left column to the right one, and are packed 3 bits each as their Block ordinal, lowest bits first
+ * So only games with two colours can be streamed
+ * Changed cells are a count of runs, then for each run the cells skipped since the last run, the cells in the run and the packed cells
+ * How far the line moved is zigzag coded, so going back to the start is still small
+ * Numbers are written 7 bits at a time, lowest bits first, with the top bit set on every byte but the last, the same as InputRecorder
+ */
+public class SpectatorWriter
+{
+	//Constants
+	public static final byte[] MAGIC = { 'L', 'S', 'P', 'C' }; //Start of every stream
+	public static final int VERSION = 1; //Version of the format
+	public static final int KEYFRAME_SECONDS = 5; //Seconds between keyframes unless told otherwise
+	public static final int KEYFRAME = 1; //The frame holds the whole game
+	public static final int SCORE = 2; //The score changed
+	public static final int POSITION = 4; //The square moved
+	public static final int COLOURS = 8; //The square rotated or a new square came
+	public static final int LINE = 16; //The line moved
+	public static final int CELLS = 32; //Cells of the board changed
+	public static final int GAME_OVER = 64; //The game is over
+	public static final int SHOWN = 128; //The square is shown on the board
+	private static final int RUN_GAP = 3; //Unchanged cells in a row that end a run, fewer are cheaper to send than to skip
+	
+	//Instance variables
+	private DataOutputStream out; //Where the stream goes
+	private int height; //Height of the board
+	private int width; //Width of the board
+	private int keyframeTicks; //Ticks between keyframes
+	private ByteBuffer frame; //The frame being made
+	private ByteBuffer length = ByteBuffer.allocate( 8 ); //Length of the frame being made
+	private byte[] cells; //Block ordinal of each cell, down each column, as of the last frame
+	private boolean needKeyframe = true; //Whether or not the next frame has to be a keyframe
+	private long sinceKeyframe = 0; //Ticks since the last keyframe
+	
+	//Instance variables - the game as of the last frame
+	private long tick = -1; //Ticks written, minus one
+	private int score; //Score
+	private int row; //Row of the square
+	private int column; //Column of the square
+	private int colours; //Colours of the square
+	private int lineX; //X of the line
+	
+	//Instance variables - numbers about the stream
+	private long bytes = 0; //Bytes written
+	private long keyframes = 0; //Keyframes written
+	
+	/**
+	 * Start a stream in a file
+	 * @param file Name of the file
+	 * @param tickRate How many times a second the game ticks
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 * @param interval Ticks between keyframes
+	 * @throws IOException If the file can't be written
+	 */
+	public SpectatorWriter( String file, int tickRate, int h, int w, int interval ) throws IOException
+	{
+		this( new BufferedOutputStream( new FileOutputStream( file ) ), tickRate, h, w, interval );
+	}
+	
+	/**
+	 * Start a stream
+	 * @param stream Where the stream goes, such as a socket
+	 * @param tickRate How many times a second the game ticks
+	 * @param h Height of the board
+	 * @param w Width of the board
+	 * @param interval Ticks between keyframes
+	 * @throws IOException If the stream can't be written
+	 */
+	public SpectatorWriter( OutputStream stream, int tickRate, int h, int w, int interval ) throws IOException
+	{
+		height = h;
+		width = w;
+		keyframeTicks = Math.max( interval, 1 );
+		cells = new byte[h * w];
+		
+		//Big enough for a frame where every cell is a run of its own
+		frame = ByteBuffer.allocate( 64 + h * w * 8 );
+		
+		out = new DataOutputStream( stream );
+		out.write( MAGIC );
+		out.writeByte( VERSION );
+		out.writeInt( tickRate );
+		out.writeInt( h );
+		out.writeInt( w );
+		out.writeInt( keyframeTicks );
+		bytes = out.size();
+	}
+	
+	/**
+	 * Write the game as it is on this tick
+	 * @param game The game, which has to have the same size of board as the stream
+	 * @throws IOException If the stream can't be written
+	 */
+	public void write( LuminesGame game ) throws IOException
+	{
+		tick++;
+		sinceKeyframe++;
+		if( needKeyframe || sinceKeyframe >= keyframeTicks )
+			writeKeyframe( game );
+		else
+		{
+			writeDelta( game );
+			
+			//A frame bigger than the whole game isn't worth it
+			if( frame.position() > 16 + ( height * width * 3 + 7 ) / 8 )
+				writeKeyframe( game );
+		}
+		
+		length.clear();
+		VersusProtocol.putNumber( length, frame.position() );
+		out.write( length.array(), 0, length.position() );
+		out.write( frame.array(), 0, frame.position() );
+		bytes += length.position() + frame.position();
+	}
+	
+	/**
+	 * Make a frame with the whole game
+	 * @param game The game
+	 */
+	private void writeKeyframe( LuminesGame game )
+	{
+		Square s = game.getCurrentSquare();
+		score = game.getScore();
+		row = s.getRow();
+		column = s.getColumn();
+		colours = VersusProtocol.packSquare( s );
+		lineX = game.getLine().getX();
+		
+		frame.clear();
+		frame.put( (byte)( KEYFRAME | getState( game ) ) );
+		VersusProtocol.putNumber( frame, tick );
+		VersusProtocol.putNumber( frame, score );
+		VersusProtocol.putNumber( frame, row + 2 );
+		VersusProtocol.putNumber( frame, column );
+		frame.put( (byte) colours );
+		VersusProtocol.putNumber( frame, lineX );
+		
+		Board board = game.getBoard();
+		for( int j = 0; j < width; j++ )
+			for( int i = 0; i < height; i++ )
+				cells[j * height + i] = getCell( board, i, j );
+		putCells( frame, cells, 0, cells.length );
+		
+		needKeyframe = false;
+		sinceKeyframe = 0;
+		keyframes++;
+	}
+	
+	/**
+	 * Make a frame with what changed since the last frame
+	 * @param game The game
+	 */
+	private void writeDelta( LuminesGame game )
+	{
+		Square s = game.getCurrentSquare();
+		int flags = getState( game );
+		
+		frame.clear();
+		frame.put( (byte) 0 );
+		
+		if( game.getScore() != score )
+		{
+			score = game.getScore();
+			VersusProtocol.putNumber( frame, score );
+			flags |= SCORE;
+		}
+		
+		if( s.getRow() != row || s.getColumn() != column )
+		{
+			row = s.getRow();
+			column = s.getColumn();
+			VersusProtocol.putNumber( frame, row + 2 );
+			VersusProtocol.putNumber( frame, column );
+			flags |= POSITION;
+		}
+		
+		int c = VersusProtocol.packSquare( s );
+		if( c != colours )
+		{
+			colours = c;
+			frame.put( (byte) colours );
+			flags |= COLOURS;
+		}
+		
+		int x = game.getLine().getX();
+		if( x != lineX )
+		{
+			int move = x - lineX;
+			VersusProtocol.putNumber( frame, ( move << 1 ) ^ ( move >> 31 ) );
+			lineX = x;
+			flags |= LINE;
+		}
+		
+		if( putChanges( game.getBoard() ) )
+			flags |= CELLS;
+		
+		frame.put( 0, (byte) flags );
+	}
+	
+	/**
+	 * Find the flags that are set on every frame where they are true
+	 * @param game The game
+	 * @return GAME_OVER and SHOWN, if they are true
+	 */
+	private int getState( LuminesGame game )
+	{
+		int flags = game.isGameOver() ? GAME_OVER : 0;
+		Square s = game.getCurrentSquare();
+		
+		//The square is shown as blocks that aren't fixed, and no other blocks are like that
+		if( s.getRow() >= 0 && s.getRow() < height )
+		{
+			Block b = game.getBoard().getPiece( s.getRow(), s.getColumn() );
+			if( b != Block.EMPTY && !b.isFixed() )
+				flags |= SHOWN;
+		}
+		
+		return flags;
+	}
+	
+	/**
+	 * Find what to write for a cell, which is empty where the square is shown
+	 * @param board The board
+	 * @param row Row of the cell
+	 * @param column Column of the cell
+	 * @return The Block ordinal of the cell
+	 */
+	private static byte getCell( Board board, int row, int column )
+	{
+		Block b = board.getPiece( row, column );
+		if( b == Block.COLOUR_ONE || b == Block.COLOUR_TWO )
+			return (byte) Block.EMPTY.ordinal();
+		
+		return (byte) b.ordinal();
+	}
+	
+	/**
+	 * Put the runs of cells that changed into the frame, and remember the new cells
+	 * @param board The board
+	 * @return False if nothing changed, in which case nothing is put in the frame
+	 */
+	private boolean putChanges( Board board )
+	{
+		//The count of runs isn't known until the end, so it is put in front of them afterwards
+		int countAt = frame.position();
+		int runs = 0;
+		int last = 0; //Cell after the end of the last run
+		int start = -1; //First cell of the current run, -1 if there isn't one
+		int end = 0; //Cell after the last changed cell of the current run
+		
+		for( int j = 0; j < width; j++ )
+		{
+			for( int i = 0; i < height; i++ )
+			{
+				int cell = j * height + i;
+				byte b = getCell( board, i, j );
+				if( b == cells[cell] )
+					continue;
+				
+				cells[cell] = b;
+				if( start >= 0 && cell - end >= RUN_GAP )
+				{
+					putRun( start, end, last );
+					runs++;
+					last = end;
+					start = -1;
+				}
+				if( start < 0 )
+					start = cell;
+				end = cell + 1;
+			}
+		}
+		
+		if( start >= 0 )
+		{
+			putRun( start, end, last );
+			runs++;
+		}
+		if( runs == 0 )
+			return false;
+		
+		//Move the runs along to make room for their count
+		int size = VersusProtocol.numberSize( runs );
+		int runsEnd = frame.position();
+		byte[] array = frame.array();
+		System.arraycopy( array, countAt, array, countAt + size, runsEnd - countAt );
+		frame.position( countAt );
+		VersusProtocol.putNumber( frame, runs );
+		frame.position( runsEnd + size );
+		return true;
+	}
+	
+	/**
+	 * Put one run of cells into the frame
+	 * @param start First cell of the run
+	 * @param end Cell after the end of the run
+	 * @param last Cell after the end of the last run
+	 */
+	private void putRun( int start, int end, int last )
+	{
+		VersusProtocol.putNumber( frame, start - last );
+		VersusProtocol.putNumber( frame, end - start );
+		putCells( frame, cells, start, end - start );
+	}
+	
+	/**
+	 * Pack cells into 3 bits each
+	 * @param buffer Where to put them
+	 * @param from Block ordinal of each cell
+	 * @param start First cell to pack
+	 * @param count Number of cells to pack
+	 */
+	public static void putCells( ByteBuffer buffer, byte[] from, int start, int count )
+	{
+		int bits = 0;
+		int used = 0;
+		for( int i = start; i < start + count; i++ )
+		{
+			bits |= from[i] << used;
+			used += 3;
+			if( used >= 8 )
+			{
+				buffer.put( (byte) bits );
+				bits >>>= 8;
+				used -= 8;
+			}
+		}
+		if( used > 0 )
+			buffer.put( (byte) bits );
+	}
+	
+	/**
+	 * Make the next frame a keyframe, such as when a new watcher joins
+	 */
+	public void requestKeyframe()
+	{
+		needKeyframe = true;
+	}
+	
+	/**
+	 * Send everything written so far
+	 * @throws IOException If the stream can't be written
+	 */
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+	
+	/**
+	 * Finish the stream
+	 * @throws IOException If the stream can't be written
+	 */
+	public void close() throws IOException
+	{
+		out.close();
+	}
+	
+	/**
+	 * @return The number of ticks written
+	 */
+	public long getTicks()
+	{
+		return tick + 1;
+	}
+	
+	/**
+	 * @return The number of bytes written, including the start of the stream
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+	
+	/**
+	 * @return The number of keyframes written
+	 */
+	public long getKeyframes()
+	{
+		return keyframes;
+	}
+}
\ No newline at end of file
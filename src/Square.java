@@ -1,57 +1,64 @@
-import java.util.Random;
+import java.nio.ByteBuffer;
 
 /**
  * Square
  * 2x2 Square of blocks
+ * The colours are kept in one int, 4 bits for each block, so a square never needs any objects of its own
+ * and the same square can be used again for the next one once it has landed
  */
 public class Square
 {
-	private Block[][] blocks = new Block[2][2]; //What blocks are in the square
+	public static final int STATE_SIZE = 24; //Bytes saveState() writes
+	
+	private int colours; //Colour of each block, the block at row and column in the 4 bits from ( row * 2 + column ) * 4
 	private int row; //The row of the top left block of the square
 	private int column; //The column of the top left block of the square
 	private int movingDown; //Number of frames since the piece was moved down
 	private long lastRotate = 0; //Time when the piece was last rotated
 	
 	/**
-	 * Default constructor to create a new square of blocks
+	 * Constructor to create a new square of blocks
+	 * @param source Where the colours of the blocks come from
+	 * @param boardWidth Width of the board the square falls onto
 	 */
-	public Square()
+	public Square( PieceSource source, int boardWidth )
+	{
+		reset( source, boardWidth );
+	}
+	
+	/**
+	 * Turn the square into a new one at the top of the board
+	 * @param source Where the colours of the blocks come from
+	 * @param boardWidth Width of the board the square falls onto
+	 */
+	public void reset( PieceSource source, int boardWidth )
 	{
-		Random rnd = new Random();
-		
 		//Create a random arrangement of blocks
-		for( int i = 0; i < 2; i++ )
-			for( int j = 0; j < 2; j++ )
-				blocks[i][j] = Block.values()[ rnd.nextInt(2) + 1 ];
+		colours = source.nextColours();
 		
 		//Set the position to the middle of the board
-		column = 8;
+		column = boardWidth / 2;
+		if( column > boardWidth - 2 )
+			column = boardWidth - 2;
 		row = -2;
 		movingDown = 0;
+		lastRotate = 0;
 	}
 	
 	/**
-	 * Rotate the blocks in the 
+	 * Rotate the blocks in the square clockwise
+	 * The top left block moves to the top right, the top right to the bottom right and so on
+	 * How often the square can rotate is up to the game, which uses AutoRepeat or the time of the last rotation
+	 * @param time The current time in milliseconds
 	 */
-	public void rotate()
+	public void rotate( long time )
 	{
-		//If enough time has passed since last rotation then
-		if( System.currentTimeMillis() - lastRotate > 100 )
-		{
-			//Perform a clockwise rottation of the blocks
-			Block[][] tempBlocks = new Block[2][2];
-			for( int i = 0; i < 2; i++ )
-				for( int j = 0; j < 2; j++ )
-					tempBlocks[i][j] = blocks[i][j];
-			
-			//Rotate clockwise
-			blocks[0][1] = tempBlocks[0][0];
-			blocks[1][1] = tempBlocks[0][1];
-			blocks[1][0] = tempBlocks[1][1];
-			blocks[0][0] = tempBlocks[1][0];
-			
-			lastRotate = System.currentTimeMillis();
-		}
+		int topLeft = colours & 15;
+		int topRight = colours >>> 4 & 15;
+		int bottomLeft = colours >>> 8 & 15;
+		int bottomRight = colours >>> 12 & 15;
+		colours = bottomLeft | topLeft << 4 | bottomRight << 8 | topRight << 12;
+		lastRotate = time;
 	}
 	
 	/**
@@ -85,23 +92,88 @@ public class Square
 	{
 		column++;
 	}
-
+	
 	/**
-	 * @return The blocks
+	 * Write the blocks, the position and the timers to a buffer
+	 * @param buffer Where to write them, with at least STATE_SIZE bytes left
+	 * @param now The current time, so the time of the last rotation is kept as how long ago it was
 	 */
-	public Block[][] getBlocks()
+	public void saveState( ByteBuffer buffer, long now )
 	{
-		return blocks;
+		for( int i = 0; i < 2; i++ )
+			for( int j = 0; j < 2; j++ )
+				buffer.put( (byte) getColour( i, j ) );
+		buffer.putInt( row );
+		buffer.putInt( column );
+		buffer.putInt( movingDown );
+		buffer.putLong( now - lastRotate );
 	}
-
+	
 	/**
-	 * @param Blocks the blocks to set
+	 * Read what saveState() wrote
+	 * @param buffer Where to read it from
+	 * @param now The current time
 	 */
-	public void setBlocks(Block[][] blocks)
+	public void loadState( ByteBuffer buffer, long now )
 	{
-		this.blocks = blocks;
+		colours = 0;
+		for( int i = 0; i < 2; i++ )
+			for( int j = 0; j < 2; j++ )
+				colours |= ( buffer.get() & Cell.COLOUR_MASK ) << ( ( i * 2 + j ) * 4 );
+		row = buffer.getInt();
+		column = buffer.getInt();
+		movingDown = buffer.getInt();
+		lastRotate = now - buffer.getLong();
 	}
-
+	
+	/**
+	 * @param row Row of the block in the square, 0 or 1
+	 * @param column Column of the block in the square, 0 or 1
+	 * @return The colour of the block, from 1 to the number of colours
+	 */
+	public int getColour( int row, int column )
+	{
+		return colours >>> ( ( row * 2 + column ) * 4 ) & 15;
+	}
+	
+	/**
+	 * A block of a square that hasn't landed is just its colour
+	 * @param row Row of the block in the square, 0 or 1
+	 * @param column Column of the block in the square, 0 or 1
+	 * @return The block as a cell, see Cell
+	 */
+	public int getCell( int row, int column )
+	{
+		return getColour( row, column );
+	}
+	
+	/**
+	 * @param row Row of the block in the square, 0 or 1
+	 * @param column Column of the block in the square, 0 or 1
+	 * @return The block, colour one or colour two
+	 * @throws IllegalArgumentException If the block is a colour past the first two
+	 */
+	public Block getBlock( int row, int column )
+	{
+		return Block.of( getCell( row, column ) );
+	}
+	
+	/**
+	 * @return The colours of the blocks, the block at row and column in the 4 bits from ( row * 2 + column ) * 4
+	 */
+	public int getColours()
+	{
+		return colours;
+	}
+	
+	/**
+	 * @param colours The colours to set, the block at row and column in the 4 bits from ( row * 2 + column ) * 4
+	 */
+	public void setColours( int colours )
+	{
+		this.colours = colours & 0xFFFF;
+	}
+	
 	/**
 	 * @return the row
 	 */
@@ -109,7 +181,7 @@ public class Square
 	{
 		return row;
 	}
-
+	
 	/**
 	 * @param row the row to set
 	 */
@@ -117,7 +189,7 @@ public class Square
 	{
 		this.row = row;
 	}
-
+	
 	/**
 	 * @return the column
 	 */
@@ -125,7 +197,7 @@ public class Square
 	{
 		return column;
 	}
-
+	
 	/**
 	 * @param column the column to set
 	 */
@@ -133,7 +205,7 @@ public class Square
 	{
 		this.column = column;
 	}
-
+	
 	/**
 	 * @return the movingDown
 	 */
@@ -141,7 +213,7 @@ public class Square
 	{
 		return movingDown;
 	}
-
+	
 	/**
 	 * @return the lastRotate
 	 */
@@ -0,0 +1,21 @@
+/**
+ * Clock that uses the real time of the computer
+ */
+public class SystemClock implements GameClock
+{
+	/**
+	 * Get the current time
+	 * @return The current time in milliseconds
+	 */
+	public long getTime()
+	{
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * The real time moves on its own
+	 */
+	public void tick()
+	{
+	}
+}
\ No newline at end of file
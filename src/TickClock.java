@@ -0,0 +1,52 @@
+/**
+ * Clock that only moves forward when the game ticks
+ * Makes the game run the same way every time, no matter how fast it is run
+ */
+public class TickClock implements GameClock
+{
+	private long ticks = 0; //Number of ticks so far
+	private int tickRate; //Ticks in one second
+	
+	/**
+	 * Constructor
+	 * @param rate How many ticks make up one second
+	 */
+	public TickClock( int rate )
+	{
+		tickRate = rate;
+	}
+	
+	/**
+	 * Get the current time
+	 * @return The time in milliseconds since the clock was made
+	 */
+	public long getTime()
+	{
+		return ticks * 1000 / tickRate;
+	}
+	
+	/**
+	 * Move the clock forward one tick
+	 */
+	public void tick()
+	{
+		ticks++;
+	}
+	
+	/**
+	 * @return The number of ticks so far
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+	
+	/**
+	 * Carry on from a number of ticks, such as when a saved game is loaded
+	 * @param t The number of ticks
+	 */
+	public void setTicks( long t )
+	{
+		ticks = t;
+	}
+}
\ No newline at end of file
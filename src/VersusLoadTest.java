@@ -0,0 +1,381 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Connects lots of made up players to a VersusServer to see how it copes
+ * Every player presses random keys each tick and keeps a copy of both boards from the frames it is sent
+ * All of the players share one thread and one Selector, the same as the server
+ *
+ * Usage: java VersusLoadTest [--host H] [--port N] [--clients N] [--seconds N] [--tick-rate N] [--seed N] [--local]
+ * --local starts a server in this program on a free port, so nothing else has to be running
+ */
+public class VersusLoadTest
+{
+	//Constants
+	private static final int INPUT_SIZE = 4096; //Bytes of frames from the server that can be read at once
+	
+	//Instance variables
+	private Selector selector; //Finds the connections that can be read or written
+	private Client[] clients; //The made up players
+	private Random random; //Where the random keys come from
+	private ByteBuffer input = ByteBuffer.allocate( VersusProtocol.INPUT_SIZE ); //Input frame being sent
+	
+	//Instance variables - numbers for the report
+	private int connected = 0; //Clients that connected
+	private int failed = 0; //Clients that couldn't connect or were disconnected
+	private long frames = 0; //Frames read
+	private long states = 0; //STATE frames read
+	private long stateBytes = 0; //Bytes in the STATE frames
+	private long ends = 0; //END frames read
+	private long bytesRead = 0; //Bytes read
+	private long errors = 0; //Frames that didn't make sense
+	
+	/**
+	 * One made up player
+	 */
+	private class Client
+	{
+		private SocketChannel channel; //The connection
+		private ByteBuffer in = ByteBuffer.allocate( INPUT_SIZE ); //Bytes read that haven't been used yet
+		private byte[] frame = new byte[INPUT_SIZE]; //A whole frame, which can be bigger than what is read at once
+		private boolean connected = false; //Whether or not the connection is made
+		private boolean closed = false; //Whether or not the connection was closed
+		private int keys = 0; //Keys held down
+		private int height; //Height of the boards
+		private int width; //Width of the boards
+		private byte[][] boards; //Block ordinal of each cell of each board, null before the first START
+	}
+	
+	/**
+	 * Constructor
+	 * @param count Number of players
+	 * @param seed Seed for the random keys
+	 */
+	public VersusLoadTest( int count, long seed ) throws IOException
+	{
+		selector = Selector.open();
+		clients = new Client[count];
+		random = new Random( seed );
+	}
+	
+	/**
+	 * Connect every player, then play for a while
+	 * @param address Where the server is
+	 * @param seconds How long to play for
+	 * @param tickRate How many times a second each player sends its keys
+	 */
+	public void run( InetSocketAddress address, int seconds, int tickRate ) throws IOException
+	{
+		for( int i = 0; i < clients.length; i++ )
+		{
+			Client c = new Client();
+			clients[i] = c;
+			try
+			{
+				c.channel = SocketChannel.open();
+				c.channel.configureBlocking( false );
+				c.channel.socket().setTcpNoDelay( true );
+				if( c.channel.connect( address ) )
+					connected( c );
+				else
+					c.channel.register( selector, SelectionKey.OP_CONNECT, c );
+			}
+			catch( IOException e )
+			{
+				close( c );
+			}
+		}
+		
+		long tickLength = 1000000000L / tickRate;
+		long start = System.nanoTime();
+		long end = start + seconds * 1000000000L;
+		long nextTick = start;
+		
+		while( System.nanoTime() - end < 0 )
+		{
+			long wait = nextTick - System.nanoTime();
+			if( wait > 0 )
+				selector.select( Math.max( wait / 1000000, 1 ) );
+			else
+				selector.selectNow();
+			
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while( keys.hasNext() )
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				Client c = (Client) key.attachment();
+				
+				if( key.isValid() && key.isConnectable() )
+				{
+					try
+					{
+						c.channel.finishConnect();
+						connected( c );
+					}
+					catch( IOException e )
+					{
+						close( c );
+					}
+				}
+				if( key.isValid() && key.isReadable() )
+					read( c );
+			}
+			
+			if( System.nanoTime() - nextTick >= 0 )
+			{
+				for( int i = 0; i < clients.length; i++ )
+					sendKeys( clients[i] );
+				nextTick += tickLength;
+			}
+		}
+		
+		double time = ( System.nanoTime() - start ) / 1e9;
+		System.out.printf( "%d clients connected, %d failed%n", connected, failed );
+		System.out.printf( "%.0f frames/s, %d states, %d matches ended%n", frames / time, states, ends / 2 );
+		System.out.printf( "%.1f KB/s read, %.1f bytes per state, %d bad frames%n",
+				bytesRead / 1024.0 / time, states == 0 ? 0.0 : stateBytes / (double) states, errors );
+		
+		for( int i = 0; i < clients.length; i++ )
+			if( clients[i].channel != null )
+				clients[i].channel.close();
+		selector.close();
+	}
+	
+	/**
+	 * Start reading from a player's connection once it is made
+	 * @param c The player
+	 */
+	private void connected( Client c ) throws IOException
+	{
+		c.connected = true;
+		connected++;
+		c.channel.register( selector, SelectionKey.OP_READ, c );
+	}
+	
+	/**
+	 * Close a player's connection
+	 * @param c The player
+	 */
+	private void close( Client c )
+	{
+		if( c.closed )
+			return;
+		
+		c.closed = true;
+		failed++;
+		try
+		{
+			if( c.channel != null )
+				c.channel.close();
+		}
+		catch( IOException e )
+		{
+		}
+	}
+	
+	/**
+	 * Send a player's keys, which change now and then like a person's would
+	 * @param c The player
+	 */
+	private void sendKeys( Client c )
+	{
+		if( !c.connected || c.closed )
+			return;
+		
+		if( random.nextInt( 6 ) == 0 )
+			c.keys = random.nextInt( 16 );
+		int taps = random.nextInt( 8 ) == 0 ? 1 << random.nextInt( 4 ) : 0;
+		
+		input.clear();
+		input.put( (byte) VersusProtocol.INPUT );
+		input.put( (byte)( c.keys | taps << 4 ) );
+		input.flip();
+		try
+		{
+			c.channel.write( input );
+		}
+		catch( IOException e )
+		{
+			close( c );
+		}
+	}
+	
+	/**
+	 * Read every whole frame the server sent a player
+	 * @param c The player
+	 */
+	private void read( Client c )
+	{
+		try
+		{
+			int n = c.channel.read( c.in );
+			if( n < 0 )
+			{
+				close( c );
+				return;
+			}
+			bytesRead += n;
+		}
+		catch( IOException e )
+		{
+			close( c );
+			return;
+		}
+		
+		c.in.flip();
+		while( true )
+		{
+			int start = c.in.position();
+			long length = VersusProtocol.getNumber( c.in );
+			if( length < 0 || c.in.remaining() < length )
+			{
+				c.in.position( start );
+				break;
+			}
+			
+			if( length > c.frame.length )
+				c.frame = new byte[(int) length];
+			c.in.get( c.frame, 0, (int) length );
+			frames++;
+			if( !readFrame( c, ByteBuffer.wrap( c.frame, 0, (int) length ) ) )
+				errors++;
+		}
+		c.in.compact();
+		
+		//A frame bigger than the buffer only comes from a huge board, so make room for it
+		if( !c.in.hasRemaining() )
+		{
+			ByteBuffer bigger = ByteBuffer.allocate( c.in.capacity() * 2 );
+			c.in.flip();
+			bigger.put( c.in );
+			c.in = bigger;
+		}
+	}
+	
+	/**
+	 * Use one frame from the server
+	 * @param c The player
+	 * @param f The frame, without its length
+	 * @return False if the frame didn't make sense
+	 */
+	private boolean readFrame( Client c, ByteBuffer f )
+	{
+		int type = f.get();
+		if( type == VersusProtocol.START )
+		{
+			f.get();
+			VersusProtocol.getNumber( f );
+			f.getLong();
+			c.height = (int) VersusProtocol.getNumber( f );
+			c.width = (int) VersusProtocol.getNumber( f );
+			c.boards = new byte[VersusProtocol.PLAYERS][c.height * c.width];
+			return !f.hasRemaining();
+		}
+		else if( type == VersusProtocol.STATE )
+		{
+			if( c.boards == null )
+				return false;
+			
+			states++;
+			stateBytes += f.limit();
+			VersusProtocol.getNumber( f );
+			for( int i = 0; i < VersusProtocol.PLAYERS; i++ )
+			{
+				VersusProtocol.getNumber( f );
+				VersusProtocol.getNumber( f );
+				VersusProtocol.getNumber( f );
+				f.get();
+				VersusProtocol.getNumber( f );
+				
+				long count = VersusProtocol.getNumber( f );
+				int cell = -1;
+				for( long j = 0; j < count; j++ )
+				{
+					long change = VersusProtocol.getNumber( f );
+					cell += (int)( change >>> 3 ) + 1;
+					if( change < 0 || cell >= c.boards[i].length )
+						return false;
+					c.boards[i][cell] = (byte)( change & 7 );
+				}
+			}
+			return !f.hasRemaining();
+		}
+		else if( type == VersusProtocol.END )
+		{
+			ends++;
+			c.boards = null;
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Run a load test
+	 * @param args The options
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		String host = "127.0.0.1";
+		int port = VersusProtocol.DEFAULT_PORT;
+		int count = 1000;
+		int seconds = 10;
+		int tickRate = LuminesGame.TICK_RATE;
+		long seed = 1;
+		boolean local = false;
+		
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[i].equals( "--host" ) && i + 1 < args.length )
+				host = args[++i];
+			else if( args[i].equals( "--port" ) && i + 1 < args.length )
+				port = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--clients" ) && i + 1 < args.length )
+				count = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--seconds" ) && i + 1 < args.length )
+				seconds = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--tick-rate" ) && i + 1 < args.length )
+				tickRate = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--seed" ) && i + 1 < args.length )
+				seed = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--local" ) )
+				local = true;
+		}
+		
+		VersusServer server = null;
+		if( local )
+		{
+			server = new VersusServer( 0, tickRate, seed, LuminesGame.BOARD_HEIGHT, LuminesGame.BOARD_WIDTH );
+			port = server.getPort();
+			final VersusServer s = server;
+			Thread t = new Thread( new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						s.run();
+					}
+					catch( IOException e )
+					{
+						e.printStackTrace();
+					}
+				}
+			}, "VersusServer" );
+			t.setDaemon( true );
+			t.start();
+		}
+		
+		new VersusLoadTest( count, seed ).run( new InetSocketAddress( host, port ), seconds, tickRate );
+		
+		if( server != null )
+			server.stop();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The messages sent between VersusServer and its players
+ *
+ * Players send 2 byte input frames: INPUT, then the keys held in the low 4 bits and the keys tapped in the high 4 bits
+ * The server sends frames that start with their length as a variable length number, then a type byte:
+ * START: which player you are, the tick rate, the seed, the height and the width
+ * STATE: the tick, then for each player the score, the square's row + 2, column and colours, the line's x and the cells that changed
+ * END: the player that won, -1 for a draw, then each player's score
+ *
+ * The colours of the square are 4 bits, bit row * 2 + column set for each block that is colour two
+ * Changed cells are a count, then one number for each cell: the cells skipped since the last one shifted left 3, plus the Block ordinal
+ * So matches are always played with two colours
+ * Numbers are written 7 bits at a time, lowest bits first, with the top bit set on every byte but the last, the same as InputRecorder
+ */
+public class VersusProtocol
+{
+	//Message types
+	public static final int INPUT = 1; //Keys from a player
+	public static final int START = 2; //A match started
+	public static final int STATE = 3; //What changed in both games on one tick
+	public static final int END = 4; //The match is over
+	
+	//Constants
+	public static final int DEFAULT_PORT = 7420; //Port the server listens on
+	public static final int INPUT_SIZE = 2; //Bytes in an input frame
+	public static final int PLAYERS = 2; //Players in a match
+	
+	/**
+	 * Write a number 7 bits at a time
+	 * @param buffer Where to write the number
+	 * @param n The number, which can't be negative
+	 */
+	public static void putNumber( ByteBuffer buffer, long n )
+	{
+		while( ( n & ~0x7FL ) != 0 )
+		{
+			buffer.put( (byte)( ( n & 0x7F ) | 0x80 ) );
+			n >>>= 7;
+		}
+		buffer.put( (byte) n );
+	}
+	
+	/**
+	 * Read a number written by putNumber()
+	 * @param buffer Where to read the number from
+	 * @return The number, or -1 if the buffer ends in the middle of it
+	 */
+	public static long getNumber( ByteBuffer buffer )
+	{
+		long n = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			if( !buffer.hasRemaining() || shift > 63 )
+				return -1;
+			
+			b = buffer.get();
+			n |= (long)( b & 0x7F ) << shift;
+			shift += 7;
+		} while( ( b & 0x80 ) != 0 );
+		
+		return n;
+	}
+	
+	/**
+	 * Count the bytes putNumber() writes for a number
+	 * @param n The number
+	 * @return The number of bytes
+	 */
+	public static int numberSize( long n )
+	{
+		int size = 1;
+		while( ( n & ~0x7FL ) != 0 )
+		{
+			size++;
+			n >>>= 7;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Pack the colours of a square into 4 bits
+	 * @param s The square
+	 * @return A bit for each block that is colour two
+	 */
+	public static int packSquare( Square s )
+	{
+		int bits = 0;
+		for( int i = 0; i < 2; i++ )
+			for( int j = 0; j < 2; j++ )
+				if( s.getColour( i, j ) == 2 )
+					bits |= 1 << ( i * 2 + j );
+		
+		return bits;
+	}
+}
\ No newline at end of file
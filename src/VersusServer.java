@@ -0,0 +1,538 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Hosts head to head matches between players on other machines
+ * One thread looks after every connection with a Selector and ticks every match, so there is no thread for each player
+ * The games only run on the server, players send their keys and are sent what changed on each tick
+ * Both players of a match get the same squares, and the first one to lose loses the match
+ * When a match is over both players are put back in line for the next one
+ * The messages are described in VersusProtocol
+ *
+ * Usage: java VersusServer [--port N] [--tick-rate N] [--seed N] [--width N] [--height N]
+ */
+public class VersusServer
+{
+	//Constants
+	private static final int PLAYERS = VersusProtocol.PLAYERS; //Players in a match
+	private static final int OUTPUT_SIZE = 1 << 16; //Bytes waiting to be sent to a player before they are dropped for being too slow
+	private static final int BACKLOG = 4096; //Connections waiting to be accepted
+	private static final int MAX_CATCH_UP = 5; //Most ticks to run at once after the server stalls
+	private static final long REPORT_TIME = 10000000000L; //Nanoseconds between each line of numbers
+	
+	//Instance variables - settings
+	private int tickRate; //How many times a second the matches tick
+	private int height; //Height of the boards
+	private int width; //Width of the boards
+	private Random seeds; //Where the seed of each match comes from
+	
+	//Instance variables - connections
+	private Selector selector; //Finds the connections that can be read or written
+	private ServerSocketChannel server; //Accepts new players
+	private volatile boolean running = true; //Whether or not the server is still running
+	private Player waiting; //Player waiting for someone to play against, null if nobody is
+	private ArrayList<Match> matches = new ArrayList<Match>(); //Matches being played
+	private ArrayList<Player> pending = new ArrayList<Player>(); //Players with bytes waiting to be sent
+	
+	//Instance variables - scratch space for making frames
+	private ByteBuffer frame; //The frame being made
+	private ByteBuffer cells; //The changed cells of one board, before their count is known
+	
+	//Instance variables - numbers for the report
+	private int players = 0; //Players connected
+	private long matchesPlayed = 0; //Matches that have ended
+	private long bytesSent = 0; //Bytes sent since the last report
+	private LatencyHistogram tickTimes = new LatencyHistogram(); //Time taken to tick every match and make their frames
+	
+	/**
+	 * One connection to a player
+	 */
+	private class Player
+	{
+		private SocketChannel channel; //The connection
+		private SelectionKey key; //The connection's key in the selector
+		private ByteBuffer in = ByteBuffer.allocate( 256 ); //Bytes read that haven't been used yet
+		private ByteBuffer out = ByteBuffer.allocate( OUTPUT_SIZE ); //Bytes waiting to be sent
+		private int keys = 0; //Keys held down
+		private int taps = 0; //Keys tapped since the last tick
+		private boolean closed = false; //Whether or not the connection was closed
+	}
+	
+	/**
+	 * A match between two players
+	 */
+	private class Match
+	{
+		private Player[] players = new Player[PLAYERS]; //The players
+		private LuminesGame[] games = new LuminesGame[PLAYERS]; //Each player's game
+		private byte[][] sent = new byte[PLAYERS][]; //Block ordinal of each cell of each board that the players were last sent
+		private InputState input = new InputState(); //Keys given to a game
+		private long tick = 0; //Ticks played
+		private boolean over = false; //Whether or not the match has ended
+	}
+	
+	/**
+	 * Constructor
+	 * @param port Port to listen on, 0 for any free port
+	 * @param rate How many times a second the matches tick
+	 * @param seed Where the seed of each match comes from
+	 * @param h Height of the boards
+	 * @param w Width of the boards
+	 * @throws IOException If the port can't be listened on
+	 */
+	public VersusServer( int port, int rate, long seed, int h, int w ) throws IOException
+	{
+		tickRate = rate;
+		height = h;
+		width = w;
+		seeds = new Random( seed );
+		
+		//Big enough for every cell of both boards changing at once
+		int cellBytes = VersusProtocol.numberSize( ( (long) h * w ) << 3 );
+		cells = ByteBuffer.allocate( h * w * cellBytes );
+		frame = ByteBuffer.allocate( 64 + PLAYERS * ( 64 + h * w * cellBytes ) );
+		
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind( new InetSocketAddress( port ), BACKLOG );
+		server.configureBlocking( false );
+		server.register( selector, SelectionKey.OP_ACCEPT );
+	}
+	
+	/**
+	 * Run the server until stop() is called
+	 * @throws IOException If the selector stops working
+	 */
+	public void run() throws IOException
+	{
+		long tickLength = 1000000000L / tickRate; //Nanoseconds in one tick
+		long nextTick = System.nanoTime() + tickLength;
+		long nextReport = System.nanoTime() + REPORT_TIME;
+		
+		while( running )
+		{
+			//Wait for the connections until the next tick
+			long wait = nextTick - System.nanoTime();
+			if( wait > 0 )
+				selector.select( Math.max( wait / 1000000, 1 ) );
+			else
+				selector.selectNow();
+			
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while( keys.hasNext() )
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				
+				if( key.isValid() && key.isAcceptable() )
+					accept();
+				if( key.isValid() && key.isReadable() )
+					read( (Player) key.attachment() );
+				if( key.isValid() && key.isWritable() )
+					flush( (Player) key.attachment() );
+			}
+			
+			//If the server stalled then only catch up a few ticks
+			long now = System.nanoTime();
+			if( now - nextTick > tickLength * MAX_CATCH_UP )
+				nextTick = now - tickLength * MAX_CATCH_UP;
+			
+			while( now - nextTick >= 0 )
+			{
+				tick();
+				tickTimes.record( System.nanoTime() - now );
+				nextTick += tickLength;
+				now = System.nanoTime();
+			}
+			
+			//Send everything that was made this time around
+			for( int i = 0; i < pending.size(); i++ )
+				flush( pending.get( i ) );
+			pending.clear();
+			
+			if( now - nextReport >= 0 )
+			{
+				report();
+				nextReport = now + REPORT_TIME;
+			}
+		}
+		
+		selector.close();
+		server.close();
+	}
+	
+	/**
+	 * Stop the server, from any thread
+	 */
+	public void stop()
+	{
+		running = false;
+		selector.wakeup();
+	}
+	
+	/**
+	 * Accept every player waiting to connect
+	 * @throws IOException If the server socket stops working
+	 */
+	private void accept() throws IOException
+	{
+		SocketChannel channel;
+		while( ( channel = server.accept() ) != null )
+		{
+			Player p = new Player();
+			p.channel = channel;
+			channel.configureBlocking( false );
+			channel.socket().setTcpNoDelay( true );
+			p.key = channel.register( selector, SelectionKey.OP_READ, p );
+			players++;
+			join( p );
+		}
+	}
+	
+	/**
+	 * Read the input frames a player sent
+	 * @param p The player
+	 */
+	private void read( Player p )
+	{
+		try
+		{
+			if( p.channel.read( p.in ) < 0 )
+			{
+				close( p );
+				return;
+			}
+		}
+		catch( IOException e )
+		{
+			close( p );
+			return;
+		}
+		
+		p.in.flip();
+		while( p.in.remaining() >= VersusProtocol.INPUT_SIZE )
+		{
+			int type = p.in.get();
+			int bits = p.in.get();
+			if( type != VersusProtocol.INPUT )
+			{
+				close( p );
+				return;
+			}
+			
+			//The keys held are only looked at on the next tick, but every tap counts
+			p.keys = bits & 0xF;
+			p.taps |= ( bits >>> 4 ) & 0xF;
+		}
+		p.in.compact();
+	}
+	
+	/**
+	 * Send as much as the connection takes of what is waiting for a player
+	 * Whatever is left is sent when the selector says the connection can take more
+	 * @param p The player
+	 */
+	private void flush( Player p )
+	{
+		if( p.closed )
+			return;
+		
+		try
+		{
+			p.out.flip();
+			bytesSent += p.channel.write( p.out );
+			p.out.compact();
+		}
+		catch( IOException e )
+		{
+			close( p );
+			return;
+		}
+		
+		int ops = SelectionKey.OP_READ;
+		if( p.out.position() > 0 )
+			ops |= SelectionKey.OP_WRITE;
+		if( p.key.interestOps() != ops )
+			p.key.interestOps( ops );
+	}
+	
+	/**
+	 * Close a player's connection
+	 * If they were in a match, the other player wins it on the next tick
+	 * @param p The player
+	 */
+	private void close( Player p )
+	{
+		if( p.closed )
+			return;
+		
+		p.closed = true;
+		p.key.cancel();
+		try
+		{
+			p.channel.close();
+		}
+		catch( IOException e )
+		{
+		}
+		players--;
+		
+		//The match is ended on the next tick, so a frame being made isn't written over
+		if( waiting == p )
+			waiting = null;
+	}
+	
+	/**
+	 * Put a player in line for a match, and start the match if someone else was waiting
+	 * @param p The player
+	 */
+	private void join( Player p )
+	{
+		if( waiting == null )
+		{
+			waiting = p;
+			return;
+		}
+		
+		Match m = new Match();
+		m.players[0] = waiting;
+		m.players[1] = p;
+		waiting = null;
+		
+		long seed = seeds.nextLong();
+		for( int i = 0; i < PLAYERS; i++ )
+		{
+			Player player = m.players[i];
+			player.keys = 0;
+			player.taps = 0;
+			m.games[i] = new LuminesGame( new TickClock( tickRate ), tickRate, seed, height, width );
+			m.sent[i] = new byte[height * width];
+			
+			frame.clear();
+			frame.put( (byte) VersusProtocol.START );
+			frame.put( (byte) i );
+			VersusProtocol.putNumber( frame, tickRate );
+			frame.putLong( seed );
+			VersusProtocol.putNumber( frame, height );
+			VersusProtocol.putNumber( frame, width );
+			send( player, frame );
+		}
+		matches.add( m );
+	}
+	
+	/**
+	 * Tick every match and send what changed
+	 */
+	private void tick()
+	{
+		for( int k = 0; k < matches.size(); k++ )
+		{
+			Match m = matches.get( k );
+			if( m.over )
+				continue;
+			
+			//A player that left loses
+			boolean leftOne = m.players[0].closed;
+			boolean leftTwo = m.players[1].closed;
+			if( leftOne || leftTwo )
+			{
+				endMatch( m, leftOne && leftTwo ? -1 : ( leftOne ? 1 : 0 ) );
+				continue;
+			}
+			
+			for( int i = 0; i < PLAYERS; i++ )
+			{
+				Player p = m.players[i];
+				m.input.setBits( p.keys );
+				m.input.setTaps( p.taps );
+				p.taps = 0;
+				m.games[i].tick( m.input );
+			}
+			m.tick++;
+			
+			sendState( m );
+			
+			//The first player to lose loses the match
+			boolean lostOne = m.games[0].isGameOver();
+			boolean lostTwo = m.games[1].isGameOver();
+			if( lostOne && lostTwo )
+			{
+				int one = m.games[0].getScore();
+				int two = m.games[1].getScore();
+				endMatch( m, one == two ? -1 : ( one > two ? 0 : 1 ) );
+			}
+			else if( lostOne )
+				endMatch( m, 1 );
+			else if( lostTwo )
+				endMatch( m, 0 );
+		}
+		
+		//Forget the matches that ended
+		int kept = 0;
+		for( int k = 0; k < matches.size(); k++ )
+			if( !matches.get( k ).over )
+				matches.set( kept++, matches.get( k ) );
+		while( matches.size() > kept )
+			matches.remove( matches.size() - 1 );
+	}
+	
+	/**
+	 * Send both players what changed in both games on this tick
+	 * @param m The match
+	 */
+	private void sendState( Match m )
+	{
+		frame.clear();
+		frame.put( (byte) VersusProtocol.STATE );
+		VersusProtocol.putNumber( frame, m.tick );
+		
+		for( int i = 0; i < PLAYERS; i++ )
+		{
+			LuminesGame game = m.games[i];
+			Square s = game.getCurrentSquare();
+			VersusProtocol.putNumber( frame, game.getScore() );
+			VersusProtocol.putNumber( frame, s.getRow() + 2 );
+			VersusProtocol.putNumber( frame, s.getColumn() );
+			frame.put( (byte) VersusProtocol.packSquare( s ) );
+			VersusProtocol.putNumber( frame, game.getLine().getX() );
+			
+			//Find the cells that are different from what was sent last time
+			Board board = game.getBoard();
+			byte[] sent = m.sent[i];
+			cells.clear();
+			int count = 0;
+			int last = -1;
+			for( int row = 0; row < height; row++ )
+			{
+				for( int column = 0; column < width; column++ )
+				{
+					int cell = row * width + column;
+					int ordinal = board.getPiece( row, column ).ordinal();
+					if( sent[cell] != ordinal )
+					{
+						VersusProtocol.putNumber( cells, ( (long)( cell - last - 1 ) << 3 ) | ordinal );
+						sent[cell] = (byte) ordinal;
+						last = cell;
+						count++;
+					}
+				}
+			}
+			
+			VersusProtocol.putNumber( frame, count );
+			cells.flip();
+			frame.put( cells );
+		}
+		
+		for( int i = 0; i < PLAYERS; i++ )
+			send( m.players[i], frame );
+	}
+	
+	/**
+	 * End a match, tell the players who won and put them back in line
+	 * @param m The match
+	 * @param winner The player that won, -1 for a draw
+	 */
+	private void endMatch( Match m, int winner )
+	{
+		m.over = true;
+		matchesPlayed++;
+		
+		frame.clear();
+		frame.put( (byte) VersusProtocol.END );
+		frame.put( (byte) winner );
+		for( int i = 0; i < PLAYERS; i++ )
+			VersusProtocol.putNumber( frame, m.games[i].getScore() );
+		
+		for( int i = 0; i < PLAYERS; i++ )
+			send( m.players[i], frame );
+		
+		//Joining can start a match, which makes a new frame, so every player is sent this one first
+		for( int i = 0; i < PLAYERS; i++ )
+			if( !m.players[i].closed )
+				join( m.players[i] );
+	}
+	
+	/**
+	 * Put a frame in the bytes waiting to be sent to a player
+	 * A player that has fallen too far behind is dropped
+	 * @param p The player
+	 * @param f The frame, from the start of the buffer to its position
+	 */
+	private void send( Player p, ByteBuffer f )
+	{
+		if( p.closed )
+			return;
+		
+		int length = f.position();
+		if( p.out.remaining() < VersusProtocol.numberSize( length ) + length )
+		{
+			close( p );
+			return;
+		}
+		
+		if( p.out.position() == 0 )
+			pending.add( p );
+		VersusProtocol.putNumber( p.out, length );
+		p.out.put( f.array(), 0, length );
+	}
+	
+	/**
+	 * Print how the server is doing
+	 */
+	private void report()
+	{
+		System.out.printf( "%d players, %d matches, %d matches played, %.1f KB/s sent, tick p50 %d us, p99 %d us%n",
+				players, matches.size(), matchesPlayed, bytesSent / 1024.0 / ( REPORT_TIME / 1e9 ),
+				tickTimes.getPercentile( 50 ) / 1000, tickTimes.getPercentile( 99 ) / 1000 );
+		bytesSent = 0;
+		tickTimes.reset();
+	}
+	
+	/**
+	 * @return The port the server is listening on
+	 * @throws IOException If the server socket can't tell
+	 */
+	public int getPort() throws IOException
+	{
+		return ( (InetSocketAddress) server.getLocalAddress() ).getPort();
+	}
+	
+	/**
+	 * Start a server
+	 * @param args The options
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		int port = VersusProtocol.DEFAULT_PORT;
+		int tickRate = LuminesGame.TICK_RATE;
+		long seed = System.nanoTime();
+		int height = LuminesGame.BOARD_HEIGHT;
+		int width = LuminesGame.BOARD_WIDTH;
+		
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[i].equals( "--port" ) && i + 1 < args.length )
+				port = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--tick-rate" ) && i + 1 < args.length )
+				tickRate = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--seed" ) && i + 1 < args.length )
+				seed = Long.parseLong( args[++i] );
+			else if( args[i].equals( "--width" ) && i + 1 < args.length )
+				width = Integer.parseInt( args[++i] );
+			else if( args[i].equals( "--height" ) && i + 1 < args.length )
+				height = Integer.parseInt( args[++i] );
+		}
+		
+		VersusServer server = new VersusServer( port, tickRate, seed, height, width );
+		System.out.println( "Listening on port " + server.getPort() );
+		server.run();
+	}
+}
\ No newline at end of file